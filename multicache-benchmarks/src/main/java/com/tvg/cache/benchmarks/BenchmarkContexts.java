@@ -0,0 +1,36 @@
+package com.tvg.cache.benchmarks;
+
+import com.tvg.cache.CacheConfiguration;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Starts a minimal application context around {@link CacheConfiguration}, so that benchmarks measure the caches
+ * exactly as the auto-configuration builds them from {@code tvg.multicache.*} properties.
+ */
+final class BenchmarkContexts {
+
+    private BenchmarkContexts() {
+    }
+
+    static Map<String, Object> properties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("spring.application.name", "multicache-benchmarks");
+        return properties;
+    }
+
+    /**
+     * @param singletons beans registered as is before the context is refreshed, e.g. the redis connection factory
+     */
+    static AnnotationConfigApplicationContext start(Map<String, Object> properties, Map<String, Object> singletons) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", properties));
+        singletons.forEach( (name, bean) -> context.getBeanFactory().registerSingleton(name, bean));
+        context.register(CacheConfiguration.class);
+        context.refresh();
+        return context;
+    }
+}
@@ -0,0 +1,40 @@
+package com.tvg.cache.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Main class of {@code benchmarks.jar}. Takes the usual JMH command line; without {@code -t}, runs the selected
+ * benchmarks once per thread count 1, 2, 4, ... up to the number of available processors, so that contention
+ * shows up in the results.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws CommandLineOptionException, IOException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.getThreads().hasValue()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        for (int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+            new Runner(new OptionsBuilder().parent(commandLine).threads(threads).build()).run();
+        }
+    }
+
+    static List<Integer> threadCounts(int max) {
+        List<Integer> counts = new ArrayList<>();
+        for (int threads = 1; threads < max; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(max);
+        return counts;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tvg.cache.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookup path every cache annotation goes through: resolving the cache by name in the multicache
+ * {@link CacheManager}, then reading from it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheManagerBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int caches;
+
+    private AnnotationConfigApplicationContext context;
+    private CacheManager cacheManager;
+    private String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = BenchmarkContexts.properties();
+        properties.put("tvg.multicache.enable-caffeine", "true");
+        names = new String[caches];
+        for (int i = 0; i < caches; i++) {
+            names[i] = "bench-" + i;
+            properties.put("tvg.multicache.caffeine." + names[i] + ".spec", "maximumSize=1000");
+        }
+        context = BenchmarkContexts.start(properties, Collections.emptyMap());
+
+        cacheManager = context.getBean(CacheManager.class);
+        for (String name : names) {
+            cacheManager.getCache(name).put(1, Payload.create(1, 1));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Cache getCache() {
+        return cacheManager.getCache(names[ThreadLocalRandom.current().nextInt(caches)]);
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getCacheAndGet() {
+        return cacheManager.getCache(names[ThreadLocalRandom.current().nextInt(caches)]).get(1);
+    }
+}
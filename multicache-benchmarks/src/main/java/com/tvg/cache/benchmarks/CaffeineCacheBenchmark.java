@@ -0,0 +1,92 @@
+package com.tvg.cache.benchmarks;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get/put on a caffeine cache built by {@code CacheConfiguration.caffeineCacheManager()} and looked up through the
+ * multicache {@link CacheManager}, optionally with micrometer metrics.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CaffeineCacheBenchmark {
+
+    @Param({"maximumSize=100000", "maximumSize=100000,expireAfterWrite=30s,recordStats"})
+    public String spec;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    @Param({"10000"})
+    public int keys;
+
+    private AnnotationConfigApplicationContext context;
+    private Cache cache;
+    private Payload value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = BenchmarkContexts.properties();
+        properties.put("tvg.multicache.enable-caffeine", "true");
+        properties.put("tvg.multicache.caffeine.bench.spec", spec);
+        properties.put("tvg.multicache.metrics.enabled", String.valueOf(metrics));
+        Map<String, Object> singletons = new HashMap<>();
+        singletons.put("meterRegistry", new SimpleMeterRegistry());
+        context = BenchmarkContexts.start(properties, singletons);
+
+        cache = context.getBean(CacheManager.class).getCache("bench");
+        value = Payload.create(0, 10);
+        for (int i = 0; i < keys; i++) {
+            cache.put(i, Payload.create(i, 10));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getHit() {
+        return cache.get(ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getMiss() {
+        return cache.get(keys + ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    public Object getWithLoader() {
+        return cache.get(ThreadLocalRandom.current().nextInt(keys), () -> value);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(ThreadLocalRandom.current().nextInt(keys), value);
+    }
+}
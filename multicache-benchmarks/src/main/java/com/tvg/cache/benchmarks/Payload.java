@@ -0,0 +1,48 @@
+package com.tvg.cache.benchmarks;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A typical cached entity: a few scalar fields and a list whose length sets the payload size.
+ */
+public class Payload implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private long id;
+    private String name;
+    private String email;
+    private List<String> tags = new ArrayList<>();
+
+    public Payload() {
+    }
+
+    public static Payload create(long id, int tags) {
+        Payload payload = new Payload();
+        payload.setId(id);
+        payload.setName("name-" + id);
+        payload.setEmail("contact-" + id + "@example.com");
+        for (int i = 0; i < tags; i++) {
+            payload.getTags().add("tag-" + i + "-of-contact-" + id);
+        }
+        return payload;
+    }
+
+    public long getId() { return id; }
+
+    public void setId(long id) { this.id = id; }
+
+    public String getName() { return name; }
+
+    public void setName(String name) { this.name = name; }
+
+    public String getEmail() { return email; }
+
+    public void setEmail(String email) { this.email = email; }
+
+    public List<String> getTags() { return tags; }
+
+    public void setTags(List<String> tags) { this.tags = tags; }
+}
@@ -0,0 +1,100 @@
+package com.tvg.cache.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Get/put on a redis cache built by {@code CacheConfiguration.redisCacheManager()} against a {@link RedisStandIn}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RedisCacheBenchmark {
+
+    @Param({"JDK", "KRYO"})
+    public String serializer;
+
+    @Param({"NONE", "LZ4"})
+    public String compression;
+
+    @Param({"10"})
+    public int tags;
+
+    @Param({"1000"})
+    public int keys;
+
+    private RedisStandIn redis;
+    private AnnotationConfigApplicationContext context;
+    private Cache cache;
+    private Payload value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redis = RedisStandIn.start();
+
+        Map<String, Object> properties = BenchmarkContexts.properties();
+        properties.put("tvg.multicache.enable-redis", "true");
+        properties.put("tvg.multicache.redis.bench.time-to-live", "10m");
+        properties.put("tvg.multicache.redis.bench.serializer", serializer);
+        properties.put("tvg.multicache.redis.bench.trusted-packages", "com.tvg.cache.benchmarks");
+        properties.put("tvg.multicache.redis.bench.compression", compression);
+        properties.put("tvg.multicache.redis.bench.compression-threshold", "256B");
+        context = BenchmarkContexts.start(properties, Collections.singletonMap("redisConnectionFactory", redis.getConnectionFactory()));
+
+        cache = context.getBean(CacheManager.class).getCache("bench");
+        cache.clear();
+        value = Payload.create(0, tags);
+        for (int i = 0; i < keys; i++) {
+            cache.put(i, Payload.create(i, tags));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+        context.close();
+        redis.stop();
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getHit() {
+        return cache.get(ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    public Cache.ValueWrapper getMiss() {
+        return cache.get(keys + ThreadLocalRandom.current().nextInt(keys));
+    }
+
+    @Benchmark
+    public Object getWithLoader() {
+        return cache.get(ThreadLocalRandom.current().nextInt(keys), () -> value);
+    }
+
+    @Benchmark
+    public void put() {
+        cache.put(ThreadLocalRandom.current().nextInt(keys), value);
+    }
+}
@@ -0,0 +1,42 @@
+package com.tvg.cache.benchmarks;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.embedded.RedisServer;
+
+/**
+ * The redis used by the redis benchmarks: a local redis given by {@code -Dbenchmark.redis.host} (and
+ * {@code -Dbenchmark.redis.port}, default 6379), or otherwise an embedded redis server started on
+ * {@code -Dbenchmark.redis.embedded-port} (default 6399) for the duration of the trial.
+ */
+final class RedisStandIn {
+
+    private final RedisServer embeddedServer;
+    private final LettuceConnectionFactory connectionFactory;
+
+    private RedisStandIn(RedisServer embeddedServer, String host, int port) {
+        this.embeddedServer = embeddedServer;
+        this.connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+        this.connectionFactory.afterPropertiesSet();
+    }
+
+    static RedisStandIn start() {
+        String host = System.getProperty("benchmark.redis.host");
+        if (host != null) {
+            return new RedisStandIn(null, host, Integer.getInteger("benchmark.redis.port", 6379));
+        }
+        int port = Integer.getInteger("benchmark.redis.embedded-port", 6399);
+        RedisServer server = new RedisServer(port);
+        server.start();
+        return new RedisStandIn(server, "localhost", port);
+    }
+
+    LettuceConnectionFactory getConnectionFactory() { return connectionFactory; }
+
+    void stop() {
+        connectionFactory.destroy();
+        if (embeddedServer != null) {
+            embeddedServer.stop();
+        }
+    }
+}
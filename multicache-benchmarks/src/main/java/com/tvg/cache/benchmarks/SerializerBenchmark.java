@@ -0,0 +1,86 @@
+package com.tvg.cache.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the value serializer (and compression) a redis cache is configured with, without any redis round trip.
+ * The serializer is taken from the cache configuration built by {@code CacheConfiguration}, so it is the exact chain
+ * the cache uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializerBenchmark {
+
+    @Param({"JDK", "JSON", "SMILE", "KRYO"})
+    public String serializer;
+
+    @Param({"NONE", "GZIP", "LZ4", "ZSTD"})
+    public String compression;
+
+    @Param({"1", "100"})
+    public int tags;
+
+    private AnnotationConfigApplicationContext context;
+    private SerializationPair<Object> serializationPair;
+    private Payload value;
+    private ByteBuffer serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, Object> properties = BenchmarkContexts.properties();
+        properties.put("tvg.multicache.enable-redis", "true");
+        properties.put("tvg.multicache.redis.bench.serializer", serializer);
+        properties.put("tvg.multicache.redis.bench.trusted-packages", "com.tvg.cache.benchmarks");
+        properties.put("tvg.multicache.redis.bench.compression", compression);
+        properties.put("tvg.multicache.redis.bench.compression-threshold", "256B");
+        properties.put("tvg.multicache.redis.bench.transaction-aware", "false");
+        // never connected: serializing does not talk to redis
+        context = BenchmarkContexts.start(properties, Collections.singletonMap("redisConnectionFactory", new LettuceConnectionFactory()));
+
+        RedisCache cache = (RedisCache) context.getBean(CacheManager.class).getCache("bench");
+        serializationPair = cache.getCacheConfiguration().getValueSerializationPair();
+        value = Payload.create(1, tags);
+        serialized = serializationPair.write(value);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        return serializationPair.write(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializationPair.read(serialized.duplicate());
+    }
+}
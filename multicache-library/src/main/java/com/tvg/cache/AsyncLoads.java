@@ -0,0 +1,47 @@
+package com.tvg.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * The async loads in flight for one cache. A key is loaded by the first caller that misses it; later callers
+ * get the same future until the value is loaded and stored.
+ */
+final class AsyncLoads {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> load(Object key, Supplier<CompletableFuture<T>> loader,
+                                  BiFunction<Object, Object, CompletableFuture<Void>> store) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> runningLoad = loads.putIfAbsent(key, load);
+        if (runningLoad != null) {
+            return (CompletableFuture<T>) runningLoad;
+        }
+
+        // whatever happens, the load must complete, or every later caller for the key would wait for it forever
+        try {
+            CompletableFuture<T> loaded = loader.get();
+            if (loaded == null) {
+                throw new IllegalStateException(String.format("MultiCache: the async loader of key %s returned no future", key));
+            }
+            loaded.thenCompose(value -> store.apply(key, value).thenApply(stored -> value))
+                    .whenComplete( (value, ex) -> {
+                        loads.remove(key, load);
+                        if (ex != null) {
+                            load.completeExceptionally(ex);
+                        } else {
+                            load.complete(value);
+                        }
+                    });
+        } catch (Throwable ex) {
+            loads.remove(key, load);
+            load.completeExceptionally(ex);
+        }
+        return (CompletableFuture<T>) load;
+    }
+}
@@ -0,0 +1,66 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking view of a cache. Redis caches run their commands asynchronously on the lettuce connection, local
+ * caches complete reads immediately; other caches run their blocking calls on an executor.
+ * <pre>
+ * AsyncMultiCache contacts = AsyncMultiCache.of(cacheManager.getCache("contacts"));
+ * CompletableFuture&lt;Contact&gt; contact = contacts.get(id, () -&gt; contactClient.fetch(id));
+ * </pre>
+ * See {@link ReactiveMultiCache} for the same view with Reactor types.
+ */
+public interface AsyncMultiCache {
+
+    /**
+     * The cache's own async view, or for a cache without one, a view running its blocking calls on the caller's thread.
+     */
+    static AsyncMultiCache of(Cache cache) {
+        return of(cache, Runnable::run);
+    }
+
+    /**
+     * The cache's own async view, or for a cache without one, a view running its blocking calls on {@code executor}.
+     */
+    static AsyncMultiCache of(Cache cache, Executor executor) {
+        if (cache instanceof Provider) {
+            return ((Provider) cache).async();
+        }
+        if (cache instanceof CaffeineCache) {
+            return new LocalAsyncCache(cache);
+        }
+        return new ExecutorAsyncCache(cache, executor);
+    }
+
+    String getName();
+
+    /**
+     * Completes with the cached value, or with {@code null} if the key is not cached.
+     */
+    CompletableFuture<ValueWrapper> get(Object key);
+
+    /**
+     * Completes with the cached value, or loads it with {@code loader} and caches it. Concurrent loads of the same
+     * key in this JVM share one call to {@code loader}.
+     */
+    <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader);
+
+    CompletableFuture<Void> put(Object key, Object value);
+
+    CompletableFuture<Void> evict(Object key);
+
+    /**
+     * Implemented by caches (and cache decorators) that provide their own async view.
+     */
+    interface Provider {
+
+        AsyncMultiCache async();
+    }
+}
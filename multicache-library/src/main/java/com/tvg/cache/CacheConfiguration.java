@@ -1,38 +1,78 @@
 package com.tvg.cache;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.caffeine.CaffeineCacheManager;
-import org.springframework.cache.support.SimpleCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.lang.Nullable;
+import org.springframework.util.unit.DataSize;
 
+import javax.annotation.PreDestroy;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 @EnableConfigurationProperties(MultiCacheProperties.class)
 public class CacheConfiguration {
 
     private MultiCacheProperties cacheProperties;
+    private BeanFactory beanFactory;
+    private Environment environment;
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+    private final Map<String, CompressingRedisSerializer> compressingSerializers = new ConcurrentHashMap<>();
+    private RedisCacheManager redisManager;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduler;
+    private final Map<String, WriteBehindCache> writeBehindCaches = new LinkedHashMap<>();
+    private final Map<String, CacheSnapshot> snapshots = new LinkedHashMap<>();
+    private final Map<String, List<ScheduledFuture<?>>> scheduledTasks = new LinkedHashMap<>();
+    private List<Runnable> deferred; //set while rebuildCache runs, see publish
     @Value("${spring.application.name}")
     private String appName;
 
     final Logger log = LoggerFactory.getLogger(this.getClass());
-    public CacheConfiguration(MultiCacheProperties cacheProperties
+    public CacheConfiguration(MultiCacheProperties cacheProperties,
+                              BeanFactory beanFactory,
+                              Environment environment,
+                              ObjectProvider<MeterRegistry> meterRegistryProvider
     ) {
         this.cacheProperties = cacheProperties;
+        this.beanFactory = beanFactory;
+        this.environment = environment;
+        this.meterRegistryProvider = meterRegistryProvider;
         checkForCacheEnabledConsistency();
     }
 
@@ -46,20 +86,149 @@ public class CacheConfiguration {
         cacheProperties.getRedis().forEach( (name, properties) -> {
             log.debug(String.format("MultiCache: redis cache name %s props %s", name, properties));
 
-            RedisCacheManager cache = RedisCacheManager.builder(redisConnectionFactory)
-                    .cacheDefaults(cacheConfiguration(name, properties))
-                    .transactionAware()
-                    .build();
-
-            Cache redisCache = cache.getCache(name);
-            //cacheMetricsRegistrar.bindCacheToRegistry(redisCache);
-            caches.add(redisCache);
+            caches.add(redisCache(redisConnectionFactory, name, properties));
         });
 
         return caches;
     }
 
+    /**
+     * One RedisCacheManager serves every redis cache and the redis side of every tiered cache. Each cache still gets
+     * its own RedisCacheConfiguration, and uses one of two shared writers (non-locking or locking). All caches share the connection
+     * factory's connection handling (a single multiplexed native connection with lettuce, or its pool if configured).
+     */
+    private synchronized RedisCacheManager sharedRedisCacheManager(RedisConnectionFactory redisConnectionFactory) {
+        if (redisManager == null) {
+            Map<String, MultiCacheProperties.RedisCacheProperties> allProperties = new LinkedHashMap<>();
+            if (cacheProperties.getRedis() != null) {
+                allProperties.putAll(cacheProperties.getRedis());
+            }
+            if (cacheProperties.getTiered() != null) {
+                allProperties.putAll(cacheProperties.getTiered());
+            }
+
+            Map<String, RedisCacheConfiguration> cacheConfigurations = new LinkedHashMap<>();
+            Map<String, TtlFunction> ttlFunctions = new LinkedHashMap<>();
+            allProperties.forEach( (name, properties) -> {
+                cacheConfigurations.put(name, cacheConfiguration(name, properties));
+                if (properties.getTtlFunctionBean() != null) {
+                    ttlFunctions.put(name, ttlFunction(properties));
+                }
+            });
+
+            redisManager = new MultiCacheRedisCacheManager(redisConnectionFactory, cacheConfigurations, allProperties, executor(), ttlFunctions);
+            redisManager.initializeCaches();
+            log.debug(String.format("MultiCache: shared redis cache manager created for caches %s", cacheConfigurations.keySet()));
+        }
+        return redisManager;
+    }
+
+    private TtlFunction ttlFunction(MultiCacheProperties.RedisCacheProperties properties) {
+        return properties.getTtlFunctionBean() != null ? beanFactory.getBean(properties.getTtlFunctionBean(), TtlFunction.class) : null;
+    }
+
+    private Cache redisCache(RedisConnectionFactory redisConnectionFactory, String cacheName, MultiCacheProperties.RedisCacheProperties properties) {
+        return redisCache(sharedRedisCacheManager(redisConnectionFactory).getCache(cacheName), cacheName, properties);
+    }
+
+    private Cache redisCache(Cache redisCache, String cacheName, MultiCacheProperties.RedisCacheProperties properties) {
+        if (properties.getClearMode() == MultiCacheProperties.ClearMode.GENERATION) {
+            pollGeneration((MultiRedisCache) redisCache, properties.getGenerationPollInterval());
+        }
+        if (properties.getWriteMode() == MultiCacheProperties.WriteMode.WRITE_BEHIND) {
+            redisCache = writeBehindCache((MultiRedisCache) redisCache, properties.getWriteBehind());
+        }
+        MultiCacheProperties.CircuitBreakerProperties circuitBreakerProperties = properties.getCircuitBreaker();
+        if (circuitBreakerProperties != null && circuitBreakerProperties.isEnabled()) {
+            Cache fallback = circuitBreakerProperties.getFallbackSpec() != null ? caffeineCache(cacheName, circuitBreakerProperties.getFallbackSpec(), null, null) : null;
+            CircuitBreaker circuitBreaker = new CircuitBreaker(cacheName, circuitBreakerProperties);
+            register(Gauge.builder("cache.circuit.open", circuitBreaker, breaker -> breaker.getState() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                    .tag("cache", cacheName)
+                    .description("1 while the circuit breaker of the redis cache is open or half open, 0 when closed"));
+            redisCache = new ResilientCache(redisCache, circuitBreaker, fallback, executor());
+        }
+        // outside the breaker, so that writes deferred to after commit still go through it
+        if (properties.isTransactionAware()) {
+            redisCache = new TransactionAwareMultiKeyCache(redisCache, executor());
+        }
+        MultiCacheProperties.HotKeyProperties hotKeyProperties = properties.getHotKeys();
+        if (hotKeyProperties != null && hotKeyProperties.isEnabled()) {
+            redisCache = hotKeyCache(redisCache, hotKeyProperties);
+        }
+        return redisCache;
+    }
+
+    /**
+     * Counts the reads of the cache, halving the counts every decay interval, and promotes its hot keys to a local
+     * cache holding up to {@code tracked} keys when {@code promote} is on.
+     */
+    private HotKeyCache hotKeyCache(Cache redisCache, MultiCacheProperties.HotKeyProperties properties) {
+        String cacheName = redisCache.getName();
+        if (properties.getDecayInterval() == null || properties.getDecayInterval().toMillis() < 1) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s needs a positive hot-keys.decay-interval, got %s", cacheName, properties));
+        }
+        HotKeyTracker tracker = new HotKeyTracker(properties.getTracked(), properties.getMinFrequency());
+        MultiCaffeineCache local = null;
+        if (properties.isPromote()) {
+            // built directly: a caffeine spec cannot express sub-second expiry
+            local = new MultiCaffeineCache(cacheName, Caffeine.newBuilder()
+                    .maximumSize(Math.max(1, properties.getTracked()))
+                    .expireAfterWrite(Math.max(1, properties.getLocalTimeToLive().toNanos()), TimeUnit.NANOSECONDS)
+                    .executor(executor())
+                    .build(), true);
+        }
+        HotKeyCache hotKeyCache = new HotKeyCache(redisCache, tracker, local, executor());
+        register(Gauge.builder("cache.hotkeys", tracker, hotKeys -> hotKeys.getHotKeys().size())
+                .tag("cache", cacheName)
+                .description("keys of the redis cache currently read often enough to be hot"));
+        register(Gauge.builder("cache.hotkeys.promoted", hotKeyCache, HotKeyCache::getPromotedKeys)
+                .tag("cache", cacheName)
+                .description("hot keys of the redis cache currently held in the local cache"));
+        schedule(cacheName, tracker::decay, properties.getDecayInterval().toMillis());
+        return hotKeyCache;
+    }
+
+    /**
+     * Reads the cache's generation now, so that it starts on the current one, then every interval on the executor.
+     */
+    private void pollGeneration(MultiRedisCache redisCache, Duration interval) {
+        if (interval == null || interval.toMillis() < 1) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s needs a positive generation-poll-interval, got %s", redisCache.getName(), interval));
+        }
+        redisCache.refreshGeneration();
+        schedule(redisCache.getName(), redisCache::refreshGeneration, interval.toMillis());
+    }
+
+    private WriteBehindCache writeBehindCache(MultiRedisCache redisCache, MultiCacheProperties.WriteBehindProperties properties) {
+        WriteBehindCache writeBehindCache = new WriteBehindCache(redisCache, properties != null ? properties : new MultiCacheProperties.WriteBehindProperties(), executor());
+        register(Gauge.builder("cache.write.behind.pending", writeBehindCache, WriteBehindCache::getPendingWrites)
+                .tag("cache", redisCache.getName())
+                .description("puts and evictions queued for redis"));
+        register(Gauge.builder("cache.write.behind.dropped", writeBehindCache, WriteBehindCache::getDroppedWrites)
+                .tag("cache", redisCache.getName())
+                .description("puts dropped because the write-behind queue was full"));
+        publish(() -> {
+            writeBehindCache.start(scheduler());
+            writeBehindCaches.put(redisCache.getName(), writeBehindCache);
+        });
+        return writeBehindCache;
+    }
+
     private RedisCacheConfiguration cacheConfiguration(String cacheName, MultiCacheProperties.RedisCacheProperties properties) {
+        boolean refreshes = !properties.getRefreshAhead().isZero() || properties.getEarlyExpirationBeta() > 0;
+        if (refreshes && (properties.getTimeToLive() == null || properties.getTimeToLive().isZero() || properties.getTimeToLive().isNegative())) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s uses refresh-ahead or early-expiration-beta but has no time-to-live in application.properties", cacheName));
+        }
+        Duration negativeTtl = properties.getNegativeTtl();
+        if (negativeTtl != null && (negativeTtl.isZero() || negativeTtl.isNegative() || !properties.isCacheNullValues())) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s needs a positive negative-ttl and cache-null-values=true to use negative-ttl, got %s", cacheName, negativeTtl));
+        }
+        if (properties.getClearMode() == MultiCacheProperties.ClearMode.GENERATION
+                && (properties.getTimeToLive() == null || properties.getTimeToLive().isZero() || properties.getTimeToLive().isNegative())) {
+            // the keys of old generations are never deleted, they have to expire
+            throw new RuntimeException(String.format("MultiCache: redis cache %s uses clear-mode=generation but has no time-to-live in application.properties", cacheName));
+        }
+
         String prefix;
         if (properties.getKeyPrefix() != null && properties.isUseKeyPrefix()) {
             prefix = appName + "-" + properties.getKeyPrefix() + "::";
@@ -67,47 +236,434 @@ public class CacheConfiguration {
             prefix = appName + "-" + cacheName + "::";
         }
 
-        RedisCacheConfiguration cacheConfig = RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(properties.getTimeToLive())
-                .prefixKeysWith(prefix);
+        ClassLoader classLoader = getClass().getClassLoader();
+        RedisSerializer<Object> serializer = RedisSerializers.create(cacheName, properties, beanFactory, classLoader);
+        if (properties.getCompression() != MultiCacheProperties.Compression.NONE) {
+            CompressingRedisSerializer compressingSerializer = new CompressingRedisSerializer(serializer, properties.getCompression(), (int) properties.getCompressionThreshold().toBytes());
+            publish(() -> compressingSerializers.put(cacheName, compressingSerializer));
+            register(Gauge.builder("cache.compression.ratio", compressingSerializer, CompressingRedisSerializer::getCompressionRatio)
+                    .tag("cache", cacheName)
+                    .description("uncompressed size of the compressed values divided by their compressed size"));
+            serializer = compressingSerializer;
+        }
+        MeterRegistry meterRegistry = meterRegistry();
+        if (meterRegistry != null) {
+            serializer = new MeteredRedisSerializer(serializer, cacheName, meterRegistry);
+        }
 
+        RedisCacheConfiguration cacheConfig = RedisCacheConfiguration.defaultCacheConfig(classLoader)
+                .entryTtl(properties.getTimeToLive())
+                .prefixKeysWith(prefix)
+                .serializeValuesWith(SerializationPair.fromSerializer(serializer));
 
-        if (!properties.isUseKeyPrefix()) {
-            cacheConfig.disableCachingNullValues();
-        }
-        if (!properties.isUseKeyPrefix()) {
-            cacheConfig.disableKeyPrefix();
+        // the configuration is immutable, each option returns a new one
+        if (!properties.isCacheNullValues()) {
+            cacheConfig = cacheConfig.disableCachingNullValues();
         }
 
         return cacheConfig;
     }
 
+    @Bean
+    @ConditionalOnProperty(prefix = "tvg.multicache.invalidation", value = "enabled", havingValue = "true")
+    public InvalidationBus invalidationBus(RedisConnectionFactory redisConnectionFactory) {
+        return new InvalidationBus(redisConnectionFactory, cacheProperties.getInvalidation(), executor());
+    }
+
     @Bean
     @ConditionalOnProperty(prefix = "tvg.multicache", value = "enable-caffeine", havingValue = "true")
-    public List <Cache> caffeineCacheManager() {
+    public List <Cache> caffeineCacheManager(@Nullable InvalidationBus invalidationBus) {
         List <Cache> caches = new ArrayList<>();
         log.info(String.format("MultiCache: Enabling caffeine caches"));
         cacheProperties.getCaffeine().forEach( (name, properties) -> {
             log.debug(String.format("MultiCache: caffeine cache name %s props %s", name, properties));
-            CaffeineCacheManager cache = new CaffeineCacheManager(name);
-            cache.setCaffeineSpec(CaffeineSpec.parse(properties.getSpec()));
+            caches.add(caffeineCache(name, properties, invalidationBus));
+        });
+
+        return caches;
+    }
+
+    private Cache caffeineCache(String name, MultiCacheProperties.CaffeineCacheProperties properties, InvalidationBus invalidationBus) {
+        MultiCaffeineCache caffeineCache = caffeineCache(name, properties.getSpec(), properties.getMaxMemory(), properties.getNegativeTtl());
+        if (properties.getSnapshot() != null && properties.getSnapshot().isEnabled()) {
+            snapshot(caffeineCache, properties.getSnapshot());
+        }
+        Cache cache = caffeineCache;
+        if (invalidationBus != null) {
+            MultiCacheProperties.SnapshotProperties snapshot = properties.getSnapshot();
+            RedisSerializer<Object> keySerializer = snapshot != null
+                    ? RedisSerializers.create(name, snapshot, beanFactory, getClass().getClassLoader())
+                    : null;
+            Cache registered = cache;
+            publish(() -> invalidationBus.register(name, registered, keySerializer));
+            cache = new InvalidatingCache(cache, invalidationBus, false, executor());
+        }
+        return cache;
+    }
+
+    /**
+     * @param negativeTtl when not null, null values expire after it instead of the spec's expiry
+     */
+    private MultiCaffeineCache caffeineCache(String cacheName, String spec, DataSize maxMemory, Duration negativeTtl) {
+        Caffeine<Object, Object> builder;
+        if (negativeTtl != null) {
+            if (negativeTtl.isZero() || negativeTtl.isNegative()) {
+                throw new RuntimeException(String.format("MultiCache: caffeine cache %s needs a positive negative-ttl, got %s", cacheName, negativeTtl));
+            }
+            builder = NegativeExpiry.builder(cacheName, spec, negativeTtl).executor(executor());
+        } else {
+            builder = Caffeine.from(CaffeineSpec.parse(spec)).executor(executor());
+        }
+        if (maxMemory == null) {
+            return new MultiCaffeineCache(cacheName, builder.build(), true);
+        }
+
+        if (boundsSize(spec)) {
+            throw new RuntimeException(String.format("MultiCache: caffeine cache %s sets max-memory, so its spec cannot set maximumSize or maximumWeight", cacheName));
+        }
+        MultiCaffeineCache cache = new MultiCaffeineCache(cacheName, builder
+                .maximumWeight(maxMemory.toBytes())
+                .weigher( (key, value) -> (int) Math.min(Integer.MAX_VALUE,
+                        ObjectSizeEstimator.estimate(key, maxMemory.toBytes()) + ObjectSizeEstimator.estimate(value, maxMemory.toBytes())))
+                .build(), true);
+        register(Gauge.builder("cache.memory.estimated", cache, MultiCaffeineCache::getWeightedSize)
+                .tag("cache", cacheName)
+                .baseUnit("bytes")
+                .description("estimated heap size of the keys and values of the caffeine cache"));
+        return cache;
+    }
+
+    private static boolean boundsSize(String spec) {
+        // the options of the parsed spec, so that a name is not matched inside another option's value
+        for (String option : CaffeineSpec.parse(spec).toParsableString().split(",")) {
+            String name = option.split("=", 2)[0].trim();
+            if (name.equals("maximumSize") || name.equals("maximumWeight")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads the cache's snapshot, while the context starts and so before the application is ready, then saves it
+     * every interval on the executor.
+     */
+    private void snapshot(MultiCaffeineCache cache, MultiCacheProperties.SnapshotProperties properties) {
+        if (properties.getPath() == null || properties.getPath().trim().isEmpty()) {
+            throw new RuntimeException(String.format("MultiCache: caffeine cache %s enables snapshots but sets no snapshot.path", cache.getName()));
+        }
+        RedisSerializer<Object> serializer = RedisSerializers.create(cache.getName(), properties, beanFactory, getClass().getClassLoader());
+        CacheSnapshot snapshot = new CacheSnapshot(cache, Paths.get(properties.getPath(), appName + "-" + cache.getName() + ".snapshot"), properties, serializer);
+        snapshot.load();
+        long interval = properties.getInterval().toMillis();
+        if (interval > 0) {
+            schedule(cache.getName(), snapshot::save, interval);
+        }
+        publish(() -> snapshots.put(cache.getName(), snapshot));
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "tvg.multicache", value = "enable-offheap", havingValue = "true")
+    public List <Cache> offheapCacheManager(@Nullable InvalidationBus invalidationBus) {
+        List <Cache> caches = new ArrayList<>();
+        log.info(String.format("MultiCache: Enabling off-heap caches"));
+        cacheProperties.getOffheap().forEach( (name, properties) -> {
+            log.debug(String.format("MultiCache: off-heap cache name %s props %s", name, properties));
+            caches.add(offHeapCache(name, properties, invalidationBus));
+        });
+
+        return caches;
+    }
+
+    private Cache offHeapCache(String name, MultiCacheProperties.OffHeapCacheProperties properties, InvalidationBus invalidationBus) {
+        RedisSerializer<Object> keySerializer = RedisSerializers.create(name, properties, beanFactory, getClass().getClassLoader());
+        RedisSerializer<Object> serializer = keySerializer;
+        if (properties.getCompression() != MultiCacheProperties.Compression.NONE) {
+            serializer = new CompressingRedisSerializer(serializer, properties.getCompression(), (int) properties.getCompressionThreshold().toBytes());
+        }
+        OffHeapCache offHeapCache = new OffHeapCache(name, properties, serializer);
+        register(Gauge.builder("cache.offheap.used", offHeapCache, OffHeapCache::getUsedBytes)
+                .tag("cache", name)
+                .baseUnit("bytes")
+                .description("serialized size of the values of the off-heap cache"));
+        register(Gauge.builder("cache.offheap.evictions", offHeapCache, OffHeapCache::getEvictions)
+                .tag("cache", name)
+                .description("values evicted from the off-heap cache to make room"));
+        Cache cache = offHeapCache;
+        if (invalidationBus != null) {
+            publish(() -> invalidationBus.register(name, offHeapCache, keySerializer));
+            cache = new InvalidatingCache(cache, invalidationBus, false, executor());
+        }
+        return cache;
+    }
 
-            caches.add(cache.getCache(name));
+    @Bean
+    @ConditionalOnProperty(prefix = "tvg.multicache", value = "enable-tiered", havingValue = "true")
+    public List <Cache> tieredCacheManager(RedisConnectionFactory redisConnectionFactory, @Nullable InvalidationBus invalidationBus) {
+        List <Cache> caches = new ArrayList<>();
+        log.info(String.format("MultiCache: Enabling tiered caches"));
+        cacheProperties.getTiered().forEach( (name, properties) -> {
+            log.debug(String.format("MultiCache: tiered cache name %s props %s", name, properties));
+            caches.add(tieredCache(sharedRedisCacheManager(redisConnectionFactory).getCache(name), name, properties, invalidationBus));
         });
 
         return caches;
     }
 
+    private Cache tieredCache(Cache redisCache, String name, MultiCacheProperties.TieredCacheProperties properties,
+                              InvalidationBus invalidationBus) {
+        if (invalidationBus != null && properties.getWriteMode() == MultiCacheProperties.WriteMode.WRITE_BEHIND) {
+            // other nodes would reload the old value from redis into their local cache before the write is flushed
+            throw new RuntimeException(String.format("MultiCache: tiered cache %s cannot use write-mode=write-behind with invalidation enabled", name));
+        }
+        Cache localCache = caffeineCache(name, properties.getLocalSpec(), properties.getLocalMaxMemory(), properties.getNegativeTtl());
+        Cache tieredCache = new TieredCache(name, localCache, redisCache(redisCache, name, properties), executor());
+        if (invalidationBus != null) {
+            RedisSerializer<Object> keySerializer = RedisSerializers.create(name, properties, beanFactory, getClass().getClassLoader());
+            publish(() -> invalidationBus.register(name, localCache, keySerializer));
+            tieredCache = new InvalidatingCache(tieredCache, invalidationBus, true, executor());
+        }
+        return tieredCache;
+    }
+
     @Bean
-    public CacheManager cacheManager(List<Cache> caffeineCacheManager, List<Cache> redisCacheManager) {
-        SimpleCacheManager simpleCacheManager = new SimpleCacheManager();
+    public MultiCacheManager cacheManager(@Nullable @Qualifier("caffeineCacheManager") List<Cache> caffeineCacheManager,
+                                     @Nullable @Qualifier("redisCacheManager") List<Cache> redisCacheManager,
+                                     @Nullable @Qualifier("tieredCacheManager") List<Cache> tieredCacheManager,
+                                     @Nullable @Qualifier("offheapCacheManager") List<Cache> offheapCacheManager) {
+        MultiCacheManager multiCacheManager = new MultiCacheManager(cacheProperties, environment, this::rebuildCache);
 
         List<Cache> caches = new ArrayList<>();
-        caches.addAll(caffeineCacheManager);
-        caches.addAll(redisCacheManager);
+        if (caffeineCacheManager != null) {
+            caches.addAll(metered(caffeineCacheManager, "caffeine"));
+        }
+        if (redisCacheManager != null) {
+            caches.addAll(metered(redisCacheManager, "redis"));
+        }
+        if (tieredCacheManager != null) {
+            caches.addAll(metered(tieredCacheManager, "tiered"));
+        }
+        if (offheapCacheManager != null) {
+            caches.addAll(metered(offheapCacheManager, "offheap"));
+        }
+
+        multiCacheManager.setCaches(caches);
+        return multiCacheManager;
+    }
+
+    /**
+     * Builds a cache from new properties, in place of {@code previous} when not null. Every part of the new cache is
+     * built first, so that a failure leaves the previous cache as it was. Then the scheduled work, write-behind queue,
+     * snapshot and gauges of the previous cache are let go, and the hottest entries of its caffeine (or tiered local)
+     * tier are copied to the new one. Redis entries are not copied, the new cache reads the same keys unless its key
+     * prefix or encoding changed. Off-heap caches start empty.
+     */
+    private synchronized Cache rebuildCache(String type, String name, Object properties, Cache previous) {
+        CacheSnapshot snapshot = snapshots.get(name);
+        if (snapshot != null) {
+            // the new cache loads it, when it keeps taking snapshots
+            snapshot.save();
+        }
+
+        InvalidationBus invalidationBus = beanFactory.getBeanProvider(InvalidationBus.class).getIfAvailable();
+        MultiRedisCache redisCache = null;
+        Cache cache;
+        List<Runnable> published;
+        deferred = new ArrayList<>();
+        try {
+            switch (type) {
+                case "caffeine":
+                    cache = caffeineCache(name, (MultiCacheProperties.CaffeineCacheProperties) properties, invalidationBus);
+                    break;
+                case "redis":
+                    redisCache = newRedisCache(name, (MultiCacheProperties.RedisCacheProperties) properties);
+                    cache = redisCache(redisCache, name, (MultiCacheProperties.RedisCacheProperties) properties);
+                    break;
+                case "tiered":
+                    redisCache = newRedisCache(name, (MultiCacheProperties.RedisCacheProperties) properties);
+                    cache = tieredCache(redisCache, name, (MultiCacheProperties.TieredCacheProperties) properties, invalidationBus);
+                    break;
+                case "offheap":
+                    cache = offHeapCache(name, (MultiCacheProperties.OffHeapCacheProperties) properties, invalidationBus);
+                    break;
+                default:
+                    throw new RuntimeException(String.format("MultiCache: unknown cache type %s for cache %s", type, name));
+            }
+            published = deferred;
+        } finally {
+            deferred = null;
+        }
+
+        List<ScheduledFuture<?>> tasks = scheduledTasks.remove(name);
+        if (tasks != null) {
+            tasks.forEach(task -> task.cancel(false));
+        }
+        WriteBehindCache writeBehindCache = writeBehindCaches.remove(name);
+        if (writeBehindCache != null) {
+            writeBehindCache.close();
+        }
+        snapshots.remove(name);
+        compressingSerializers.remove(name);
+        // the new cache registers gauges with the same names and tags, which would otherwise return the old gauges
+        MeterRegistry meterRegistry = meterRegistry();
+        if (meterRegistry != null) {
+            for (Meter meter : new ArrayList<>(meterRegistry.getMeters())) {
+                if (meter instanceof Gauge && name.equals(meter.getId().getTag("cache"))) {
+                    meterRegistry.remove(meter);
+                }
+            }
+        }
+        if (redisCache != null) {
+            MultiCacheProperties.RedisCacheProperties redisProperties = (MultiCacheProperties.RedisCacheProperties) properties;
+            ((MultiCacheRedisCacheManager) redisManager).replaceCache(redisCache, redisProperties, ttlFunction(redisProperties));
+        }
+        published.forEach(Runnable::run);
 
-        simpleCacheManager.setCaches(caches);
-        return simpleCacheManager;
+        cache = metered(Collections.singletonList(cache), type).get(0);
+        if (previous != null) {
+            migrate(previous, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * Creates the redis cache anew, which {@link #redisCache} then wraps, without replacing it in the shared redis
+     * cache manager yet.
+     */
+    private MultiRedisCache newRedisCache(String name, MultiCacheProperties.RedisCacheProperties properties) {
+        RedisConnectionFactory redisConnectionFactory = beanFactory.getBean(RedisConnectionFactory.class);
+        MultiCacheRedisCacheManager redisCacheManager = (MultiCacheRedisCacheManager) sharedRedisCacheManager(redisConnectionFactory);
+        return redisCacheManager.newCache(name, cacheConfiguration(name, properties), properties, ttlFunction(properties));
+    }
+
+    /**
+     * Copies the hottest entries of the previous cache's caffeine tier to the new cache's, coldest first, so that the
+     * hottest are the last to be evicted when the new cache is smaller. Copied entries start a new expiry period.
+     */
+    private void migrate(Cache previous, Cache cache) {
+        MultiCaffeineCache from = caffeineTier(previous);
+        MultiCaffeineCache to = caffeineTier(cache);
+        if (from == null || to == null) {
+            return;
+        }
+        // applies the buffered reads, which the hottest entries are ranked by
+        from.getNativeCache().cleanUp();
+        long limit = to.getNativeCache().policy().eviction()
+                .filter(eviction -> !eviction.isWeighted())
+                .map(eviction -> eviction.getMaximum())
+                .orElse(Long.MAX_VALUE);
+        List<Map.Entry<Object, Object>> hottest = new ArrayList<>(from.hottest((int) Math.min(Integer.MAX_VALUE, limit)).entrySet());
+        Collections.reverse(hottest);
+        hottest.forEach(entry -> to.getNativeCache().put(entry.getKey(), entry.getValue()));
+        log.info(String.format("MultiCache: copied %d entries of cache %s to its new configuration", hottest.size(), cache.getName()));
+    }
+
+    private static MultiCaffeineCache caffeineTier(Cache cache) {
+        while (!(cache instanceof MultiCaffeineCache)) {
+            if (cache instanceof TieredCache) {
+                cache = ((TieredCache) cache).getLocalCache();
+            } else if (cache instanceof ForwardingCache) {
+                cache = ((ForwardingCache) cache).getDelegate();
+            } else {
+                return null;
+            }
+        }
+        return (MultiCaffeineCache) cache;
+    }
+
+    @Bean
+    public CacheWarmer cacheWarmer(CacheManager cacheManager) {
+        return new CacheWarmer(cacheManager, cacheProperties.getWarmUp(), beanFactory, task -> executor().execute(task), meterRegistry());
+    }
+
+    private List<Cache> metered(List<Cache> caches, String type) {
+        MeterRegistry meterRegistry = meterRegistry();
+        if (meterRegistry == null) {
+            return caches;
+        }
+        List<Cache> meteredCaches = new ArrayList<>();
+        caches.forEach(cache -> meteredCaches.add(new MeteredCache(cache, type, meterRegistry, cacheProperties.getMetrics().getPercentiles(), executor())));
+        return meteredCaches;
+    }
+
+    /**
+     * The executor of all background work (refreshes, async fallbacks, invalidation broadcasts, caffeine maintenance),
+     * instead of the common ForkJoinPool. Not a bean, so that it does not replace the application's task executor.
+     */
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            MultiCacheProperties.ExecutorProperties properties = cacheProperties.getExecutor() != null
+                    ? cacheProperties.getExecutor() : new MultiCacheProperties.ExecutorProperties();
+            executor = MultiCacheExecutors.create(properties, meterRegistry());
+            log.info(String.format("MultiCache: background work runs on %s", properties));
+        }
+        return executor;
+    }
+
+    /**
+     * A single daemon thread that triggers periodic work (write-behind flushes, snapshots), which then runs on the executor.
+     */
+    private synchronized ScheduledExecutorService scheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "multicache-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * Runs the task of a cache every interval on the executor, until the cache is rebuilt or the application stops.
+     */
+    private void schedule(String cacheName, Runnable task, long intervalMillis) {
+        publish(() -> {
+            ScheduledFuture<?> future = scheduler().scheduleWithFixedDelay(() -> executor().execute(task), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            scheduledTasks.computeIfAbsent(cacheName, name -> new ArrayList<>()).add(future);
+        });
+    }
+
+    private void register(Gauge.Builder<?> gauge) {
+        MeterRegistry meterRegistry = meterRegistry();
+        if (meterRegistry != null) {
+            publish(() -> gauge.register(meterRegistry));
+        }
+    }
+
+    /**
+     * Makes a part of a cache being built visible outside of it (scheduled work, gauges, registrations): right away,
+     * or while a cache is rebuilt, once every part of it was built and the previous cache was let go.
+     */
+    private synchronized void publish(Runnable action) {
+        if (deferred != null) {
+            deferred.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    private MeterRegistry meterRegistry() {
+        if (cacheProperties.getMetrics() == null || !cacheProperties.getMetrics().isEnabled()) {
+            return null;
+        }
+        return meterRegistryProvider.getIfAvailable();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        compressingSerializers.forEach( (name, serializer) ->
+                log.info(String.format("MultiCache: redis cache %s compressed %d values with ratio %.2f", name, serializer.getCompressedValues(), serializer.getCompressionRatio())));
+        synchronized (this) {
+            if (scheduler != null) {
+                scheduler.shutdown();
+            }
+            writeBehindCaches.values().forEach(WriteBehindCache::close);
+            snapshots.values().forEach(CacheSnapshot::save);
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
     }
 
 //    @Bean
@@ -144,12 +700,44 @@ public class CacheConfiguration {
             throw new RuntimeException("MultiCache: caffeine caches are enabled, but no caffeine caches are defined in application.properties");
         }
 
-        if (redisCachesExist && caffeineCachesExist) {
-            Set<String> s = new HashSet<>(cacheProperties.getRedis().keySet());
-            s.retainAll(cacheProperties.getCaffeine().keySet());
-            if (s.size() > 0) {
-                throw new RuntimeException("MultiCache: Cache name(s) " + s.toString() + " are defined with different cache types in application.properties");
+        boolean tieredCachesExist = cacheProperties.getTiered() != null && cacheProperties.getTiered().size() > 0;
+        String tieredEnabledString = cacheProperties.getEnableTiered();
+        boolean tieredEnabled = tieredEnabledString != null && "true".equals(tieredEnabledString);
+
+        if (!tieredEnabled && !tieredCachesExist) {
+            log.info("MultiCache: No tiered caches created");
+        }
+        else if (!tieredEnabled && tieredCachesExist) {
+            throw new RuntimeException("MultiCache: tiered cache properties are configured in application.properties but tiered caches are not enabled. Make sure tvg.multicache.enable-tiered=true");
+        }
+        else if (tieredEnabled && !tieredCachesExist) {
+            throw new RuntimeException("MultiCache: tiered caches are enabled, but no tiered caches are defined in application.properties");
+        }
+
+        boolean offheapCachesExist = cacheProperties.getOffheap() != null && cacheProperties.getOffheap().size() > 0;
+        String offheapEnabledString = cacheProperties.getEnableOffheap();
+        boolean offheapEnabled = offheapEnabledString != null && "true".equals(offheapEnabledString);
+
+        if (!offheapEnabled && !offheapCachesExist) {
+            log.info("MultiCache: No off-heap caches created");
+        }
+        else if (!offheapEnabled && offheapCachesExist) {
+            throw new RuntimeException("MultiCache: off-heap cache properties are configured in application.properties but off-heap caches are not enabled. Make sure tvg.multicache.enable-offheap=true");
+        }
+        else if (offheapEnabled && !offheapCachesExist) {
+            throw new RuntimeException("MultiCache: off-heap caches are enabled, but no off-heap caches are defined in application.properties");
+        }
+
+        Set<String> s = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        List<Map<String, ?>> cachesByType = Arrays.asList(cacheProperties.getRedis(), cacheProperties.getCaffeine(), cacheProperties.getTiered(), cacheProperties.getOffheap());
+        for (Map<String, ?> caches : cachesByType) {
+            if (caches != null) {
+                caches.keySet().stream().filter(name -> !seen.add(name)).forEach(s::add);
             }
         }
+        if (s.size() > 0) {
+            throw new RuntimeException("MultiCache: Cache name(s) " + s.toString() + " are defined with different cache types in application.properties");
+        }
     }
 }
\ No newline at end of file
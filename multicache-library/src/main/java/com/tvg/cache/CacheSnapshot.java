@@ -0,0 +1,229 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Saves the hottest entries of a caffeine cache to a file, and loads them back when the application starts, so that
+ * a restarted node does not begin with an empty cache.
+ * <p>
+ * The file holds up to {@code max-entries} entries: the most frequently used ones for a size bounded cache, the
+ * most recently used ones for a cache that expires after access, any entries otherwise. Each key and value is
+ * serialized and written with its length, so that an entry that cannot be read back (its class changed) is skipped
+ * on its own. A file is written next to the snapshot and then moved over it, so a crash never leaves half a snapshot.
+ * Loaded entries start a new expiry period; a snapshot older than {@code max-age} is not loaded.
+ * <p>
+ * Where the file system has posix permissions, a missing directory is created for the owner only and so is the
+ * file, and a snapshot owned by another user or writable by other users is not loaded, since loading it
+ * deserializes its content.
+ */
+public class CacheSnapshot {
+
+    private static final int MAGIC = 0x4D43534E; // "MCSN"
+    private static final int VERSION = 1;
+    private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY = EnumSet.of(
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE, PosixFilePermission.OWNER_EXECUTE);
+    private static final Set<PosixFilePermission> OWNER_ONLY_FILE = EnumSet.of(
+            PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE);
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final MultiCaffeineCache cache;
+    private final Path file;
+    private final MultiCacheProperties.SnapshotProperties properties;
+    private final RedisSerializer<Object> serializer;
+
+    public CacheSnapshot(MultiCaffeineCache cache, Path file, MultiCacheProperties.SnapshotProperties properties,
+                         RedisSerializer<Object> serializer) {
+        this.cache = cache;
+        this.file = file;
+        this.properties = properties;
+        this.serializer = serializer;
+    }
+
+    public Path getFile() { return file; }
+
+    /**
+     * Loads the snapshot into the cache, without replacing entries the cache already has.
+     *
+     * @return the number of entries loaded
+     */
+    public int load() {
+        if (!Files.isRegularFile(file)) {
+            return 0;
+        }
+        try {
+            if (!trusted(file)) {
+                log.warn(String.format("MultiCache: not loading snapshot %s of caffeine cache %s, it is owned by another user or writable by other users", file, cache.getName()));
+                return 0;
+            }
+            Duration age = Duration.ofMillis(System.currentTimeMillis() - Files.getLastModifiedTime(file).toMillis());
+            if (age.compareTo(properties.getMaxAge()) > 0) {
+                log.info(String.format("MultiCache: not loading snapshot %s of caffeine cache %s, it is %d s old", file, cache.getName(), age.getSeconds()));
+                return 0;
+            }
+        } catch (IOException e) {
+            log.warn(String.format("MultiCache: cannot read snapshot %s of caffeine cache %s", file, cache.getName()), e);
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        Map<Object, Object> entries = new HashMap<>();
+        int skipped = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                log.warn(String.format("MultiCache: ignoring snapshot %s of caffeine cache %s, it is not a snapshot of this version", file, cache.getName()));
+                return 0;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count && entries.size() < properties.getMaxEntries(); i++) {
+                byte[] key = readBytes(in);
+                byte[] value = readBytes(in);
+                try {
+                    entries.put(serializer.deserialize(key), serializer.deserialize(value));
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        } catch (EOFException e) {
+            log.warn(String.format("MultiCache: snapshot %s of caffeine cache %s is truncated, loading the entries before the end", file, cache.getName()));
+        } catch (IOException e) {
+            log.warn(String.format("MultiCache: cannot read snapshot %s of caffeine cache %s", file, cache.getName()), e);
+            return 0;
+        }
+
+        entries.forEach(cache.getNativeCache().asMap()::putIfAbsent);
+        log.info(String.format("MultiCache: loaded %d entries of caffeine cache %s from %s in %d ms (%d unreadable)",
+                entries.size(), cache.getName(), file, (System.nanoTime() - start) / 1_000_000, skipped));
+        return entries.size();
+    }
+
+    /**
+     * Writes the hottest entries of the cache to the snapshot file.
+     *
+     * @return the number of entries written
+     */
+    public synchronized int save() {
+        long start = System.nanoTime();
+        Map<Object, Object> entries = cache.hottest(properties.getMaxEntries());
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try {
+            createDirectory(file.toAbsolutePath().getParent());
+            Files.deleteIfExists(temporary);
+            if (posix(temporary)) {
+                Files.createFile(temporary, PosixFilePermissions.asFileAttribute(OWNER_ONLY_FILE));
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                byte[][] keys = new byte[entries.size()][];
+                byte[][] values = new byte[entries.size()][];
+                for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                    try {
+                        keys[written] = serializer.serialize(entry.getKey());
+                        values[written] = serializer.serialize(entry.getValue());
+                        written++;
+                    } catch (RuntimeException e) {
+                        log.debug(String.format("MultiCache: cannot snapshot key %s of caffeine cache %s", entry.getKey(), cache.getName()), e);
+                    }
+                }
+                out.writeInt(written);
+                for (int i = 0; i < written; i++) {
+                    writeBytes(out, keys[i]);
+                    writeBytes(out, values[i]);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn(String.format("MultiCache: cannot write snapshot %s of caffeine cache %s", file, cache.getName()), e);
+            return 0;
+        }
+        log.debug(String.format("MultiCache: saved %d entries of caffeine cache %s to %s in %d ms",
+                written, cache.getName(), file, (System.nanoTime() - start) / 1_000_000));
+        return written;
+    }
+
+    private static void createDirectory(Path directory) throws IOException {
+        if (Files.isDirectory(directory)) {
+            return;
+        }
+        Path parent = directory.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (posix(parent != null ? parent : directory)) {
+            Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+        } else {
+            Files.createDirectory(directory);
+        }
+    }
+
+    private static boolean trusted(Path file) throws IOException {
+        if (!posix(file)) {
+            return true;
+        }
+        PosixFileAttributes attributes = Files.readAttributes(file, PosixFileAttributes.class);
+        if (attributes.permissions().contains(PosixFilePermission.GROUP_WRITE) || attributes.permissions().contains(PosixFilePermission.OTHERS_WRITE)) {
+            return false;
+        }
+        return attributes.owner().equals(processOwner(file));
+    }
+
+    /**
+     * The user the process runs as, which owns the files it creates.
+     */
+    private static UserPrincipal processOwner(Path file) throws IOException {
+        Path probe = Files.createTempFile(file.toAbsolutePath().getParent(), ".owner", ".tmp");
+        try {
+            return Files.getOwner(probe);
+        } finally {
+            Files.deleteIfExists(probe);
+        }
+    }
+
+    private static boolean posix(Path path) {
+        return path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("negative length " + length);
+        }
+        if (length > in.available()) {
+            // a truncated file, or a corrupt length that would allocate an array larger than the file
+            throw new EOFException(String.format("length %d is more than the %d bytes left", length, in.available()));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
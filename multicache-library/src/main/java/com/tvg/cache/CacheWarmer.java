@@ -0,0 +1,328 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the keys configured under {@code warm-up} into their caches when the application starts, before the web
+ * server takes traffic.
+ * <p>
+ * For each cache, the {@code keys} method (a {@code beanName.methodName} without parameters, returning a collection,
+ * iterable or array) supplies the keys. The keys are split into batches of {@code batch-size}, and up to
+ * {@code concurrency} batches load at once on the multicache executor. A batch reads the keys that are already
+ * cached with a single bulk read, and loads the others with the {@code loader} method: one call per key when it
+ * takes a key, or one call per batch when it takes an iterable of keys. A batch loader returns a map of keys to
+ * values, or an iterable of values whose {@code key-property} holds their key (a repository's {@code findAllById}).
+ */
+public class CacheWarmer implements SmartLifecycle {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final CacheManager cacheManager;
+    private final Map<String, MultiCacheProperties.WarmUpProperties> warmUps;
+    private final BeanFactory beanFactory;
+    private final Executor executor;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Double> coverage = new LinkedHashMap<>();
+    private volatile boolean running;
+
+    /**
+     * @param meterRegistry when not null, the warm-up of each cache is reported as the {@code cache.warmup.duration}
+     *                      timer and the {@code cache.warmup.coverage} gauge (cached keys / supplied keys)
+     */
+    public CacheWarmer(CacheManager cacheManager, Map<String, MultiCacheProperties.WarmUpProperties> warmUps,
+                       BeanFactory beanFactory, Executor executor, MeterRegistry meterRegistry) {
+        this.cacheManager = cacheManager;
+        this.warmUps = warmUps;
+        this.beanFactory = beanFactory;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * The fraction of its supplied keys each warmed up cache held when its warm-up ended.
+     */
+    public synchronized Map<String, Double> getCoverage() {
+        return new LinkedHashMap<>(coverage);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (warmUps == null) {
+            return;
+        }
+        warmUps.forEach(this::warmUp);
+    }
+
+    void warmUp(String cacheName, MultiCacheProperties.WarmUpProperties properties) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache == null) {
+            throw new RuntimeException(String.format("MultiCache: warm-up is configured for cache %s, but there is no cache with that name", cacheName));
+        }
+        if (properties.getKeys() == null || properties.getLoader() == null) {
+            throw new RuntimeException(String.format("MultiCache: warm-up of cache %s needs both keys and loader in application.properties", cacheName));
+        }
+        if (properties.getBatchSize() < 1 || properties.getConcurrency() < 1) {
+            throw new RuntimeException(String.format("MultiCache: warm-up of cache %s needs a positive batch-size and concurrency, got %s", cacheName, properties));
+        }
+
+        long start = System.nanoTime();
+        try {
+            List<Object> keys = keys(cacheName, properties.getKeys());
+            Loader loader = loader(cacheName, properties.getLoader(), properties.getKeyProperty());
+            Counts counts = load(MultiKeyCache.of(cache), keys, loader, properties);
+            long elapsed = System.nanoTime() - start;
+            double covered = keys.isEmpty() ? 1 : (double) (counts.cached.get() + counts.loaded.get()) / keys.size();
+            report(cacheName, covered, elapsed);
+            log.info(String.format("MultiCache: warmed up cache %s in %d ms: %d keys, %d already cached, %d loaded, %d failed or without a value, %d not loaded in time (coverage %.1f%%)",
+                    cacheName, TimeUnit.NANOSECONDS.toMillis(elapsed), keys.size(), counts.cached.get(), counts.loaded.get(),
+                    counts.failed.get(), counts.timedOut, covered * 100));
+            if (counts.failed.get() + counts.timedOut > 0 && properties.isFailOnError()) {
+                throw new RuntimeException(String.format("MultiCache: warm-up of cache %s did not load %d keys", cacheName, counts.failed.get() + counts.timedOut));
+            }
+        } catch (RuntimeException e) {
+            if (properties.isFailOnError()) {
+                throw e;
+            }
+            log.warn(String.format("MultiCache: warm-up of cache %s failed, starting with the cache as it is", cacheName), e);
+        }
+    }
+
+    private Counts load(MultiKeyCache cache, List<Object> keys, Loader loader, MultiCacheProperties.WarmUpProperties properties) {
+        Counts counts = new Counts();
+        Semaphore permits = new Semaphore(properties.getConcurrency());
+        List<CompletableFuture<Void>> batches = new ArrayList<>();
+        long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+        for (int from = 0; from < keys.size(); from += properties.getBatchSize()) {
+            List<Object> batch = keys.subList(from, Math.min(keys.size(), from + properties.getBatchSize()));
+            try {
+                if (!permits.tryAcquire(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    counts.timedOut += keys.size() - from;
+                    break;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                counts.timedOut += keys.size() - from;
+                break;
+            }
+            batches.add(CompletableFuture.runAsync(() -> {
+                try {
+                    loadBatch(cache, batch, loader, counts);
+                } finally {
+                    permits.release();
+                }
+            }, executor));
+        }
+
+        try {
+            CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0]))
+                    .get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            log.warn(String.format("MultiCache: warm-up of cache %s did not finish within %s, not waiting for the rest", cache.getName(), properties.getTimeout()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // failed batches are counted, and logged by loadBatch
+        }
+        return counts;
+    }
+
+    private void loadBatch(MultiKeyCache cache, List<Object> batch, Loader loader, Counts counts) {
+        try {
+            Map<Object, Object> cached = cache.getAll(batch);
+            counts.cached.addAndGet(cached.size());
+            Set<Object> missing = new LinkedHashSet<>(batch);
+            missing.removeAll(cached.keySet());
+            if (missing.isEmpty()) {
+                return;
+            }
+
+            Map<Object, Object> loaded = loader.load(missing);
+            Map<Object, Object> toCache = new LinkedHashMap<>();
+            loaded.forEach( (key, value) -> {
+                if (value != null) {
+                    toCache.put(key, value);
+                }
+            });
+            cache.putAll(toCache);
+            counts.loaded.addAndGet(toCache.size());
+            counts.failed.addAndGet(missing.size() - toCache.size());
+        } catch (RuntimeException e) {
+            counts.failed.addAndGet(batch.size());
+            log.warn(String.format("MultiCache: warm-up of cache %s failed to load a batch of %d keys: %s", cache.getName(), batch.size(), e));
+        }
+    }
+
+    private void report(String cacheName, double covered, long elapsedNanos) {
+        synchronized (this) {
+            coverage.put(cacheName, covered);
+        }
+        if (meterRegistry != null) {
+            Timer.builder("cache.warmup.duration")
+                    .tag("cache", cacheName)
+                    .description("time taken to warm up the cache at startup")
+                    .register(meterRegistry)
+                    .record(elapsedNanos, TimeUnit.NANOSECONDS);
+            Gauge.builder("cache.warmup.coverage", this, warmer -> warmer.getCoverage().getOrDefault(cacheName, 0d))
+                    .tag("cache", cacheName)
+                    .description("fraction of the warm-up keys that were cached when the warm-up ended")
+                    .register(meterRegistry);
+        }
+    }
+
+    private List<Object> keys(String cacheName, String methodReference) {
+        Object keys = new BeanMethod(cacheName, methodReference, 0).invoke();
+        if (keys == null) {
+            return new ArrayList<>();
+        }
+        if (keys instanceof Object[]) {
+            return new ArrayList<>(new LinkedHashSet<>(Arrays.asList((Object[]) keys)));
+        }
+        if (keys instanceof Iterable) {
+            Set<Object> distinct = new LinkedHashSet<>();
+            ((Iterable<?>) keys).forEach(distinct::add);
+            return new ArrayList<>(distinct);
+        }
+        throw new RuntimeException(String.format("MultiCache: warm-up keys method %s of cache %s must return a collection, iterable or array, not %s",
+                methodReference, cacheName, keys.getClass().getName()));
+    }
+
+    private Loader loader(String cacheName, String methodReference, String keyProperty) {
+        BeanMethod loader = new BeanMethod(cacheName, methodReference, 1);
+        Class<?> parameterType = loader.method.getParameterTypes()[0];
+        if (Iterable.class.isAssignableFrom(parameterType)) {
+            boolean takesSet = parameterType.isAssignableFrom(LinkedHashSet.class);
+            if (!takesSet && !parameterType.isAssignableFrom(ArrayList.class)) {
+                throw new RuntimeException(String.format("MultiCache: warm-up loader %s of cache %s takes a %s, it must take an iterable, collection, list or set of keys",
+                        methodReference, cacheName, parameterType.getName()));
+            }
+            Class<?> returnType = loader.method.getReturnType();
+            if (!Map.class.isAssignableFrom(returnType) && !Iterable.class.isAssignableFrom(returnType)) {
+                throw new RuntimeException(String.format("MultiCache: warm-up loader %s of cache %s takes keys, so it must return a map or an iterable of values",
+                        methodReference, cacheName));
+            }
+            if (!Map.class.isAssignableFrom(returnType) && keyProperty == null) {
+                throw new RuntimeException(String.format("MultiCache: warm-up loader %s of cache %s returns values without their keys, it needs the key-property of the values",
+                        methodReference, cacheName));
+            }
+            return keys -> values(loader.invoke(takesSet ? keys : new ArrayList<>(keys)), keyProperty);
+        }
+        return keys -> {
+            Map<Object, Object> values = new LinkedHashMap<>();
+            for (Object key : keys) {
+                values.put(key, loader.invoke(key));
+            }
+            return values;
+        };
+    }
+
+    /**
+     * The map a batch loader returned, or the iterable of values it returned, keyed by their key property.
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> values(Object loaded, String keyProperty) {
+        if (loaded == null) {
+            return new LinkedHashMap<>();
+        }
+        if (loaded instanceof Map) {
+            return (Map<Object, Object>) loaded;
+        }
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object value : (Iterable<?>) loaded) {
+            if (value != null) {
+                values.put(new BeanWrapperImpl(value).getPropertyValue(keyProperty), value);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Late among lifecycle beans, so that the application's own lifecycle beans (listener containers, schedulers)
+     * are running when the loaders are called. The phase does not order the warm-up against the web server: on
+     * Spring Boot 2.1 the embedded web server starts in {@code finishRefresh}, after every lifecycle bean has
+     * started, and {@link #start()} only returns once the warm-up is done, so traffic arrives after it.
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 100;
+    }
+
+    /**
+     * The public method of the bean named by {@code beanName.methodName}, taking {@code parameterCount} parameters.
+     */
+    private class BeanMethod {
+        private final Object bean;
+        private final Method method;
+
+        BeanMethod(String cacheName, String methodReference, int parameterCount) {
+            int dot = methodReference.lastIndexOf('.');
+            if (dot <= 0 || dot == methodReference.length() - 1) {
+                throw new RuntimeException(String.format("MultiCache: warm-up of cache %s refers to %s, which is not a beanName.methodName", cacheName, methodReference));
+            }
+            this.bean = beanFactory.getBean(methodReference.substring(0, dot));
+            String methodName = methodReference.substring(dot + 1);
+            this.method = Arrays.stream(bean.getClass().getMethods())
+                    .filter(method -> method.getName().equals(methodName) && method.getParameterCount() == parameterCount)
+                    .findFirst()
+                    .orElseThrow(() -> new RuntimeException(String.format("MultiCache: warm-up of cache %s refers to %s, but that bean has no public method %s with %d parameter(s)",
+                            cacheName, methodReference, methodName, parameterCount)));
+        }
+
+        Object invoke(Object... arguments) {
+            try {
+                return method.invoke(bean, arguments);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private interface Loader {
+        Map<Object, Object> load(Set<Object> keys);
+    }
+
+    private static class Counts {
+        private final AtomicInteger cached = new AtomicInteger();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private int timedOut;
+    }
+}
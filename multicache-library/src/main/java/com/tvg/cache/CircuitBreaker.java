@@ -0,0 +1,85 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Consecutive-failure circuit breaker. Once open, it rejects calls for the open duration, then lets a single trial
+ * call through (half open): the circuit closes if the trial succeeds, and opens again if it fails.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final String name;
+    private final long latencyBudgetNanos;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openedAt;
+
+    public CircuitBreaker(String name, MultiCacheProperties.CircuitBreakerProperties properties) {
+        this.name = name;
+        this.latencyBudgetNanos = properties.getLatencyBudget().toNanos();
+        this.failureThreshold = Math.max(1, properties.getFailureThreshold());
+        this.openDurationNanos = properties.getOpenDuration().toNanos();
+    }
+
+    public State getState() { return state.get(); }
+
+    /**
+     * Whether a call may go through. When this returns true, the caller must report the call's outcome.
+     */
+    public boolean allowRequest() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        return current == State.OPEN && System.nanoTime() - openedAt >= openDurationNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Reports a call that went through. Calls slower than the latency budget count as failures.
+     *
+     * @return true if this call closed the circuit
+     */
+    public boolean onSuccess(long elapsedNanos) {
+        if (latencyBudgetNanos > 0 && elapsedNanos > latencyBudgetNanos) {
+            onFailure();
+            return false;
+        }
+        consecutiveFailures.set(0);
+        if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+            log.info(String.format("MultiCache: circuit of redis cache %s closed", name));
+            return true;
+        }
+        return false;
+    }
+
+    public void onFailure() {
+        // openedAt is set before the state changes, so that no thread sees an open circuit with an old openedAt
+        if (state.get() == State.HALF_OPEN) {
+            openedAt = System.nanoTime();
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() < failureThreshold || state.get() != State.CLOSED) {
+            return;
+        }
+        openedAt = System.nanoTime();
+        if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+            log.warn(String.format("MultiCache: circuit of redis cache %s opened after %d consecutive failures, retrying in %d ms",
+                    name, failureThreshold, TimeUnit.NANOSECONDS.toMillis(openDurationNanos)));
+        }
+    }
+}
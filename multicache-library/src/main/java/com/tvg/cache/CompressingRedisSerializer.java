@@ -0,0 +1,204 @@
+package com.tvg.cache;
+
+import com.github.luben.zstd.Zstd;
+import net.jpountz.lz4.LZ4Factory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses serialized values that are larger than a threshold.
+ * <p>
+ * Every value starts with a four byte magic and a codec byte telling how the rest was stored, so values below the
+ * threshold, values that did not shrink and compressed values can live side by side. Compressed values store their
+ * original length after the codec byte. Values written before compression was enabled do not start with the magic,
+ * so they are handed to the wrapped serializer as they are.
+ * <p>
+ * Redis contents are not trusted: a stored length more than {@code MAX_RATIO} times the compressed size is refused
+ * before anything is allocated. Values that would compress better than that are stored uncompressed instead.
+ */
+public class CompressingRedisSerializer implements RedisSerializer<Object> {
+
+    // unlikely start of a value written by any serializer: not a jdk stream, json, smile or a small kryo class id
+    private static final byte[] MAGIC = {(byte) 0xF3, 'M', 'C', 'Z'};
+    private static final int HEADER = MAGIC.length + 1;
+    // above gzip's best ratio (about 1032:1 on the payload, less with its header) and lz4's (255:1)
+    static final int MAX_RATIO = 1024;
+
+    static final byte RAW = 0;
+    static final byte GZIP = 1;
+    static final byte LZ4 = 2;
+    static final byte ZSTD = 3;
+
+    private static final LZ4Factory lz4 = LZ4Factory.fastestInstance();
+
+    private final RedisSerializer<Object> delegate;
+    private final MultiCacheProperties.Compression compression;
+    private final int threshold;
+
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder uncompressedBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+
+    public CompressingRedisSerializer(RedisSerializer<Object> delegate, MultiCacheProperties.Compression compression, int threshold) {
+        this.delegate = delegate;
+        this.compression = compression;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length >= threshold) {
+            byte[] compressed = compress(bytes);
+            if (compressed.length < bytes.length && bytes.length <= maxLength(compressed.length - HEADER - 4)) {
+                compressedValues.increment();
+                uncompressedBytes.add(bytes.length);
+                compressedBytes.add(compressed.length);
+                return compressed;
+            }
+        }
+
+        return ByteBuffer.allocate(bytes.length + HEADER)
+                .put(MAGIC)
+                .put(RAW)
+                .put(bytes)
+                .array();
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (!hasMagic(bytes)) {
+            return delegate.deserialize(bytes);
+        }
+        switch (bytes[MAGIC.length]) {
+            case RAW:
+                return delegate.deserialize(Arrays.copyOfRange(bytes, HEADER, bytes.length));
+            case GZIP:
+            case LZ4:
+            case ZSTD:
+                return delegate.deserialize(decompress(bytes));
+            default:
+                throw new SerializationException("Unknown compression codec " + bytes[MAGIC.length] + " of cache value");
+        }
+    }
+
+    private static boolean hasMagic(byte[] bytes) {
+        if (bytes == null || bytes.length < HEADER) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte[] compress(byte[] bytes) {
+        byte[] payload;
+        byte header;
+        switch (compression) {
+            case LZ4:
+                header = LZ4;
+                payload = lz4.fastCompressor().compress(bytes);
+                break;
+            case ZSTD:
+                header = ZSTD;
+                payload = Zstd.compress(bytes);
+                break;
+            case GZIP:
+            default:
+                header = GZIP;
+                payload = gzip(bytes);
+                break;
+        }
+        return ByteBuffer.allocate(payload.length + HEADER + 4)
+                .put(MAGIC)
+                .put(header)
+                .putInt(bytes.length)
+                .put(payload)
+                .array();
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        if (bytes.length < HEADER + 4) {
+            throw new SerializationException("Truncated compressed cache value");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, MAGIC.length, bytes.length - MAGIC.length);
+        byte header = buffer.get();
+        int length = buffer.getInt();
+        if (length < 0) {
+            throw new SerializationException("Negative length " + length + " of compressed cache value");
+        }
+        if (length > maxLength(bytes.length - HEADER - 4)) {
+            throw new SerializationException("Length " + length + " of compressed cache value exceeds " + MAX_RATIO + " times its "
+                    + (bytes.length - HEADER - 4) + " compressed bytes");
+        }
+        byte[] payload = Arrays.copyOfRange(bytes, HEADER + 4, bytes.length);
+        switch (header) {
+            case LZ4:
+                return lz4.fastDecompressor().decompress(payload, length);
+            case ZSTD:
+                return Zstd.decompress(payload, length);
+            case GZIP:
+            default:
+                return gunzip(payload, length);
+        }
+    }
+
+    private static long maxLength(int payloadLength) {
+        return (long) payloadLength * MAX_RATIO;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot gzip cache value", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gunzip(byte[] payload, int length) {
+        byte[] bytes = new byte[length];
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            int read = 0;
+            while (read < length) {
+                int n = gzip.read(bytes, read, length - read);
+                if (n < 0) {
+                    throw new SerializationException("Truncated gzip cache value");
+                }
+                read += n;
+            }
+        } catch (IOException e) {
+            throw new SerializationException("Cannot gunzip cache value", e);
+        }
+        return bytes;
+    }
+
+    /**
+     * Number of values written compressed since startup.
+     */
+    public long getCompressedValues() { return compressedValues.sum(); }
+
+    /**
+     * Size of the compressed values before compression divided by their size after compression; 1.0 until a value was compressed.
+     */
+    public double getCompressionRatio() {
+        long compressed = compressedBytes.sum();
+        return compressed == 0 ? 1.0 : (double) uncompressedBytes.sum() / compressed;
+    }
+}
@@ -0,0 +1,52 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Async view of a cache without non-blocking operations: its blocking calls run on an executor, so that at least
+ * the caller's thread does not wait for them.
+ */
+public class ExecutorAsyncCache implements AsyncMultiCache {
+
+    private final Cache cache;
+    private final Executor executor;
+    private final AsyncLoads loads = new AsyncLoads();
+
+    public ExecutorAsyncCache(Cache cache, Executor executor) {
+        this.cache = cache;
+        this.executor = executor;
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public CompletableFuture<ValueWrapper> get(Object key) {
+        return CompletableFuture.supplyAsync(() -> cache.get(key), executor);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+        return get(key).thenCompose(value -> value != null
+                ? CompletableFuture.completedFuture((T) value.get())
+                : loads.load(key, loader, this::put));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(Object key, Object value) {
+        return CompletableFuture.runAsync(() -> cache.put(key, value), executor);
+    }
+
+    @Override
+    public CompletableFuture<Void> evict(Object key) {
+        return CompletableFuture.runAsync(() -> cache.evict(key), executor);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+/**
+ * Base class for cache decorators. Forwards every call to the wrapped cache, including bulk calls when the
+ * wrapped cache is a {@link MultiKeyCache} (otherwise bulk calls are split into one call per key). The async view
+ * is the wrapped cache's; decorators that must see async calls override {@link #async()}.
+ */
+public abstract class ForwardingCache implements MultiKeyCache, AsyncMultiCache.Provider {
+
+    private final Cache delegate;
+    private final Executor executor;
+
+    /**
+     * @param executor runs the blocking calls of the async view when the wrapped cache has no async view of its own
+     */
+    protected ForwardingCache(Cache delegate, Executor executor) {
+        this.delegate = delegate;
+        this.executor = executor;
+    }
+
+    public Cache getDelegate() { return delegate; }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return delegate.get(key, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return delegate.get(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        delegate.put(key, value);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        delegate.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        return AsyncMultiCache.of(delegate, executor);
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        if (delegate instanceof MultiKeyCache) {
+            return ((MultiKeyCache) delegate).getAll(keys);
+        }
+        return MultiKeyCache.super.getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        if (delegate instanceof MultiKeyCache) {
+            ((MultiKeyCache) delegate).putAll(entries);
+        } else {
+            MultiKeyCache.super.putAll(entries);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Counts the reads of a redis cache per key with a {@link HotKeyTracker}. When {@code promote} is on, hot keys are
+ * read through a small local cache with a short time to live, so that their reads stop reaching redis (and the one
+ * shard that holds them). Writes and evictions on this node drop the local copy; writes on other nodes are seen
+ * once it expires.
+ */
+public class HotKeyCache extends ForwardingCache {
+
+    private final HotKeyTracker tracker;
+    private final MultiCaffeineCache local;
+
+    /**
+     * @param local the cache hot keys are promoted to, or null to only track them
+     */
+    public HotKeyCache(Cache delegate, HotKeyTracker tracker, MultiCaffeineCache local, Executor executor) {
+        super(delegate, executor);
+        this.tracker = tracker;
+        this.local = local;
+    }
+
+    public HotKeyTracker getTracker() { return tracker; }
+
+    /**
+     * The hot keys of this cache with their estimated recent reads, most frequent first.
+     */
+    public Map<Object, Integer> getHotKeys() {
+        return tracker.getHotKeys();
+    }
+
+    /**
+     * The number of hot keys currently held locally.
+     */
+    public long getPromotedKeys() {
+        return local != null ? local.getNativeCache().estimatedSize() : 0;
+    }
+
+    private boolean promoted(Object key) {
+        tracker.record(key);
+        return local != null && tracker.isHot(key);
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        if (!promoted(key)) {
+            return super.get(key);
+        }
+        ValueWrapper value = local.get(key);
+        if (value == null) {
+            value = super.get(key);
+            if (value != null) {
+                local.put(key, value.get());
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        if (!promoted(key)) {
+            return super.get(key, type);
+        }
+        ValueWrapper value = get(key);
+        Object stored = value != null ? value.get() : null;
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (!promoted(key)) {
+            return super.get(key, valueLoader);
+        }
+        try {
+            return local.get(key, () -> super.get(key, valueLoader));
+        } catch (ValueRetrievalException ex) {
+            // the local cache wraps the redis cache's exception again; callers expect the loader's exception as cause
+            if (ex.getCause() instanceof ValueRetrievalException) {
+                throw (ValueRetrievalException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> values = new LinkedHashMap<>();
+        List<Object> remote = new ArrayList<>();
+        List<Object> hot = new ArrayList<>();
+        for (Object key : keys) {
+            ValueWrapper value = promoted(key) ? local.get(key) : null;
+            if (value != null) {
+                values.put(key, value.get());
+            } else {
+                remote.add(key);
+                if (local != null && tracker.isHot(key)) {
+                    hot.add(key);
+                }
+            }
+        }
+        if (!remote.isEmpty()) {
+            Map<Object, Object> found = super.getAll(remote);
+            hot.stream().filter(found::containsKey).forEach(key -> local.put(key, found.get(key)));
+            values.putAll(found);
+        }
+
+        Map<Object, Object> ordered = new LinkedHashMap<>();
+        for (Object key : keys) {
+            if (values.containsKey(key)) {
+                ordered.put(key, values.get(key));
+            }
+        }
+        return ordered;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        super.put(key, value);
+        evictLocal(key);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        super.putAll(entries);
+        entries.keySet().forEach(this::evictLocal);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = super.putIfAbsent(key, value);
+        evictLocal(key);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        evictLocal(key);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        if (local != null) {
+            local.clear();
+        }
+    }
+
+    private void evictLocal(Object key) {
+        if (local != null) {
+            local.evict(key);
+        }
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        AsyncMultiCache delegate = super.async();
+        return new AsyncMultiCache() {
+            @Override
+            public String getName() {
+                return delegate.getName();
+            }
+
+            @Override
+            public CompletableFuture<ValueWrapper> get(Object key) {
+                if (!promoted(key)) {
+                    return delegate.get(key);
+                }
+                ValueWrapper value = local.get(key);
+                if (value != null) {
+                    return CompletableFuture.completedFuture(value);
+                }
+                return delegate.get(key).thenApply(found -> {
+                    if (found != null) {
+                        local.put(key, found.get());
+                    }
+                    return found;
+                });
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+                if (!promoted(key)) {
+                    return delegate.get(key, loader);
+                }
+                ValueWrapper value = local.get(key);
+                if (value != null) {
+                    return CompletableFuture.completedFuture((T) value.get());
+                }
+                return delegate.get(key, loader).thenApply(loaded -> {
+                    local.put(key, loaded);
+                    return loaded;
+                });
+            }
+
+            @Override
+            public CompletableFuture<Void> put(Object key, Object value) {
+                return delegate.put(key, value).thenRun(() -> evictLocal(key));
+            }
+
+            @Override
+            public CompletableFuture<Void> evict(Object key) {
+                return delegate.evict(key).thenRun(() -> evictLocal(key));
+            }
+        };
+    }
+}
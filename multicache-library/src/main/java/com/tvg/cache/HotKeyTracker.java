@@ -0,0 +1,211 @@
+package com.tvg.cache;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Estimates how often each key of a cache is read, in a fixed amount of memory, and keeps the most frequent keys.
+ * <p>
+ * Frequencies are counted in a count-min sketch (4 rows of counters; a key's estimate is the smallest of its 4
+ * counters, so it can only be overestimated, by collisions with other keys). Keys whose estimate reaches the
+ * smallest estimate of the current top keys become candidates; {@link #decay()} halves every counter, so that
+ * old traffic fades, and trims the candidates back to the top {@code tracked} keys.
+ * <p>
+ * As in caffeine, a read only appends its key to a small ring buffer picked by the reading thread. A full buffer
+ * is drained into the sketch by whichever thread gets the drain lock; reads arriving at a full buffer while another
+ * thread drains are not counted, so that under heavy contention the reads are sampled instead of serialized.
+ */
+public class HotKeyTracker {
+
+    private static final int DEPTH = 4;
+    private static final int BUFFER_SIZE = 16;
+    private static final int BUFFERS = ceilingPowerOfTwo(4 * Runtime.getRuntime().availableProcessors());
+
+    private final int tracked;
+    private final int minFrequency;
+    private final int mask;
+    private final int[] counters; //guarded by drainLock
+    private final ReadBuffer[] buffers = new ReadBuffer[BUFFERS];
+    private final ReentrantLock drainLock = new ReentrantLock();
+    private final Map<Object, Integer> candidates = new ConcurrentHashMap<>();
+    private int admission = 1; //guarded by drainLock
+
+    /**
+     * @param tracked      how many of the most frequent keys to keep
+     * @param minFrequency the estimated reads (since the counters were last halved) that make a top key hot
+     */
+    public HotKeyTracker(int tracked, int minFrequency) {
+        this.tracked = Math.max(1, tracked);
+        this.minFrequency = Math.max(1, minFrequency);
+        int width = Integer.highestOneBit(Math.max(1024, this.tracked * 64) - 1) << 1;
+        this.mask = width - 1;
+        this.counters = new int[DEPTH * width];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * Counts a read of the key.
+     */
+    public void record(Object key) {
+        ReadBuffer buffer = buffers[(int) Thread.currentThread().getId() & (buffers.length - 1)];
+        if (buffer.offer(key) == ReadBuffer.FULL && drainLock.tryLock()) {
+            try {
+                drain();
+            } finally {
+                drainLock.unlock();
+            }
+            buffer.offer(key);
+        }
+    }
+
+    /**
+     * Whether the key is one of the most frequent keys, and read at least {@code minFrequency} times.
+     */
+    public boolean isHot(Object key) {
+        Integer estimate = candidates.get(key);
+        return estimate != null && estimate >= minFrequency;
+    }
+
+    /**
+     * The hot keys with their estimated reads, most frequent first.
+     */
+    public Map<Object, Integer> getHotKeys() {
+        drainLock.lock();
+        try {
+            drain();
+        } finally {
+            drainLock.unlock();
+        }
+        Map<Object, Integer> hotKeys = new LinkedHashMap<>();
+        sortedCandidates().stream()
+                .filter(candidate -> candidate.getValue() >= minFrequency)
+                .limit(tracked)
+                .forEach(candidate -> hotKeys.put(candidate.getKey(), candidate.getValue()));
+        return hotKeys;
+    }
+
+    /**
+     * Counts the buffered reads, halves every counter and every candidate's estimate, then keeps only the top candidates.
+     */
+    public void decay() {
+        drainLock.lock();
+        try {
+            drain();
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] >>>= 1;
+            }
+            candidates.replaceAll( (key, estimate) -> estimate >>> 1);
+            candidates.values().removeIf(estimate -> estimate == 0);
+            trim();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private void drain() {
+        for (ReadBuffer buffer : buffers) {
+            buffer.drainTo(this::count);
+        }
+    }
+
+    private void count(Object key) {
+        long hash = spread(key);
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            int index = index(hash, row);
+            if (counters[index] < Integer.MAX_VALUE) {
+                counters[index]++;
+            }
+            estimate = Math.min(estimate, counters[index]);
+        }
+        // until the next decay trims them, other new candidates are admitted only while there is room
+        if (estimate >= admission && (candidates.size() < 4 * tracked || estimate >= minFrequency || candidates.containsKey(key))) {
+            candidates.put(key, estimate);
+        }
+    }
+
+    private void trim() {
+        List<Map.Entry<Object, Integer>> sorted = sortedCandidates();
+        for (int i = tracked; i < sorted.size(); i++) {
+            candidates.remove(sorted.get(i).getKey(), sorted.get(i).getValue());
+        }
+        admission = sorted.size() < tracked ? 1 : Math.max(1, sorted.get(tracked - 1).getValue());
+    }
+
+    private List<Map.Entry<Object, Integer>> sortedCandidates() {
+        List<Map.Entry<Object, Integer>> sorted = new ArrayList<>(candidates.entrySet());
+        sorted.sort(Map.Entry.<Object, Integer>comparingByValue(Comparator.reverseOrder()));
+        return sorted;
+    }
+
+    private int index(long hash, int row) {
+        // double hashing: row i uses h1 + i * h2
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        return row * (mask + 1) + ((h1 + row * h2) & mask);
+    }
+
+    private static long spread(Object key) {
+        long hash = key.hashCode() * 0x9E3779B97F4A7C15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static int ceilingPowerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * A ring buffer written by many threads and drained by one at a time (under the drain lock).
+     */
+    private static final class ReadBuffer {
+
+        static final int ADDED = 0;
+        static final int CONTENDED = 1;
+        static final int FULL = 2;
+
+        private final AtomicLong writes = new AtomicLong();
+        private final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(BUFFER_SIZE);
+        private volatile long reads;
+
+        /**
+         * Adds the key, unless the buffer is full or another thread takes the same slot (then the read is dropped).
+         */
+        int offer(Object key) {
+            long tail = writes.get();
+            if (tail - reads >= BUFFER_SIZE) {
+                return FULL;
+            }
+            if (!writes.compareAndSet(tail, tail + 1)) {
+                return CONTENDED;
+            }
+            slots.lazySet((int) tail & (BUFFER_SIZE - 1), key);
+            return ADDED;
+        }
+
+        void drainTo(Consumer<Object> consumer) {
+            long head = reads;
+            long tail = writes.get();
+            for (; head < tail; head++) {
+                int index = (int) head & (BUFFER_SIZE - 1);
+                Object key = slots.get(index);
+                if (key == null) {
+                    // reserved but not written yet
+                    break;
+                }
+                slots.lazySet(index, null);
+                consumer.accept(key);
+            }
+            reads = head;
+        }
+    }
+}
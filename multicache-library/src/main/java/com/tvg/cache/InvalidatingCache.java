@@ -0,0 +1,93 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Publishes evictions and clears of a local cache on the {@link InvalidationBus} so that every other node
+ * drops its copy. Tiered caches also publish on writes, since a write replaces the shared redis value.
+ */
+public class InvalidatingCache extends ForwardingCache {
+
+    private final InvalidationBus invalidationBus;
+    private final boolean invalidateOnWrite;
+
+    public InvalidatingCache(Cache delegate, InvalidationBus invalidationBus, boolean invalidateOnWrite, Executor executor) {
+        super(delegate, executor);
+        this.invalidationBus = invalidationBus;
+        this.invalidateOnWrite = invalidateOnWrite;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        super.put(key, value);
+        if (invalidateOnWrite) {
+            invalidationBus.publishEvict(getName(), key);
+        }
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        super.putAll(entries);
+        if (invalidateOnWrite) {
+            entries.keySet().forEach(key -> invalidationBus.publishEvict(getName(), key));
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = super.putIfAbsent(key, value);
+        if (invalidateOnWrite && existing == null) {
+            invalidationBus.publishEvict(getName(), key);
+        }
+        return existing;
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        AsyncMultiCache delegate = super.async();
+        return new AsyncMultiCache() {
+            @Override
+            public String getName() {
+                return delegate.getName();
+            }
+
+            @Override
+            public CompletableFuture<ValueWrapper> get(Object key) {
+                return delegate.get(key);
+            }
+
+            @Override
+            public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+                return delegate.get(key, loader);
+            }
+
+            @Override
+            public CompletableFuture<Void> put(Object key, Object value) {
+                CompletableFuture<Void> put = delegate.put(key, value);
+                return invalidateOnWrite ? put.thenRun(() -> invalidationBus.publishEvict(getName(), key)) : put;
+            }
+
+            @Override
+            public CompletableFuture<Void> evict(Object key) {
+                return delegate.evict(key).thenRun(() -> invalidationBus.publishEvict(getName(), key));
+            }
+        };
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        invalidationBus.publishEvict(getName(), key);
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        invalidationBus.publishClear(getName());
+    }
+}
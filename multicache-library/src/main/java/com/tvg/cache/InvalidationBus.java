@@ -0,0 +1,367 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.cache.Cache;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcasts evictions of local caches to every node over a redis pub/sub channel.
+ * <p>
+ * Evictions are not published one by one: they are collected and coalesced per cache (a clear supersedes
+ * any pending key evictions of the same cache) and sent as a single message every flush interval, or as soon
+ * as the batch reaches its maximum size. Messages published by this node are ignored when they come back.
+ * Publishing and dispatching received messages run on the multicache executor. The subscription has a thread of its
+ * own, since with jedis it holds that thread for as long as the bus listens.
+ * <p>
+ * A message is a small length-prefixed binary frame: the origin node, then per cache its name and either a clear
+ * or its evicted keys. String, integer, long and UUID keys are written as they are; other keys are written with the
+ * cache's serializer. Received messages are never java-deserialized: when a cache has no serializer for its keys
+ * (or only the JDK serializer), evicting such a key clears the cache on the other nodes instead.
+ */
+public class InvalidationBus implements MessageListener, InitializingBean, DisposableBean {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final int MAGIC = 0x4D43494E; // "MCIN"
+    private static final byte VERSION = 1;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_INTEGER = 2;
+    private static final byte TAG_LONG = 3;
+    private static final byte TAG_UUID = 4;
+    private static final byte TAG_SERIALIZED = 5;
+
+    private final UUID nodeId = UUID.randomUUID();
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final MultiCacheProperties.InvalidationProperties properties;
+    private final byte[] channel;
+    private final Map<String, Cache> localCaches = new ConcurrentHashMap<>();
+    private final Map<String, RedisSerializer<Object>> keySerializers = new ConcurrentHashMap<>();
+    private final Executor executor;
+
+    private final RedisMessageListenerContainer listenerContainer = new RedisMessageListenerContainer();
+    private final ScheduledExecutorService flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "multicache-invalidation");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Batch pending = new Batch();
+
+    public InvalidationBus(RedisConnectionFactory redisConnectionFactory, MultiCacheProperties.InvalidationProperties properties,
+                           Executor executor) {
+        this.redisConnectionFactory = redisConnectionFactory;
+        this.properties = properties;
+        this.executor = executor;
+        this.channel = properties.getChannel().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Registers the local cache that should be evicted when another node invalidates {@code cacheName}.
+     */
+    public void register(String cacheName, Cache localCache) {
+        register(cacheName, localCache, null);
+    }
+
+    /**
+     * @param keySerializer writes and reads the keys that are not strings, integers, longs or UUIDs; when null or
+     *                      the JDK serializer, evicting such a key clears the cache on the other nodes
+     */
+    public void register(String cacheName, Cache localCache, RedisSerializer<Object> keySerializer) {
+        localCaches.put(cacheName, localCache);
+        if (keySerializer != null && !(keySerializer instanceof JdkSerializationRedisSerializer)) {
+            keySerializers.put(cacheName, keySerializer);
+        } else {
+            keySerializers.remove(cacheName);
+        }
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        boolean full;
+        synchronized (this) {
+            full = pending.addEviction(cacheName, key) >= properties.getMaxBatchSize();
+        }
+        if (full && !flushScheduler.isShutdown()) {
+            flushAsync();
+        }
+    }
+
+    public void publishClear(String cacheName) {
+        synchronized (this) {
+            pending.addClear(cacheName);
+        }
+    }
+
+    private void flushAsync() {
+        try {
+            executor.execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            flush();
+        }
+    }
+
+    void flush() {
+        Batch batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new Batch();
+        }
+
+        RedisConnection connection = null;
+        try {
+            byte[] message = encode(batch);
+            connection = redisConnectionFactory.getConnection();
+            connection.publish(channel, message);
+        } catch (IOException | RuntimeException e) {
+            log.warn(String.format("MultiCache: failed to publish %d invalidation(s) on channel %s", batch.size, properties.getChannel()), e);
+        } finally {
+            if (connection != null) {
+                connection.close();
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            apply(message.getBody());
+        } catch (IOException | RuntimeException e) {
+            log.warn(String.format("MultiCache: ignoring unreadable invalidation message: %s", e));
+        }
+    }
+
+    private byte[] encode(Batch batch) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(nodeId.getMostSignificantBits());
+        out.writeLong(nodeId.getLeastSignificantBits());
+        Set<String> cacheNames = new LinkedHashSet<>(batch.clears);
+        cacheNames.addAll(batch.evictions.keySet());
+        out.writeInt(cacheNames.size());
+        for (String cacheName : cacheNames) {
+            byte[] keys = batch.clears.contains(cacheName) ? null : encodeKeys(cacheName, batch.evictions.get(cacheName));
+            writeBytes(out, cacheName.getBytes(StandardCharsets.UTF_8));
+            out.writeBoolean(keys == null);
+            if (keys != null) {
+                out.write(keys);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * The count and keys of a cache's evictions, or null when a key cannot be written (the cache is then cleared).
+     */
+    private byte[] encodeKeys(String cacheName, Set<Object> keys) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(keys.size());
+        for (Object key : keys) {
+            if (key instanceof String) {
+                out.writeByte(TAG_STRING);
+                writeBytes(out, ((String) key).getBytes(StandardCharsets.UTF_8));
+            } else if (key instanceof Integer) {
+                out.writeByte(TAG_INTEGER);
+                out.writeInt((Integer) key);
+            } else if (key instanceof Long) {
+                out.writeByte(TAG_LONG);
+                out.writeLong((Long) key);
+            } else if (key instanceof UUID) {
+                out.writeByte(TAG_UUID);
+                out.writeLong(((UUID) key).getMostSignificantBits());
+                out.writeLong(((UUID) key).getLeastSignificantBits());
+            } else {
+                RedisSerializer<Object> serializer = keySerializers.get(cacheName);
+                byte[] serialized;
+                try {
+                    serialized = serializer != null ? serializer.serialize(key) : null;
+                } catch (RuntimeException e) {
+                    serialized = null;
+                }
+                if (serialized == null) {
+                    log.debug(String.format("MultiCache: cannot write key %s of cache %s in an invalidation, clearing the cache on other nodes", key, cacheName));
+                    return null;
+                }
+                out.writeByte(TAG_SERIALIZED);
+                writeBytes(out, serialized);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void apply(byte[] message) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(message));
+        if (message.length < 21 || in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("not a multicache invalidation message");
+        }
+        if (nodeId.equals(new UUID(in.readLong(), in.readLong()))) {
+            return;
+        }
+        int caches = in.readInt();
+        for (int i = 0; i < caches; i++) {
+            String cacheName = new String(readBytes(in), StandardCharsets.UTF_8);
+            Cache cache = localCaches.get(cacheName);
+            if (in.readBoolean()) {
+                if (cache != null) {
+                    cache.clear();
+                }
+                continue;
+            }
+            List<Object> keys = new ArrayList<>();
+            boolean unreadable = false;
+            int count = checkLength(in, in.readInt());
+            for (int k = 0; k < count; k++) {
+                byte tag = in.readByte();
+                switch (tag) {
+                    case TAG_STRING:
+                        keys.add(new String(readBytes(in), StandardCharsets.UTF_8));
+                        break;
+                    case TAG_INTEGER:
+                        keys.add(in.readInt());
+                        break;
+                    case TAG_LONG:
+                        keys.add(in.readLong());
+                        break;
+                    case TAG_UUID:
+                        keys.add(new UUID(in.readLong(), in.readLong()));
+                        break;
+                    case TAG_SERIALIZED:
+                        byte[] serialized = readBytes(in);
+                        RedisSerializer<Object> serializer = keySerializers.get(cacheName);
+                        try {
+                            Object key = serializer != null ? serializer.deserialize(serialized) : null;
+                            if (key != null) {
+                                keys.add(key);
+                            } else {
+                                unreadable = true;
+                            }
+                        } catch (RuntimeException e) {
+                            unreadable = true;
+                        }
+                        break;
+                    default:
+                        throw new IOException("unknown key tag " + tag);
+                }
+            }
+            if (cache == null) {
+                continue;
+            }
+            if (unreadable) {
+                // a key this node cannot read may still be cached here
+                cache.clear();
+            } else {
+                keys.forEach(cache::evict);
+            }
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[checkLength(in, in.readInt())];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * A length read from the message, which cannot exceed the bytes left in it.
+     */
+    private static int checkLength(DataInputStream in, int length) throws IOException {
+        if (length < 0 || length > in.available()) {
+            throw new IOException("invalid length " + length);
+        }
+        return length;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        listenerContainer.setConnectionFactory(redisConnectionFactory);
+        listenerContainer.setTaskExecutor(executor);
+        SimpleAsyncTaskExecutor subscriptionExecutor = new SimpleAsyncTaskExecutor("multicache-invalidation-subscription-");
+        subscriptionExecutor.setDaemon(true);
+        listenerContainer.setSubscriptionExecutor(subscriptionExecutor);
+        listenerContainer.addMessageListener(this, new ChannelTopic(properties.getChannel()));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+
+        long interval = properties.getFlushInterval().toMillis();
+        flushScheduler.scheduleWithFixedDelay(this::flushAsync, interval, interval, TimeUnit.MILLISECONDS);
+        log.info(String.format("MultiCache: Invalidation bus listening on channel %s", properties.getChannel()));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        flushScheduler.shutdown();
+        flushScheduler.awaitTermination(properties.getFlushInterval().toMillis(), TimeUnit.MILLISECONDS);
+        flush();
+        listenerContainer.destroy();
+    }
+
+    private static class Batch {
+        private final Map<String, Set<Object>> evictions = new HashMap<>();
+        private final Set<String> clears = new HashSet<>();
+        private int size;
+
+        int addEviction(String cacheName, Object key) {
+            if (!clears.contains(cacheName) && evictions.computeIfAbsent(cacheName, name -> new HashSet<>()).add(key)) {
+                size++;
+            }
+            return size;
+        }
+
+        void addClear(String cacheName) {
+            Set<Object> keys = evictions.remove(cacheName);
+            if (keys != null) {
+                size -= keys.size();
+            }
+            if (clears.add(cacheName)) {
+                size++;
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.tvg.cache;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.util.DefaultClassResolver;
+import com.esotericsoftware.kryo.util.MapReferenceResolver;
+import org.objenesis.strategy.StdInstantiatorStrategy;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compact binary serializer backed by kryo. Kryo instances are not thread safe, so each thread keeps its own.
+ * <p>
+ * By default classes do not need to be registered up front: their names are written with the value, and only
+ * {@link TrustedTypes trusted} classes are read back. With registered classes, only those (and kryo's built-in
+ * types) can be written and read, and small ids are written instead of names; every node must then register the
+ * same classes in the same order.
+ */
+public class KryoRedisSerializer implements RedisSerializer<Object> {
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final ThreadLocal<Kryo> kryos;
+    private final ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> new Output(BUFFER_SIZE, -1));
+
+    /**
+     * A serializer reading only the jdk and spring classes trusted by default.
+     */
+    public KryoRedisSerializer(ClassLoader classLoader) {
+        this(classLoader, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * @param trustedPackages   packages and classes that may be read when no classes are registered
+     * @param registeredClasses when not empty, the only classes that can be written and read
+     */
+    public KryoRedisSerializer(ClassLoader classLoader, List<String> trustedPackages, List<Class<?>> registeredClasses) {
+        TrustedTypes trustedTypes = new TrustedTypes(trustedPackages);
+        List<Class<?>> registrations = new ArrayList<>(registeredClasses);
+        this.kryos = ThreadLocal.withInitial(() -> {
+            Kryo kryo = new Kryo(new TrustedClassResolver(trustedTypes), new MapReferenceResolver());
+            kryo.setRegistrationRequired(!registrations.isEmpty());
+            registrations.forEach(kryo::register);
+            kryo.setInstantiatorStrategy(new Kryo.DefaultInstantiatorStrategy(new StdInstantiatorStrategy()));
+            if (classLoader != null) {
+                kryo.setClassLoader(classLoader);
+            }
+            return kryo;
+        });
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        Output output = outputs.get();
+        output.clear();
+        try {
+            kryos.get().writeClassAndObject(output, value);
+            return output.toBytes();
+        } catch (KryoException | IllegalArgumentException e) {
+            // kryo reports an unregistered class with an IllegalArgumentException
+            throw new SerializationException("Cannot serialize " + value.getClass().getName() + " with kryo", e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return kryos.get().readClassAndObject(new Input(bytes));
+        } catch (KryoException | IllegalArgumentException e) {
+            throw new SerializationException("Cannot deserialize value with kryo", e);
+        }
+    }
+
+    /**
+     * Refuses the name of a class that is not trusted before the class is loaded.
+     */
+    private static class TrustedClassResolver extends DefaultClassResolver {
+
+        private final TrustedTypes trustedTypes;
+
+        TrustedClassResolver(TrustedTypes trustedTypes) {
+            this.trustedTypes = trustedTypes;
+        }
+
+        @Override
+        protected Class<?> getTypeByName(String className) {
+            if (!trustedTypes.isTrusted(className)) {
+                throw new KryoException("Class " + className + " is not trusted, add it or its package to trusted-packages");
+            }
+            return super.getTypeByName(className);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Async view of an in-memory cache: reads and writes never block, so they run on the caller's thread and return
+ * completed futures. Only loads are asynchronous.
+ */
+public class LocalAsyncCache implements AsyncMultiCache {
+
+    private final Cache cache;
+    private final AsyncLoads loads = new AsyncLoads();
+
+    public LocalAsyncCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public CompletableFuture<ValueWrapper> get(Object key) {
+        return call(() -> cache.get(key));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+        ValueWrapper value = cache.get(key);
+        if (value != null) {
+            return CompletableFuture.completedFuture((T) value.get());
+        }
+        return loads.load(key, loader, this::put);
+    }
+
+    @Override
+    public CompletableFuture<Void> put(Object key, Object value) {
+        return call(() -> {
+            cache.put(key, value);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> evict(Object key) {
+        return call(() -> {
+            cache.evict(key);
+            return null;
+        });
+    }
+
+    private static <T> CompletableFuture<T> call(Supplier<T> operation) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(operation.get());
+        } catch (RuntimeException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,287 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Records hits, misses, puts, evictions and clears of a cache, and the latency of its reads and writes.
+ * Local caches (caffeine, and the local side of tiered caches) also report their estimated size.
+ * <p>
+ * A load through the cache is a miss for every caller that shares it: the caller that runs the loader, and the
+ * callers that wait for its value because the cache loads each key once.
+ */
+public class MeteredCache extends ForwardingCache {
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter puts;
+    private final Counter evictions;
+    private final Counter clears;
+    private final Timer getLatency;
+    private final Timer putLatency;
+    private final ConcurrentMap<Object, Flight> flights = new ConcurrentHashMap<>();
+    private volatile AsyncMultiCache async;
+
+    public MeteredCache(Cache delegate, String type, MeterRegistry registry, double[] percentiles, Executor executor) {
+        super(delegate, executor);
+        Tags tags = Tags.of("cache", delegate.getName(), "type", type);
+
+        hits = Counter.builder("cache.gets").tags(tags).tag("result", "hit")
+                .description("the number of times cache lookup methods have returned a cached value").register(registry);
+        misses = Counter.builder("cache.gets").tags(tags).tag("result", "miss")
+                .description("the number of times cache lookup methods have not returned a cached value").register(registry);
+        puts = Counter.builder("cache.puts").tags(tags)
+                .description("the number of entries added to the cache").register(registry);
+        evictions = Counter.builder("cache.evictions").tags(tags)
+                .description("the number of explicit evictions from the cache").register(registry);
+        clears = Counter.builder("cache.clears").tags(tags)
+                .description("the number of times the cache was cleared").register(registry);
+        getLatency = Timer.builder("cache.get.latency").tags(tags)
+                .description("the time taken by cache lookups, including loads of missing values")
+                .publishPercentiles(percentiles).register(registry);
+        putLatency = Timer.builder("cache.put.latency").tags(tags)
+                .description("the time taken by cache writes")
+                .publishPercentiles(percentiles).register(registry);
+
+        Object nativeCache = delegate.getNativeCache();
+        if (nativeCache instanceof TieredCache) {
+            nativeCache = ((TieredCache) nativeCache).getLocalCache().getNativeCache();
+        }
+        if (nativeCache instanceof com.github.benmanes.caffeine.cache.Cache) {
+            Gauge.builder("cache.size", (com.github.benmanes.caffeine.cache.Cache<?, ?>) nativeCache, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                    .tags(tags).description("the estimated number of entries in the local cache").register(registry);
+        }
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = time(getLatency, () -> super.get(key));
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        T value = time(getLatency, () -> super.get(key, type));
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Flight flight = enter(key);
+        boolean loading = flight.isLoading();
+        long loads = flight.loads.get();
+        Thread caller = Thread.currentThread();
+        try {
+            T value = time(getLatency, () -> super.get(key, () -> {
+                // a refresh ahead of expiry runs in the background, and the value it refreshes was a hit
+                if (Thread.currentThread() != caller) {
+                    return valueLoader.call();
+                }
+                return flight.load(valueLoader);
+            }));
+            (loading || flight.loads.get() != loads ? misses : hits).increment();
+            return value;
+        } finally {
+            leave(key);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        time(putLatency, () -> {
+            super.put(key, value);
+            return null;
+        });
+        puts.increment();
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        if (!(getDelegate() instanceof MultiKeyCache)) {
+            // split into single-key calls, which are metered one by one
+            return super.getAll(keys);
+        }
+        Map<Object, Object> values = time(getLatency, () -> super.getAll(keys));
+        hits.increment(values.size());
+        misses.increment(keys.stream().distinct().count() - values.size());
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        if (!(getDelegate() instanceof MultiKeyCache)) {
+            super.putAll(entries);
+            return;
+        }
+        time(putLatency, () -> {
+            super.putAll(entries);
+            return null;
+        });
+        puts.increment(entries.size());
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = time(putLatency, () -> super.putIfAbsent(key, value));
+        if (existing == null) {
+            puts.increment();
+        }
+        return existing;
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        if (async == null) {
+            async = new MeteredAsyncCache(super.async());
+        }
+        return async;
+    }
+
+    @Override
+    public void evict(Object key) {
+        super.evict(key);
+        evictions.increment();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        clears.increment();
+    }
+
+    private static <T> CompletableFuture<T> timeAsync(Timer timer, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        return call.get().whenComplete( (value, ex) -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private static <T> T time(Timer timer, Supplier<T> call) {
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private class MeteredAsyncCache implements AsyncMultiCache {
+
+        private final AsyncMultiCache delegate;
+
+        MeteredAsyncCache(AsyncMultiCache delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public CompletableFuture<ValueWrapper> get(Object key) {
+            return timeAsync(getLatency, () -> delegate.get(key)).whenComplete( (value, ex) -> {
+                if (ex == null) {
+                    (value != null ? hits : misses).increment();
+                }
+            });
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+            Flight flight = enter(key);
+            boolean loading = flight.isLoading();
+            long loads = flight.loads.get();
+            CompletableFuture<T> value;
+            try {
+                value = timeAsync(getLatency, () -> delegate.get(key, () -> flight.loadAsync(loader)));
+            } catch (RuntimeException | Error ex) {
+                leave(key);
+                throw ex;
+            }
+            return value.whenComplete( (loaded, ex) -> {
+                leave(key);
+                (loading || flight.loads.get() != loads ? misses : hits).increment();
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> put(Object key, Object value) {
+            return timeAsync(putLatency, () -> delegate.put(key, value)).thenRun(puts::increment);
+        }
+
+        @Override
+        public CompletableFuture<Void> evict(Object key) {
+            return delegate.evict(key).thenRun(evictions::increment);
+        }
+    }
+
+    private Flight enter(Object key) {
+        return flights.compute(key, (k, flight) -> {
+            Flight entered = flight != null ? flight : new Flight();
+            entered.callers++;
+            return entered;
+        });
+    }
+
+    private void leave(Object key) {
+        flights.computeIfPresent(key, (k, flight) -> --flight.callers == 0 ? null : flight);
+    }
+
+    /**
+     * The callers of one key, and the loads run for them: a caller is a miss if a load was running when it asked,
+     * or started before it got its value.
+     */
+    private static final class Flight {
+        private final AtomicLong loads = new AtomicLong();
+        private final AtomicInteger running = new AtomicInteger();
+        private int callers; //guarded by flights.compute
+
+        boolean isLoading() {
+            return running.get() > 0;
+        }
+
+        <T> T load(Callable<T> loader) throws Exception {
+            loads.incrementAndGet();
+            running.incrementAndGet();
+            try {
+                return loader.call();
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+
+        <T> CompletableFuture<T> loadAsync(Supplier<CompletableFuture<T>> loader) {
+            loads.incrementAndGet();
+            running.incrementAndGet();
+            CompletableFuture<T> loaded;
+            try {
+                loaded = loader.get();
+            } catch (RuntimeException | Error ex) {
+                running.decrementAndGet();
+                throw ex;
+            }
+            if (loaded == null) {
+                running.decrementAndGet();
+                return null;
+            }
+            return loaded.whenComplete( (value, ex) -> running.decrementAndGet());
+        }
+    }
+}
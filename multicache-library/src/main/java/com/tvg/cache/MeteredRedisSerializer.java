@@ -0,0 +1,48 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Records the size of the values a redis cache writes to and reads from redis, as stored (after compression).
+ */
+public class MeteredRedisSerializer implements RedisSerializer<Object> {
+
+    private final RedisSerializer<Object> delegate;
+    private final DistributionSummary written;
+    private final DistributionSummary read;
+
+    public MeteredRedisSerializer(RedisSerializer<Object> delegate, String cacheName, MeterRegistry registry) {
+        this.delegate = delegate;
+        this.written = payloadSize(cacheName, "write", registry);
+        this.read = payloadSize(cacheName, "read", registry);
+    }
+
+    private static DistributionSummary payloadSize(String cacheName, String operation, MeterRegistry registry) {
+        return DistributionSummary.builder("cache.payload.size")
+                .tags("cache", cacheName, "operation", operation)
+                .baseUnit("bytes")
+                .description("the size of values written to or read from redis")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes != null) {
+            written.record(bytes.length);
+        }
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null) {
+            read.record(bytes.length);
+        }
+        return delegate.deserialize(bytes);
+    }
+}
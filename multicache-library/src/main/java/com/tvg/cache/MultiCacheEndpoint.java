@@ -0,0 +1,62 @@
+package com.tvg.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code multicache} actuator endpoint: lists the caches with the properties they were built from, and rebuilds
+ * caches with new sizes, expiries or thresholds without a restart. It changes the caches of the whole application,
+ * so expose it only behind the same security as the other write endpoints.
+ * <ul>
+ *     <li>{@code GET /actuator/multicache} and {@code GET /actuator/multicache/{name}} show the caches</li>
+ *     <li>{@code POST /actuator/multicache/{name}} with {@code {"properties": {"spec": "maximumSize=20000"}}} sets
+ *     properties of a cache and rebuilds it; a new cache also needs {@code "type"}</li>
+ *     <li>{@code POST /actuator/multicache} rebuilds the caches whose properties changed in the environment</li>
+ * </ul>
+ */
+@Endpoint(id = "multicache")
+public class MultiCacheEndpoint {
+
+    private final MultiCacheManager cacheManager;
+
+    public MultiCacheEndpoint(MultiCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, String>> caches() {
+        Map<String, Map<String, String>> caches = new LinkedHashMap<>();
+        cacheManager.getCacheTypes().keySet().forEach(name -> caches.put(name, cache(name)));
+        return caches;
+    }
+
+    @ReadOperation
+    public Map<String, String> cache(@Selector String name) {
+        String type = cacheManager.getCacheTypes().get(name);
+        if (type == null) {
+            return null;
+        }
+        Map<String, String> cache = new LinkedHashMap<>();
+        cache.put("type", type);
+        cache.put("properties", String.valueOf(cacheManager.getCacheProperties(name)));
+        return cache;
+    }
+
+    @WriteOperation
+    public Map<String, String> reconfigure(@Selector String name, @Nullable String type, Map<String, Object> properties) {
+        cacheManager.reconfigure(name, type, properties);
+        return cache(name);
+    }
+
+    @WriteOperation
+    public List<String> refresh() {
+        return cacheManager.refresh();
+    }
+}
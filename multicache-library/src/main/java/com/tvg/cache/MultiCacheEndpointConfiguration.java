@@ -0,0 +1,26 @@
+package com.tvg.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Adds the {@code multicache} endpoint when the actuator is on the classpath. Like other endpoints, it is only
+ * reachable over http once listed in {@code management.endpoints.web.exposure.include}.
+ */
+@Configuration
+@ConditionalOnClass(Endpoint.class)
+@AutoConfigureAfter(CacheConfiguration.class)
+public class MultiCacheEndpointConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnBean(MultiCacheManager.class)
+    public MultiCacheEndpoint multiCacheEndpoint(MultiCacheManager cacheManager) {
+        return new MultiCacheEndpoint(cacheManager);
+    }
+}
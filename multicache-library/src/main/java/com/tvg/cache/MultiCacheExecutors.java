@@ -0,0 +1,70 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor of multicache's background work from the {@code executor} properties.
+ */
+final class MultiCacheExecutors {
+
+    private static final String THREAD_NAME_PREFIX = "multicache-executor-";
+
+    private MultiCacheExecutors() {
+    }
+
+    /**
+     * @param meterRegistry when not null, the executor reports its pool and queue size, and task timings,
+     *                      as the {@code executor.*} metrics tagged {@code name=multicache}
+     */
+    static ExecutorService create(MultiCacheProperties.ExecutorProperties properties, MeterRegistry meterRegistry) {
+        ExecutorService executor;
+        switch (properties.getType()) {
+            case VIRTUAL:
+                executor = virtualThreadPerTaskExecutor();
+                break;
+            case PLATFORM:
+            default:
+                if (properties.getPoolSize() < 1 || properties.getQueueCapacity() < 1) {
+                    throw new RuntimeException(String.format("MultiCache: executor pool-size and queue-capacity must be positive, got %s", properties));
+                }
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(properties.getPoolSize(), properties.getPoolSize(),
+                        60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(properties.getQueueCapacity()),
+                        daemonThreads(), new ThreadPoolExecutor.CallerRunsPolicy());
+                pool.allowCoreThreadTimeOut(true);
+                executor = pool;
+        }
+
+        if (meterRegistry != null) {
+            executor = ExecutorServiceMetrics.monitor(meterRegistry, executor, "multicache", Tags.of("type", properties.getType().name().toLowerCase()));
+        }
+        return executor;
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(String.format("MultiCache: executor type virtual needs Java 21 or later, running on Java %s",
+                    System.getProperty("java.version")), e);
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,254 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The cache manager of every multicache cache, whose caches can be reconfigured while the application runs.
+ * <p>
+ * {@link #refresh()} binds the {@code tvg.multicache} properties from the environment again (after a configuration
+ * refresh, for instance) and rebuilds only the caches whose properties changed, plus the caches that are new.
+ * {@link #reconfigure} sets properties of one cache, taking precedence over every other property source, then
+ * refreshes. A rebuilt cache replaces the old one for every later call; the hottest entries of the old cache's
+ * caffeine (or tiered local) tier move to the new one, and redis entries stay where they are.
+ */
+public class MultiCacheManager extends SimpleCacheManager {
+
+    private static final String OVERRIDES = "multicache-overrides";
+    private static final String PREFIX = "tvg.multicache";
+    private static final List<String> TYPES = Arrays.asList("caffeine", "redis", "tiered", "offheap");
+    // sizes, expiries and thresholds only: no paths, bean names or serializers, which reconfigure must not reach
+    private static final List<String> REDIS_TUNABLES = Arrays.asList("time-to-live", "negative-ttl", "ttl-jitter",
+            "refresh-ahead", "early-expiration-beta", "load-lease-time", "compression-threshold",
+            "circuit-breaker.latency-budget", "circuit-breaker.failure-threshold", "circuit-breaker.open-duration",
+            "write-behind.flush-interval", "write-behind.batch-size",
+            "hot-keys.tracked", "hot-keys.min-frequency", "hot-keys.local-time-to-live");
+    private static final Map<String, List<String>> TUNABLES = new HashMap<>();
+    static {
+        TUNABLES.put("caffeine", Arrays.asList("spec", "max-memory", "negative-ttl"));
+        TUNABLES.put("redis", REDIS_TUNABLES);
+        List<String> tiered = new ArrayList<>(REDIS_TUNABLES);
+        tiered.addAll(Arrays.asList("local-spec", "local-max-memory"));
+        TUNABLES.put("tiered", tiered);
+        TUNABLES.put("offheap", Arrays.asList("max-memory", "time-to-live", "compression-threshold"));
+    }
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final MultiCacheProperties cacheProperties;
+    private final Environment environment;
+    private final CacheFactory cacheFactory;
+    private final ConcurrentMap<String, Cache> builtCaches = new ConcurrentHashMap<>(); //built after startup, in place of the startup ones
+
+    /**
+     * Builds a cache of a type ({@code caffeine}, {@code redis}, {@code tiered} or {@code offheap}) from its properties.
+     */
+    public interface CacheFactory {
+        /**
+         * @param previous the cache being replaced, or null for a new cache
+         */
+        Cache create(String type, String name, Object properties, Cache previous);
+    }
+
+    /**
+     * @param cacheProperties the properties the caches were built from, updated as caches are rebuilt
+     */
+    public MultiCacheManager(MultiCacheProperties cacheProperties, Environment environment, CacheFactory cacheFactory) {
+        this.cacheProperties = cacheProperties;
+        this.environment = environment;
+        this.cacheFactory = cacheFactory;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = builtCaches.get(name);
+        return cache != null ? cache : super.getCache(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(super.getCacheNames());
+        names.addAll(builtCaches.keySet());
+        return names;
+    }
+
+    /**
+     * The type of each cache, by name.
+     */
+    public Map<String, String> getCacheTypes() {
+        Map<String, String> types = new LinkedHashMap<>();
+        for (String type : TYPES) {
+            Map<String, ?> caches = caches(cacheProperties, type);
+            if (caches != null) {
+                caches.keySet().forEach(name -> types.put(name, type));
+            }
+        }
+        return types;
+    }
+
+    /**
+     * The properties the cache was last built from, or null when there is no such cache.
+     */
+    public Object getCacheProperties(String name) {
+        String type = getCacheTypes().get(name);
+        return type != null ? caches(cacheProperties, type).get(name) : null;
+    }
+
+    /**
+     * Sets properties of a cache, and rebuilds it. Keys are the property names under the cache, such as
+     * {@code spec} or {@code time-to-live}; nested properties are given as nested maps or dotted keys
+     * ({@code hot-keys.tracked}). Only sizes, expiries and thresholds can be set, see {@link #getTunables}. When the
+     * properties do not build a cache, they are dropped again and the old cache stays.
+     *
+     * @param type the type of a new cache, or null to keep the type of an existing one
+     */
+    public synchronized Object reconfigure(String name, String type, Map<String, ?> properties) {
+        String existingType = getCacheTypes().get(name);
+        if (type == null) {
+            type = existingType;
+        }
+        if (type == null || !TYPES.contains(type)) {
+            throw new RuntimeException(String.format("MultiCache: cannot reconfigure cache %s, it needs one of the types %s", name, TYPES));
+        }
+        if (existingType != null && !existingType.equals(type)) {
+            throw new RuntimeException(String.format("MultiCache: cache %s is a %s cache, it cannot become a %s cache without a restart", name, existingType, type));
+        }
+
+        String prefix = PREFIX + "." + type + "." + name;
+        Map<String, Object> flattened = new LinkedHashMap<>();
+        flatten(prefix, properties, flattened);
+        for (String key : flattened.keySet()) {
+            String property = key.substring(prefix.length() + 1);
+            if (TUNABLES.get(type).stream().noneMatch(tunable -> canonical(tunable).equals(canonical(property)))) {
+                throw new RuntimeException(String.format("MultiCache: %s of %s cache %s cannot be set at runtime, only %s", property, type, name, TUNABLES.get(type)));
+            }
+        }
+
+        Map<String, Object> overrides = overrides();
+        Map<String, Object> previous = new HashMap<>(overrides);
+        overrides.putAll(flattened);
+        try {
+            refresh();
+            if (getCacheProperties(name) == null) {
+                throw new RuntimeException(String.format("MultiCache: no %s cache %s was built from %s, check the property names", type, name, properties));
+            }
+        } catch (RuntimeException e) {
+            overrides.clear();
+            overrides.putAll(previous);
+            throw e;
+        }
+        return getCacheProperties(name);
+    }
+
+    /**
+     * The properties {@link #reconfigure} can set on a cache of a type.
+     */
+    public static List<String> getTunables(String type) {
+        return TUNABLES.get(type);
+    }
+
+    /**
+     * Rebuilds the caches whose properties in the environment changed, and builds the new ones. Caches removed from
+     * the environment are kept until the next restart.
+     *
+     * @return the names of the caches built
+     */
+    public synchronized List<String> refresh() {
+        MultiCacheProperties refreshed = Binder.get(environment).bind(PREFIX, MultiCacheProperties.class)
+                .orElseGet(MultiCacheProperties::new);
+        Map<String, String> types = getCacheTypes();
+        List<String> built = new ArrayList<>();
+        for (String type : TYPES) {
+            refresh(type, caches(cacheProperties, type), caches(refreshed, type), types, built);
+        }
+        return built;
+    }
+
+    private <T> void refresh(String type, Map<String, T> current, Map<String, T> refreshed, Map<String, String> types, List<String> built) {
+        if (refreshed == null) {
+            return;
+        }
+        refreshed.forEach( (name, properties) -> {
+            T old = current != null ? current.get(name) : null;
+            if (properties.equals(old)) {
+                return;
+            }
+            if (types.containsKey(name) && !types.get(name).equals(type)) {
+                throw new RuntimeException(String.format("MultiCache: cache %s is a %s cache, it cannot become a %s cache without a restart", name, types.get(name), type));
+            }
+            if (current == null) {
+                throw new RuntimeException(String.format("MultiCache: cannot add %s cache %s, %s caches were not enabled at startup", type, name, type));
+            }
+
+            Cache cache = cacheFactory.create(type, name, properties, getCache(name));
+            builtCaches.put(name, cache);
+            current.put(name, properties);
+            built.add(name);
+            log.info(String.format("MultiCache: %s %s cache %s with %s", old != null ? "rebuilt" : "added", type, name, properties));
+        });
+    }
+
+    /**
+     * The property source of {@link #reconfigure}, first among the environment's sources.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> overrides() {
+        if (!(environment instanceof ConfigurableEnvironment)) {
+            throw new RuntimeException("MultiCache: caches can only be reconfigured in a configurable environment");
+        }
+        MutablePropertySources sources = ((ConfigurableEnvironment) environment).getPropertySources();
+        if (!sources.contains(OVERRIDES)) {
+            sources.addFirst(new MapPropertySource(OVERRIDES, new LinkedHashMap<>()));
+        }
+        return (Map<String, Object>) sources.get(OVERRIDES).getSource();
+    }
+
+    private static void flatten(String prefix, Map<String, ?> properties, Map<String, Object> flattened) {
+        properties.forEach( (key, value) -> {
+            if (value instanceof Map) {
+                @SuppressWarnings("unchecked")
+                Map<String, ?> nested = (Map<String, ?>) value;
+                flatten(prefix + "." + key, nested, flattened);
+            } else {
+                flattened.put(prefix + "." + key, value != null ? value.toString() : "");
+            }
+        });
+    }
+
+    /**
+     * The name as spring binds it, whatever its form: {@code timeToLive}, {@code time_to_live} or {@code time-to-live}.
+     */
+    private static String canonical(String property) {
+        return property.replace("-", "").replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Map<String, T> caches(MultiCacheProperties properties, String type) {
+        switch (type) {
+            case "caffeine": return (Map<String, T>) properties.getCaffeine();
+            case "redis": return (Map<String, T>) properties.getRedis();
+            case "tiered": return (Map<String, T>) properties.getTiered();
+            default: return (Map<String, T>) properties.getOffheap();
+        }
+    }
+}
@@ -4,9 +4,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 @Component
 @ConfigurationProperties(prefix = "tvg.multicache")
@@ -14,17 +18,66 @@ public class MultiCacheProperties {
 
     private String enableRedis;
     private String enableCaffeine;
+    private String enableTiered;
+    private String enableOffheap;
 
     private Map<String, RedisCacheProperties> redis;
     private Map<String, CaffeineCacheProperties> caffeine;
+    private Map<String, TieredCacheProperties> tiered;
+    private Map<String, OffHeapCacheProperties> offheap;
+    private Map<String, WarmUpProperties> warmUp;
+    private InvalidationProperties invalidation = new InvalidationProperties();
+    private MetricsProperties metrics = new MetricsProperties();
+    private ExecutorProperties executor = new ExecutorProperties();
     /*
     Example application.properties:
     tvg.multicache.enable-redis=true
     tvg.multicache.enable-caffeine=true
     tvg.multicache.redis.my-redis-cache=time-to-live=2h
+    tvg.multicache.redis.my-redis-cache.negative-ttl=1m
+    tvg.multicache.redis.my-redis-cache.ttl-jitter=10%
+    tvg.multicache.redis.my-other-redis-cache.ttl-function-bean=contactTtl
+    tvg.multicache.redis.my-redis-cache.load-lease-time=5s
+    tvg.multicache.redis.my-redis-cache.refresh-ahead=5m
+    tvg.multicache.redis.my-redis-cache.early-expiration-beta=1.0
     tvg.multicache.redis.my-other-redis-cache.use-key-prefix=true
     tvg.multicache.redis.my-other-redis-cache.key-prefix=super_tvg
+    tvg.multicache.redis.my-other-redis-cache.serializer=kryo
+    tvg.multicache.redis.my-other-redis-cache.key-encoding=compact
+    tvg.multicache.redis.my-other-redis-cache.max-key-length=64B
+    tvg.multicache.redis.my-redis-cache.clear-mode=generation
+    tvg.multicache.redis.my-other-redis-cache.compression=lz4
+    tvg.multicache.redis.my-other-redis-cache.compression-threshold=512B
+    tvg.multicache.redis.my-other-redis-cache.transaction-aware=false
+    tvg.multicache.redis.my-other-redis-cache.circuit-breaker.enabled=true
+    tvg.multicache.redis.my-other-redis-cache.circuit-breaker.latency-budget=50ms
+    tvg.multicache.redis.my-other-redis-cache.circuit-breaker.fallback-spec=maximumSize=1000,expireAfterWrite=30s
+    tvg.multicache.redis.my-other-redis-cache.write-mode=write-behind
+    tvg.multicache.redis.my-other-redis-cache.write-behind.flush-interval=50ms
+    tvg.multicache.redis.my-redis-cache.hot-keys.enabled=true
+    tvg.multicache.redis.my-redis-cache.hot-keys.promote=true
+    tvg.multicache.redis.my-redis-cache.hot-keys.local-time-to-live=500ms
     tvg.multicache.caffeine.my-caffeine-cache.spec=expireAfterAccess=30s,recordStats
+    tvg.multicache.caffeine.my-caffeine-cache.max-memory=256MB
+    tvg.multicache.caffeine.my-caffeine-cache.negative-ttl=5s
+    tvg.multicache.caffeine.my-caffeine-cache.snapshot.enabled=true
+    tvg.multicache.caffeine.my-caffeine-cache.snapshot.path=/var/lib/my-app/cache-snapshots
+    tvg.multicache.enable-tiered=true
+    tvg.multicache.tiered.my-tiered-cache.time-to-live=1h
+    tvg.multicache.tiered.my-tiered-cache.local-spec=maximumSize=500,expireAfterWrite=10s
+    tvg.multicache.enable-offheap=true
+    tvg.multicache.offheap.my-offheap-cache.max-memory=2GB
+    tvg.multicache.offheap.my-offheap-cache.time-to-live=1h
+    tvg.multicache.offheap.my-offheap-cache.serializer=kryo
+    tvg.multicache.warm-up.my-caffeine-cache.keys=contactService.topContactIds
+    tvg.multicache.warm-up.my-caffeine-cache.loader=contactRepository.findAllById
+    tvg.multicache.warm-up.my-caffeine-cache.key-property=id
+    tvg.multicache.invalidation.enabled=true
+    tvg.multicache.invalidation.flush-interval=20ms
+    tvg.multicache.metrics.percentiles=0.5,0.99
+    tvg.multicache.executor.type=platform
+    tvg.multicache.executor.pool-size=8
+    tvg.multicache.executor.queue-capacity=10000
      */
 
     public String getEnableRedis() { return enableRedis; }
@@ -35,6 +88,14 @@ public class MultiCacheProperties {
 
     public void setEnableCaffeine(String enableCaffeine) { this.enableCaffeine = enableCaffeine; }
 
+    public String getEnableTiered() { return enableTiered; }
+
+    public void setEnableTiered(String enableTiered) { this.enableTiered = enableTiered; }
+
+    public String getEnableOffheap() { return enableOffheap; }
+
+    public void setEnableOffheap(String enableOffheap) { this.enableOffheap = enableOffheap; }
+
     public Map<String, RedisCacheProperties> getRedis() {
         return redis;
     }
@@ -51,12 +112,82 @@ public class MultiCacheProperties {
         this.caffeine = caffeine;
     }
 
-    public static class RedisCacheProperties {
+    public Map<String, TieredCacheProperties> getTiered() {
+        return tiered;
+    }
+
+    public void setTiered(Map<String, TieredCacheProperties> tiered) {
+        this.tiered = tiered;
+    }
+
+    public Map<String, OffHeapCacheProperties> getOffheap() {
+        return offheap;
+    }
+
+    public void setOffheap(Map<String, OffHeapCacheProperties> offheap) {
+        this.offheap = offheap;
+    }
+
+    public Map<String, WarmUpProperties> getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(Map<String, WarmUpProperties> warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public InvalidationProperties getInvalidation() {
+        return invalidation;
+    }
+
+    public void setInvalidation(InvalidationProperties invalidation) {
+        this.invalidation = invalidation;
+    }
+
+    public MetricsProperties getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsProperties metrics) {
+        this.metrics = metrics;
+    }
+
+    public ExecutorProperties getExecutor() {
+        return executor;
+    }
+
+    public void setExecutor(ExecutorProperties executor) {
+        this.executor = executor;
+    }
+
+    public static class RedisCacheProperties implements SerializerProperties {
 
         private Duration timeToLive = Duration.ZERO;
         private boolean cacheNullValues = true;
+        private Duration negativeTtl; //time to live of null values, time-to-live when not set
+        private String ttlJitter; //a percentage of the time to live ("10%") or a duration ("5m")
+        private String ttlFunctionBean; //bean name of a TtlFunction choosing the time to live of each entry
         private String keyPrefix; //default assigned in CacheConfiguration
         private boolean useKeyPrefix = true;
+        private KeyEncoding keyEncoding = KeyEncoding.STRING;
+        private DataSize maxKeyLength; //keys longer than this are hashed, never when not set
+        private ClearMode clearMode = ClearMode.SCAN;
+        private Duration generationPollInterval = Duration.ofSeconds(1);
+        private Serializer serializer = Serializer.JDK;
+        private String serializerBean; //bean name of a RedisSerializer, used with serializer=custom
+        private List<String> trustedPackages; //packages and classes the json, smile and kryo serializers may read
+        private List<String> kryoClasses; //classes registered with kryo, in this order; only these are written and read
+        private Compression compression = Compression.NONE;
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+        private boolean transactionAware = true;
+        private boolean lockingWriter = false;
+        private Duration loadLeaseTime = Duration.ZERO; //zero: sync loads are single-flight per JVM only
+        private Duration refreshAhead = Duration.ZERO;
+        private double earlyExpirationBeta = 0;
+        private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+        private WriteMode writeMode = WriteMode.WRITE_THROUGH;
+        private WriteBehindProperties writeBehind = new WriteBehindProperties();
+        private HotKeyProperties hotKeys = new HotKeyProperties();
 
         public RedisCacheProperties() {
         }
@@ -77,6 +208,30 @@ public class MultiCacheProperties {
             this.cacheNullValues = cacheNullValues;
         }
 
+        public Duration getNegativeTtl() {
+            return this.negativeTtl;
+        }
+
+        public void setNegativeTtl(Duration negativeTtl) {
+            this.negativeTtl = negativeTtl;
+        }
+
+        public String getTtlJitter() {
+            return this.ttlJitter;
+        }
+
+        public void setTtlJitter(String ttlJitter) {
+            this.ttlJitter = ttlJitter;
+        }
+
+        public String getTtlFunctionBean() {
+            return this.ttlFunctionBean;
+        }
+
+        public void setTtlFunctionBean(String ttlFunctionBean) {
+            this.ttlFunctionBean = ttlFunctionBean;
+        }
+
         public String getKeyPrefix() {
             return this.keyPrefix;
         }
@@ -93,19 +248,482 @@ public class MultiCacheProperties {
             this.useKeyPrefix = useKeyPrefix;
         }
 
+        public KeyEncoding getKeyEncoding() {
+            return this.keyEncoding;
+        }
+
+        public void setKeyEncoding(KeyEncoding keyEncoding) {
+            this.keyEncoding = keyEncoding;
+        }
+
+        public DataSize getMaxKeyLength() {
+            return this.maxKeyLength;
+        }
+
+        public void setMaxKeyLength(DataSize maxKeyLength) {
+            this.maxKeyLength = maxKeyLength;
+        }
+
+        public ClearMode getClearMode() {
+            return this.clearMode;
+        }
+
+        public void setClearMode(ClearMode clearMode) {
+            this.clearMode = clearMode;
+        }
+
+        public Duration getGenerationPollInterval() {
+            return this.generationPollInterval;
+        }
+
+        public void setGenerationPollInterval(Duration generationPollInterval) {
+            this.generationPollInterval = generationPollInterval;
+        }
+
+        public Serializer getSerializer() {
+            return this.serializer;
+        }
+
+        public void setSerializer(Serializer serializer) {
+            this.serializer = serializer;
+        }
+
+        public String getSerializerBean() {
+            return this.serializerBean;
+        }
+
+        public void setSerializerBean(String serializerBean) {
+            this.serializerBean = serializerBean;
+        }
+
+        public List<String> getTrustedPackages() {
+            return this.trustedPackages;
+        }
+
+        public void setTrustedPackages(List<String> trustedPackages) {
+            this.trustedPackages = trustedPackages;
+        }
+
+        public List<String> getKryoClasses() {
+            return this.kryoClasses;
+        }
+
+        public void setKryoClasses(List<String> kryoClasses) {
+            this.kryoClasses = kryoClasses;
+        }
+
+        public Compression getCompression() {
+            return this.compression;
+        }
+
+        public void setCompression(Compression compression) {
+            this.compression = compression;
+        }
+
+        public DataSize getCompressionThreshold() {
+            return this.compressionThreshold;
+        }
+
+        public void setCompressionThreshold(DataSize compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+
+        public boolean isTransactionAware() {
+            return this.transactionAware;
+        }
+
+        public void setTransactionAware(boolean transactionAware) {
+            this.transactionAware = transactionAware;
+        }
+
+        public boolean isLockingWriter() {
+            return this.lockingWriter;
+        }
+
+        public void setLockingWriter(boolean lockingWriter) {
+            this.lockingWriter = lockingWriter;
+        }
+
+        public Duration getLoadLeaseTime() {
+            return this.loadLeaseTime;
+        }
+
+        public void setLoadLeaseTime(Duration loadLeaseTime) {
+            this.loadLeaseTime = loadLeaseTime;
+        }
+
+        public Duration getRefreshAhead() {
+            return this.refreshAhead;
+        }
+
+        public void setRefreshAhead(Duration refreshAhead) {
+            this.refreshAhead = refreshAhead;
+        }
+
+        public double getEarlyExpirationBeta() {
+            return this.earlyExpirationBeta;
+        }
+
+        public void setEarlyExpirationBeta(double earlyExpirationBeta) {
+            this.earlyExpirationBeta = earlyExpirationBeta;
+        }
+
+        public CircuitBreakerProperties getCircuitBreaker() {
+            return this.circuitBreaker;
+        }
+
+        public void setCircuitBreaker(CircuitBreakerProperties circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        public WriteMode getWriteMode() {
+            return this.writeMode;
+        }
+
+        public void setWriteMode(WriteMode writeMode) {
+            this.writeMode = writeMode;
+        }
+
+        public WriteBehindProperties getWriteBehind() {
+            return this.writeBehind;
+        }
+
+        public void setWriteBehind(WriteBehindProperties writeBehind) {
+            this.writeBehind = writeBehind;
+        }
+
+        public HotKeyProperties getHotKeys() {
+            return this.hotKeys;
+        }
+
+        public void setHotKeys(HotKeyProperties hotKeys) {
+            this.hotKeys = hotKeys;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            RedisCacheProperties that = (RedisCacheProperties) o;
+            return cacheNullValues == that.cacheNullValues &&
+                    useKeyPrefix == that.useKeyPrefix &&
+                    transactionAware == that.transactionAware &&
+                    lockingWriter == that.lockingWriter &&
+                    Double.compare(that.earlyExpirationBeta, earlyExpirationBeta) == 0 &&
+                    Objects.equals(timeToLive, that.timeToLive) &&
+                    Objects.equals(negativeTtl, that.negativeTtl) &&
+                    Objects.equals(ttlJitter, that.ttlJitter) &&
+                    Objects.equals(ttlFunctionBean, that.ttlFunctionBean) &&
+                    Objects.equals(keyPrefix, that.keyPrefix) &&
+                    Objects.equals(keyEncoding, that.keyEncoding) &&
+                    Objects.equals(maxKeyLength, that.maxKeyLength) &&
+                    Objects.equals(clearMode, that.clearMode) &&
+                    Objects.equals(generationPollInterval, that.generationPollInterval) &&
+                    Objects.equals(serializer, that.serializer) &&
+                    Objects.equals(serializerBean, that.serializerBean) &&
+                    Objects.equals(trustedPackages, that.trustedPackages) &&
+                    Objects.equals(kryoClasses, that.kryoClasses) &&
+                    Objects.equals(compression, that.compression) &&
+                    Objects.equals(compressionThreshold, that.compressionThreshold) &&
+                    Objects.equals(loadLeaseTime, that.loadLeaseTime) &&
+                    Objects.equals(refreshAhead, that.refreshAhead) &&
+                    Objects.equals(circuitBreaker, that.circuitBreaker) &&
+                    Objects.equals(writeMode, that.writeMode) &&
+                    Objects.equals(writeBehind, that.writeBehind) &&
+                    Objects.equals(hotKeys, that.hotKeys);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timeToLive, cacheNullValues, negativeTtl, ttlJitter, ttlFunctionBean, keyPrefix, useKeyPrefix, keyEncoding, maxKeyLength, clearMode, generationPollInterval, serializer, serializerBean, trustedPackages, kryoClasses, compression, compressionThreshold, transactionAware, lockingWriter, loadLeaseTime, refreshAhead, earlyExpirationBeta, circuitBreaker, writeMode, writeBehind, hotKeys);
+        }
+
         @Override
         public String toString() {
             return "RedisCacheProperties{" +
                     "timeToLive=" + timeToLive +
                     ", cacheNullValues=" + cacheNullValues +
+                    ", negativeTtl=" + negativeTtl +
+                    ", ttlJitter='" + ttlJitter + '\'' +
+                    ", ttlFunctionBean='" + ttlFunctionBean + '\'' +
                     ", keyPrefix='" + keyPrefix + '\'' +
                     ", useKeyPrefix=" + useKeyPrefix +
+                    ", keyEncoding=" + keyEncoding +
+                    ", maxKeyLength=" + maxKeyLength +
+                    ", clearMode=" + clearMode +
+                    ", generationPollInterval=" + generationPollInterval +
+                    ", serializer=" + serializer +
+                    ", serializerBean='" + serializerBean + '\'' +
+                    ", trustedPackages=" + trustedPackages +
+                    ", kryoClasses=" + kryoClasses +
+                    ", compression=" + compression +
+                    ", compressionThreshold=" + compressionThreshold +
+                    ", transactionAware=" + transactionAware +
+                    ", lockingWriter=" + lockingWriter +
+                    ", loadLeaseTime=" + loadLeaseTime +
+                    ", refreshAhead=" + refreshAhead +
+                    ", earlyExpirationBeta=" + earlyExpirationBeta +
+                    ", circuitBreaker=" + circuitBreaker +
+                    ", writeMode=" + writeMode +
+                    ", writeBehind=" + writeBehind +
+                    ", hotKeys=" + hotKeys +
+                    '}';
+        }
+    }
+
+    /**
+     * Circuit breaker of a redis cache. Calls that fail, or take longer than the latency budget, count as failures;
+     * after {@code failure-threshold} consecutive failures the cache stops calling redis for {@code open-duration}.
+     */
+    public static class CircuitBreakerProperties {
+        private boolean enabled = false;
+        private Duration latencyBudget = Duration.ZERO; //zero: only errors count as failures
+        private int failureThreshold = 5;
+        private Duration openDuration = Duration.ofSeconds(30);
+        private String fallbackSpec; //caffeine spec of a local cache used while the circuit is open
+
+        public CircuitBreakerProperties() {
+        }
+
+        public boolean isEnabled() { return this.enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public Duration getLatencyBudget() { return this.latencyBudget; }
+
+        public void setLatencyBudget(Duration latencyBudget) { this.latencyBudget = latencyBudget; }
+
+        public int getFailureThreshold() { return this.failureThreshold; }
+
+        public void setFailureThreshold(int failureThreshold) { this.failureThreshold = failureThreshold; }
+
+        public Duration getOpenDuration() { return this.openDuration; }
+
+        public void setOpenDuration(Duration openDuration) { this.openDuration = openDuration; }
+
+        public String getFallbackSpec() { return this.fallbackSpec; }
+
+        public void setFallbackSpec(String fallbackSpec) { this.fallbackSpec = fallbackSpec; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CircuitBreakerProperties that = (CircuitBreakerProperties) o;
+            return enabled == that.enabled &&
+                    failureThreshold == that.failureThreshold &&
+                    Objects.equals(latencyBudget, that.latencyBudget) &&
+                    Objects.equals(openDuration, that.openDuration) &&
+                    Objects.equals(fallbackSpec, that.fallbackSpec);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, latencyBudget, failureThreshold, openDuration, fallbackSpec);
+        }
+
+        @Override
+        public String toString() {
+            return "CircuitBreakerProperties{" +
+                    "enabled=" + enabled +
+                    ", latencyBudget=" + latencyBudget +
+                    ", failureThreshold=" + failureThreshold +
+                    ", openDuration=" + openDuration +
+                    ", fallbackSpec='" + fallbackSpec + '\'' +
+                    '}';
+        }
+    }
+
+    /**
+     * How keys are written to redis: as text like a stock RedisCache, or in a compact binary form that is smaller but
+     * not readable in redis-cli. Changing it leaves the keys written before unused until they expire.
+     */
+    public enum KeyEncoding {
+        STRING, COMPACT
+    }
+
+    /**
+     * How a redis cache is cleared: by scanning for its keys and deleting them, or by moving it to a new generation of
+     * keys in a single command, leaving the old keys to expire. Other nodes see a new generation within
+     * {@code generation-poll-interval}.
+     */
+    public enum ClearMode {
+        SCAN, GENERATION
+    }
+
+    public enum WriteMode {
+        WRITE_THROUGH, WRITE_BEHIND
+    }
+
+    /**
+     * What a write-behind cache does with a write when {@code queue-capacity} writes are already pending:
+     * flush the queue on the caller's thread, wait for a background flush, or drop the write (evictions are never
+     * dropped, they are flushed by the caller instead).
+     */
+    public enum WriteBehindOverflow {
+        CALLER_RUNS, BLOCK, DROP
+    }
+
+    /**
+     * Queueing of puts and evictions of a redis cache with {@code write-mode=write-behind}.
+     */
+    public static class WriteBehindProperties {
+        private Duration flushInterval = Duration.ofMillis(100);
+        private int batchSize = 500;
+        private int queueCapacity = 10000;
+        private WriteBehindOverflow overflow = WriteBehindOverflow.CALLER_RUNS;
+
+        public WriteBehindProperties() {
+        }
+
+        public Duration getFlushInterval() { return this.flushInterval; }
+
+        public void setFlushInterval(Duration flushInterval) { this.flushInterval = flushInterval; }
+
+        public int getBatchSize() { return this.batchSize; }
+
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public int getQueueCapacity() { return this.queueCapacity; }
+
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public WriteBehindOverflow getOverflow() { return this.overflow; }
+
+        public void setOverflow(WriteBehindOverflow overflow) { this.overflow = overflow; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            WriteBehindProperties that = (WriteBehindProperties) o;
+            return batchSize == that.batchSize &&
+                    queueCapacity == that.queueCapacity &&
+                    Objects.equals(flushInterval, that.flushInterval) &&
+                    Objects.equals(overflow, that.overflow);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(flushInterval, batchSize, queueCapacity, overflow);
+        }
+
+        @Override
+        public String toString() {
+            return "WriteBehindProperties{" +
+                    "flushInterval=" + flushInterval +
+                    ", batchSize=" + batchSize +
+                    ", queueCapacity=" + queueCapacity +
+                    ", overflow=" + overflow +
+                    '}';
+        }
+    }
+
+    /**
+     * Hot-key detection of a redis cache. The {@code tracked} most read keys are counted; those read at least
+     * {@code min-frequency} times per {@code decay-interval} are hot. With {@code promote}, hot keys are also kept in
+     * a local cache for {@code local-time-to-live}, so reads on other nodes may see a stale value for that long.
+     */
+    public static class HotKeyProperties {
+        private boolean enabled = false;
+        private int tracked = 100;
+        private int minFrequency = 1000;
+        private Duration decayInterval = Duration.ofSeconds(10);
+        private boolean promote = false;
+        private Duration localTimeToLive = Duration.ofSeconds(1);
+
+        public HotKeyProperties() {
+        }
+
+        public boolean isEnabled() { return this.enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getTracked() { return this.tracked; }
+
+        public void setTracked(int tracked) { this.tracked = tracked; }
+
+        public int getMinFrequency() { return this.minFrequency; }
+
+        public void setMinFrequency(int minFrequency) { this.minFrequency = minFrequency; }
+
+        public Duration getDecayInterval() { return this.decayInterval; }
+
+        public void setDecayInterval(Duration decayInterval) { this.decayInterval = decayInterval; }
+
+        public boolean isPromote() { return this.promote; }
+
+        public void setPromote(boolean promote) { this.promote = promote; }
+
+        public Duration getLocalTimeToLive() { return this.localTimeToLive; }
+
+        public void setLocalTimeToLive(Duration localTimeToLive) { this.localTimeToLive = localTimeToLive; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            HotKeyProperties that = (HotKeyProperties) o;
+            return enabled == that.enabled &&
+                    tracked == that.tracked &&
+                    minFrequency == that.minFrequency &&
+                    promote == that.promote &&
+                    Objects.equals(decayInterval, that.decayInterval) &&
+                    Objects.equals(localTimeToLive, that.localTimeToLive);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, tracked, minFrequency, decayInterval, promote, localTimeToLive);
+        }
+
+        @Override
+        public String toString() {
+            return "HotKeyProperties{" +
+                    "enabled=" + enabled +
+                    ", tracked=" + tracked +
+                    ", minFrequency=" + minFrequency +
+                    ", decayInterval=" + decayInterval +
+                    ", promote=" + promote +
+                    ", localTimeToLive=" + localTimeToLive +
                     '}';
         }
     }
 
+    /**
+     * Value serializers for redis caches. {@code CUSTOM} looks up the RedisSerializer bean named by {@code serializer-bean}.
+     */
+    public enum Serializer {
+        JDK, JSON, SMILE, KRYO, CUSTOM
+    }
+
+    /**
+     * How the values (and snapshot keys) of a cache are serialized. The json, smile and kryo serializers only read
+     * the jdk's value and collection classes and the classes of {@code trusted-packages}; with {@code kryo-classes},
+     * kryo only writes and reads those classes.
+     */
+    public interface SerializerProperties {
+        Serializer getSerializer();
+
+        String getSerializerBean();
+
+        List<String> getTrustedPackages();
+
+        List<String> getKryoClasses();
+    }
+
+    /**
+     * Compression of serialized redis values that are at least {@code compression-threshold} bytes long.
+     */
+    public enum Compression {
+        NONE, GZIP, LZ4, ZSTD
+    }
+
     public static class CaffeineCacheProperties {
         private String spec;
+        private DataSize maxMemory;
+        private Duration negativeTtl;
+        private SnapshotProperties snapshot = new SnapshotProperties();
 
         public CaffeineCacheProperties() {
         }
@@ -114,10 +732,447 @@ public class MultiCacheProperties {
 
         public void setSpec(String spec) { this.spec = spec; }
 
+        /**
+         * Bounds the cache by the estimated heap size of its keys and values instead of an entry count,
+         * the spec must then not set maximumSize or maximumWeight.
+         */
+        public DataSize getMaxMemory() { return this.maxMemory; }
+
+        public void setMaxMemory(DataSize maxMemory) { this.maxMemory = maxMemory; }
+
+        /**
+         * Time to live of null values, the spec's expiry when not set.
+         */
+        public Duration getNegativeTtl() { return this.negativeTtl; }
+
+        public void setNegativeTtl(Duration negativeTtl) { this.negativeTtl = negativeTtl; }
+
+        public SnapshotProperties getSnapshot() { return this.snapshot; }
+
+        public void setSnapshot(SnapshotProperties snapshot) { this.snapshot = snapshot; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CaffeineCacheProperties that = (CaffeineCacheProperties) o;
+            return Objects.equals(spec, that.spec) &&
+                    Objects.equals(maxMemory, that.maxMemory) &&
+                    Objects.equals(negativeTtl, that.negativeTtl) &&
+                    Objects.equals(snapshot, that.snapshot);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(spec, maxMemory, negativeTtl, snapshot);
+        }
+
         @Override
         public String toString() {
             return "CaffeineCacheProperties{" +
                     "spec=" + spec +
+                    ", maxMemory=" + maxMemory +
+                    ", negativeTtl=" + negativeTtl +
+                    ", snapshot=" + snapshot +
+                    '}';
+        }
+    }
+
+    /**
+     * Saving the hottest entries of a caffeine cache to a file in {@code path} every {@code interval} and at shutdown,
+     * and loading them at startup. A zero interval only saves at shutdown.
+     */
+    public static class SnapshotProperties implements SerializerProperties {
+        private boolean enabled = false;
+        private String path; //directory of the snapshot files, required when enabled
+        private Duration interval = Duration.ofMinutes(5);
+        private int maxEntries = 10000;
+        private Duration maxAge = Duration.ofHours(1);
+        private Serializer serializer = Serializer.JDK;
+        private String serializerBean; //bean name of a RedisSerializer, used with serializer=custom
+        private List<String> trustedPackages; //packages and classes the json, smile and kryo serializers may read
+        private List<String> kryoClasses; //classes registered with kryo, in this order; only these are written and read
+
+        public SnapshotProperties() {
+        }
+
+        public boolean isEnabled() { return this.enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getPath() { return this.path; }
+
+        public void setPath(String path) { this.path = path; }
+
+        public Duration getInterval() { return this.interval; }
+
+        public void setInterval(Duration interval) { this.interval = interval; }
+
+        public int getMaxEntries() { return this.maxEntries; }
+
+        public void setMaxEntries(int maxEntries) { this.maxEntries = maxEntries; }
+
+        public Duration getMaxAge() { return this.maxAge; }
+
+        public void setMaxAge(Duration maxAge) { this.maxAge = maxAge; }
+
+        public Serializer getSerializer() { return this.serializer; }
+
+        public void setSerializer(Serializer serializer) { this.serializer = serializer; }
+
+        public String getSerializerBean() { return this.serializerBean; }
+
+        public void setSerializerBean(String serializerBean) { this.serializerBean = serializerBean; }
+
+        public List<String> getTrustedPackages() { return this.trustedPackages; }
+
+        public void setTrustedPackages(List<String> trustedPackages) { this.trustedPackages = trustedPackages; }
+
+        public List<String> getKryoClasses() { return this.kryoClasses; }
+
+        public void setKryoClasses(List<String> kryoClasses) { this.kryoClasses = kryoClasses; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SnapshotProperties that = (SnapshotProperties) o;
+            return enabled == that.enabled &&
+                    maxEntries == that.maxEntries &&
+                    Objects.equals(path, that.path) &&
+                    Objects.equals(interval, that.interval) &&
+                    Objects.equals(maxAge, that.maxAge) &&
+                    Objects.equals(serializer, that.serializer) &&
+                    Objects.equals(serializerBean, that.serializerBean) &&
+                    Objects.equals(trustedPackages, that.trustedPackages) &&
+                    Objects.equals(kryoClasses, that.kryoClasses);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(enabled, path, interval, maxEntries, maxAge, serializer, serializerBean, trustedPackages, kryoClasses);
+        }
+
+        @Override
+        public String toString() {
+            return "SnapshotProperties{" +
+                    "enabled=" + enabled +
+                    ", path='" + path + '\'' +
+                    ", interval=" + interval +
+                    ", maxEntries=" + maxEntries +
+                    ", maxAge=" + maxAge +
+                    ", serializer=" + serializer +
+                    ", serializerBean='" + serializerBean + '\'' +
+                    ", trustedPackages=" + trustedPackages +
+                    ", kryoClasses=" + kryoClasses +
+                    '}';
+        }
+    }
+
+    /**
+     * A redis cache (L2) with a caffeine cache (L1) in front of it. The redis side is configured
+     * exactly like a redis cache, the caffeine side through {@code local-spec}.
+     */
+    public static class TieredCacheProperties extends RedisCacheProperties {
+        private String localSpec = "maximumSize=10000,expireAfterWrite=30s";
+        private DataSize localMaxMemory;
+
+        public TieredCacheProperties() {
+        }
+
+        public String getLocalSpec() { return this.localSpec; }
+
+        public void setLocalSpec(String localSpec) { this.localSpec = localSpec; }
+
+        /**
+         * Like a caffeine cache's {@code max-memory}, for the caffeine side.
+         */
+        public DataSize getLocalMaxMemory() { return this.localMaxMemory; }
+
+        public void setLocalMaxMemory(DataSize localMaxMemory) { this.localMaxMemory = localMaxMemory; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            if (!super.equals(o)) return false;
+            TieredCacheProperties that = (TieredCacheProperties) o;
+            return Objects.equals(localSpec, that.localSpec) &&
+                    Objects.equals(localMaxMemory, that.localMaxMemory);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(super.hashCode(), localSpec, localMaxMemory);
+        }
+
+        @Override
+        public String toString() {
+            return "TieredCacheProperties{" +
+                    "localSpec=" + localSpec +
+                    ", localMaxMemory=" + localMaxMemory +
+                    ", remote=" + super.toString() +
+                    '}';
+        }
+    }
+
+    /**
+     * A local cache that keeps serialized values outside the java heap, in direct memory or, with {@code path},
+     * in memory mapped files in that directory. The {@code max-memory} budget is split into {@code segments}.
+     */
+    public static class OffHeapCacheProperties implements SerializerProperties {
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+        private int segments = 16;
+        private Duration timeToLive = Duration.ZERO;
+        private String path;
+        private Serializer serializer = Serializer.JDK;
+        private String serializerBean; //bean name of a RedisSerializer, used with serializer=custom
+        private List<String> trustedPackages; //packages and classes the json, smile and kryo serializers may read
+        private List<String> kryoClasses; //classes registered with kryo, in this order; only these are written and read
+        private Compression compression = Compression.NONE;
+        private DataSize compressionThreshold = DataSize.ofKilobytes(1);
+
+        public OffHeapCacheProperties() {
+        }
+
+        public DataSize getMaxMemory() { return this.maxMemory; }
+
+        public void setMaxMemory(DataSize maxMemory) { this.maxMemory = maxMemory; }
+
+        public int getSegments() { return this.segments; }
+
+        public void setSegments(int segments) { this.segments = segments; }
+
+        public Duration getTimeToLive() { return this.timeToLive; }
+
+        public void setTimeToLive(Duration timeToLive) { this.timeToLive = timeToLive; }
+
+        public String getPath() { return this.path; }
+
+        public void setPath(String path) { this.path = path; }
+
+        public Serializer getSerializer() { return this.serializer; }
+
+        public void setSerializer(Serializer serializer) { this.serializer = serializer; }
+
+        public String getSerializerBean() { return this.serializerBean; }
+
+        public void setSerializerBean(String serializerBean) { this.serializerBean = serializerBean; }
+
+        public List<String> getTrustedPackages() { return this.trustedPackages; }
+
+        public void setTrustedPackages(List<String> trustedPackages) { this.trustedPackages = trustedPackages; }
+
+        public List<String> getKryoClasses() { return this.kryoClasses; }
+
+        public void setKryoClasses(List<String> kryoClasses) { this.kryoClasses = kryoClasses; }
+
+        public Compression getCompression() { return this.compression; }
+
+        public void setCompression(Compression compression) { this.compression = compression; }
+
+        public DataSize getCompressionThreshold() { return this.compressionThreshold; }
+
+        public void setCompressionThreshold(DataSize compressionThreshold) { this.compressionThreshold = compressionThreshold; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            OffHeapCacheProperties that = (OffHeapCacheProperties) o;
+            return segments == that.segments &&
+                    Objects.equals(maxMemory, that.maxMemory) &&
+                    Objects.equals(timeToLive, that.timeToLive) &&
+                    Objects.equals(path, that.path) &&
+                    Objects.equals(serializer, that.serializer) &&
+                    Objects.equals(serializerBean, that.serializerBean) &&
+                    Objects.equals(trustedPackages, that.trustedPackages) &&
+                    Objects.equals(kryoClasses, that.kryoClasses) &&
+                    Objects.equals(compression, that.compression) &&
+                    Objects.equals(compressionThreshold, that.compressionThreshold);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(maxMemory, segments, timeToLive, path, serializer, serializerBean, trustedPackages, kryoClasses, compression, compressionThreshold);
+        }
+
+        @Override
+        public String toString() {
+            return "OffHeapCacheProperties{" +
+                    "maxMemory=" + maxMemory +
+                    ", segments=" + segments +
+                    ", timeToLive=" + timeToLive +
+                    ", path='" + path + '\'' +
+                    ", serializer=" + serializer +
+                    ", serializerBean='" + serializerBean + '\'' +
+                    ", trustedPackages=" + trustedPackages +
+                    ", kryoClasses=" + kryoClasses +
+                    ", compression=" + compression +
+                    ", compressionThreshold=" + compressionThreshold +
+                    '}';
+        }
+    }
+
+    /**
+     * Loading a cache at startup: {@code keys} and {@code loader} are {@code beanName.methodName} references,
+     * see {@link CacheWarmer}.
+     */
+    public static class WarmUpProperties {
+        private String keys;
+        private String loader;
+        private String keyProperty; //property of the values a batch loader returns that holds their key
+        private int batchSize = 100;
+        private int concurrency = 4;
+        private Duration timeout = Duration.ofMinutes(5);
+        private boolean failOnError = false;
+
+        public WarmUpProperties() {
+        }
+
+        public String getKeys() { return this.keys; }
+
+        public void setKeys(String keys) { this.keys = keys; }
+
+        public String getLoader() { return this.loader; }
+
+        public void setLoader(String loader) { this.loader = loader; }
+
+        public String getKeyProperty() { return this.keyProperty; }
+
+        public void setKeyProperty(String keyProperty) { this.keyProperty = keyProperty; }
+
+        public int getBatchSize() { return this.batchSize; }
+
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+
+        public int getConcurrency() { return this.concurrency; }
+
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public Duration getTimeout() { return this.timeout; }
+
+        public void setTimeout(Duration timeout) { this.timeout = timeout; }
+
+        public boolean isFailOnError() { return this.failOnError; }
+
+        public void setFailOnError(boolean failOnError) { this.failOnError = failOnError; }
+
+        @Override
+        public String toString() {
+            return "WarmUpProperties{" +
+                    "keys='" + keys + '\'' +
+                    ", loader='" + loader + '\'' +
+                    ", keyProperty='" + keyProperty + '\'' +
+                    ", batchSize=" + batchSize +
+                    ", concurrency=" + concurrency +
+                    ", timeout=" + timeout +
+                    ", failOnError=" + failOnError +
+                    '}';
+        }
+    }
+
+    /**
+     * Cross-node invalidation of caffeine caches and of the local tier of tiered caches over redis pub/sub.
+     */
+    public static class InvalidationProperties {
+        private boolean enabled = false;
+        private String channel = "multicache-invalidation";
+        private Duration flushInterval = Duration.ofMillis(50);
+        private int maxBatchSize = 1000;
+
+        public InvalidationProperties() {
+        }
+
+        public boolean isEnabled() { return this.enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getChannel() { return this.channel; }
+
+        public void setChannel(String channel) { this.channel = channel; }
+
+        public Duration getFlushInterval() { return this.flushInterval; }
+
+        public void setFlushInterval(Duration flushInterval) { this.flushInterval = flushInterval; }
+
+        public int getMaxBatchSize() { return this.maxBatchSize; }
+
+        public void setMaxBatchSize(int maxBatchSize) { this.maxBatchSize = maxBatchSize; }
+
+        @Override
+        public String toString() {
+            return "InvalidationProperties{" +
+                    "enabled=" + enabled +
+                    ", channel='" + channel + '\'' +
+                    ", flushInterval=" + flushInterval +
+                    ", maxBatchSize=" + maxBatchSize +
+                    '}';
+        }
+    }
+
+    /**
+     * Micrometer metrics of every multicache cache, recorded when a MeterRegistry bean exists.
+     */
+    public static class MetricsProperties {
+        private boolean enabled = true;
+        private double[] percentiles = new double[] { 0.5, 0.95, 0.99 };
+
+        public MetricsProperties() {
+        }
+
+        public boolean isEnabled() { return this.enabled; }
+
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double[] getPercentiles() { return this.percentiles; }
+
+        public void setPercentiles(double[] percentiles) { this.percentiles = percentiles; }
+
+        @Override
+        public String toString() {
+            return "MetricsProperties{" +
+                    "enabled=" + enabled +
+                    ", percentiles=" + Arrays.toString(percentiles) +
+                    '}';
+        }
+    }
+
+    public enum ExecutorType {
+        PLATFORM, VIRTUAL
+    }
+
+    /**
+     * The executor multicache runs its background work on: loads, refreshes, invalidation broadcasts and caffeine
+     * maintenance. {@code platform} is a bounded pool of daemon threads; when its queue is full, the submitting
+     * thread runs the task itself. {@code virtual} starts a virtual thread per task (Java 21 or later).
+     */
+    public static class ExecutorProperties {
+        private ExecutorType type = ExecutorType.PLATFORM;
+        private int poolSize = Math.max(2, Runtime.getRuntime().availableProcessors());
+        private int queueCapacity = 10000;
+
+        public ExecutorProperties() {
+        }
+
+        public ExecutorType getType() { return this.type; }
+
+        public void setType(ExecutorType type) { this.type = type; }
+
+        public int getPoolSize() { return this.poolSize; }
+
+        public void setPoolSize(int poolSize) { this.poolSize = poolSize; }
+
+        public int getQueueCapacity() { return this.queueCapacity; }
+
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        @Override
+        public String toString() {
+            return "ExecutorProperties{" +
+                    "type=" + type +
+                    ", poolSize=" + poolSize +
+                    ", queueCapacity=" + queueCapacity +
                     '}';
         }
     }
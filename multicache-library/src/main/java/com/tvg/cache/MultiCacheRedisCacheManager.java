@@ -0,0 +1,102 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * RedisCacheManager for every configured redis cache. Unlike the stock manager, which hands the same writer to
+ * all of its caches, each cache gets the writer its properties ask for (locking or non-locking), and is created
+ * as a {@link MultiRedisCache} knowing its own properties.
+ */
+public class MultiCacheRedisCacheManager extends RedisCacheManager {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final RedisCacheWriter nonLockingWriter;
+    private final RedisCacheWriter lockingWriter;
+    private final Map<String, MultiCacheProperties.RedisCacheProperties> cacheProperties;
+    private final Executor executor;
+    private final Map<String, TtlFunction> ttlFunctions;
+    private final ConcurrentMap<String, MultiRedisCache> replacedCaches = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttlFunctions the {@code ttl-function-bean} of each cache that has one
+     */
+    public MultiCacheRedisCacheManager(RedisConnectionFactory connectionFactory,
+                                       Map<String, RedisCacheConfiguration> cacheConfigurations,
+                                       Map<String, ? extends MultiCacheProperties.RedisCacheProperties> cacheProperties,
+                                       Executor executor, Map<String, TtlFunction> ttlFunctions) {
+        this(connectionFactory, RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory), cacheConfigurations, cacheProperties, executor, ttlFunctions);
+    }
+
+    private MultiCacheRedisCacheManager(RedisConnectionFactory connectionFactory,
+                                        RedisCacheWriter nonLockingWriter,
+                                        Map<String, RedisCacheConfiguration> cacheConfigurations,
+                                        Map<String, ? extends MultiCacheProperties.RedisCacheProperties> cacheProperties,
+                                        Executor executor, Map<String, TtlFunction> ttlFunctions) {
+        super(nonLockingWriter, RedisCacheConfiguration.defaultCacheConfig(), cacheConfigurations, false);
+        this.connectionFactory = connectionFactory;
+        this.nonLockingWriter = nonLockingWriter;
+        this.lockingWriter = RedisCacheWriter.lockingRedisCacheWriter(connectionFactory);
+        this.cacheProperties = new ConcurrentHashMap<>(cacheProperties);
+        this.executor = executor;
+        this.ttlFunctions = new ConcurrentHashMap<>(ttlFunctions);
+    }
+
+    /**
+     * Creates a cache with new properties, without replacing the one this manager returns for its name yet.
+     *
+     * @param ttlFunction the cache's {@code ttl-function-bean}, or null
+     */
+    public MultiRedisCache newCache(String name, RedisCacheConfiguration cacheConfig, MultiCacheProperties.RedisCacheProperties properties,
+                                    TtlFunction ttlFunction) {
+        RedisCacheWriter cacheWriter = properties.isLockingWriter() ? lockingWriter : nonLockingWriter;
+        return new MultiRedisCache(name, cacheWriter, cacheConfig, connectionFactory, properties, executor, ttlFunction);
+    }
+
+    /**
+     * Replaces the cache this manager returns for the name of a cache created by {@link #newCache}.
+     */
+    public void replaceCache(MultiRedisCache cache, MultiCacheProperties.RedisCacheProperties properties, TtlFunction ttlFunction) {
+        cacheProperties.put(cache.getName(), properties);
+        if (ttlFunction != null) {
+            ttlFunctions.put(cache.getName(), ttlFunction);
+        } else {
+            ttlFunctions.remove(cache.getName());
+        }
+        replacedCaches.put(cache.getName(), cache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = replacedCaches.get(name);
+        return cache != null ? cache : super.getCache(name);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        Set<String> names = new LinkedHashSet<>(super.getCacheNames());
+        names.addAll(replacedCaches.keySet());
+        return names;
+    }
+
+    @Override
+    protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
+        MultiCacheProperties.RedisCacheProperties properties = cacheProperties.get(name);
+        if (properties == null) {
+            properties = new MultiCacheProperties.RedisCacheProperties();
+        }
+        return newCache(name, cacheConfig, properties, ttlFunctions.get(name));
+    }
+}
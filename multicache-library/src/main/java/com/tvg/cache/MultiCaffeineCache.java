@@ -0,0 +1,81 @@
+package com.tvg.cache;
+
+import com.github.benmanes.caffeine.cache.Policy;
+import org.springframework.cache.caffeine.CaffeineCache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caffeine cache with bulk reads and writes through the native cache's {@code getAllPresent} and {@code putAll},
+ * and an async view whose reads and writes complete immediately.
+ */
+public class MultiCaffeineCache extends CaffeineCache implements MultiKeyCache, AsyncMultiCache.Provider {
+
+    private final AsyncMultiCache async = new LocalAsyncCache(this);
+
+    public MultiCaffeineCache(String name, com.github.benmanes.caffeine.cache.Cache<Object, Object> cache, boolean allowNullValues) {
+        super(name, cache, allowNullValues);
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        return async;
+    }
+
+    /**
+     * The estimated heap size of the cache in bytes when it is bounded by {@code max-memory}, 0 otherwise.
+     */
+    public long getWeightedSize() {
+        return getNativeCache().policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0))
+                .orElse(0L);
+    }
+
+    /**
+     * Up to {@code limit} entries (as stored, nulls as NullValue), most likely to be used again first: the most
+     * frequently used ones for a size bounded cache, the most recently used ones for a cache that expires after
+     * access, any entries otherwise.
+     */
+    public Map<Object, Object> hottest(int limit) {
+        Policy<Object, Object> policy = getNativeCache().policy();
+        Optional<Policy.Eviction<Object, Object>> eviction = policy.eviction();
+        if (eviction.isPresent()) {
+            return eviction.get().hottest(limit);
+        }
+        Optional<Policy.Expiration<Object, Object>> expireAfterAccess = policy.expireAfterAccess();
+        if (expireAfterAccess.isPresent()) {
+            return expireAfterAccess.get().youngest(limit);
+        }
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        for (Map.Entry<Object, Object> entry : getNativeCache().asMap().entrySet()) {
+            if (entries.size() >= limit) {
+                break;
+            }
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        return entries;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> present = getNativeCache().getAllPresent(keys);
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object key : keys) {
+            Object value = present.get(key);
+            if (value != null) {
+                values.put(key, fromStoreValue(value));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        Map<Object, Object> storeValues = new LinkedHashMap<>();
+        entries.forEach( (key, value) -> storeValues.put(key, toStoreValue(value)));
+        getNativeCache().putAll(storeValues);
+    }
+}
@@ -0,0 +1,86 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A cache that reads and writes many keys in one call. Redis caches do it in a single round trip (MGET, and
+ * pipelined SETs), caffeine caches with the bulk operations of the native cache. The default methods fall back
+ * to one call per key, so {@link #of(Cache)} can adapt any cache.
+ * <pre>
+ * MultiKeyCache contacts = MultiKeyCache.of(cacheManager.getCache("contacts"));
+ * Map&lt;Long, Contact&gt; found = contacts.getAll(ids, missingIds -&gt; loadContacts(missingIds));
+ * </pre>
+ */
+public interface MultiKeyCache extends Cache {
+
+    static MultiKeyCache of(Cache cache) {
+        if (cache instanceof MultiKeyCache) {
+            return (MultiKeyCache) cache;
+        }
+        // its async view is the one of AsyncMultiCache.of(cache)
+        return new ForwardingCache(cache, Runnable::run) {
+        };
+    }
+
+    /**
+     * Returns the cached values of the given keys, in the order of the keys. Keys that are not cached are left out;
+     * keys cached with a {@code null} value map to {@code null}.
+     */
+    default Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object key : keys) {
+            ValueWrapper value = get(key);
+            if (value != null) {
+                values.put(key, value.get());
+            }
+        }
+        return values;
+    }
+
+    default void putAll(Map<?, ?> entries) {
+        entries.forEach(this::put);
+    }
+
+    /**
+     * Returns the values of the given keys, loading the keys that are not cached with a single call to
+     * {@code loader} and caching what it returns. Keys the loader returns no value for are left out.
+     */
+    @SuppressWarnings("unchecked")
+    default <K, V> Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        Map<Object, Object> cached = getAll(keys);
+        Set<K> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            if (!cached.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+
+        Map<K, V> loaded = missing.isEmpty() ? null : loader.apply(missing);
+        if (loaded != null && !loaded.isEmpty()) {
+            Map<K, V> toCache = new LinkedHashMap<>();
+            loaded.forEach( (key, value) -> {
+                if (value != null) {
+                    toCache.put(key, value);
+                }
+            });
+            putAll(toCache);
+        }
+
+        Map<K, V> values = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (cached.containsKey(key)) {
+                values.put(key, (V) cached.get(key));
+            } else if (loaded != null && loaded.get(key) != null) {
+                values.put(key, loaded.get(key));
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,569 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cache.support.NullValue;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Redis cache created by {@link MultiCacheRedisCacheManager}, with its own cache writer and properties.
+ * <p>
+ * {@code @Cacheable(sync = true)} loads are single-flight per key: concurrent misses on the same key in this JVM
+ * wait for one load instead of each calling the loader (the stock RedisCache serializes all loads of the cache
+ * instead). With a {@code load-lease-time}, the loading node also takes a lease in redis so that other nodes wait
+ * for its value rather than loading the same key themselves.
+ * <p>
+ * With {@code refresh-ahead} or {@code early-expiration-beta}, values are stored as {@link TimedValue}s that remember
+ * when they expire and how long they took to compute. A sync read of a value close to expiry still returns it, and
+ * reloads it in the background. A plain read may treat such a value as a miss early (XFetch: the slower the value
+ * is to compute, the earlier), so that a single caller recomputes it before it expires for everyone.
+ * <p>
+ * Keys are written by a {@link RedisKeyEncoder}, as text by default or in a compact binary form. With
+ * {@code clear-mode=generation}, keys also carry the cache's generation, kept in redis: a clear moves every node to
+ * the next generation with a single command instead of deleting the keys.
+ * <p>
+ * Bulk reads are a single MGET, bulk writes a pipeline of SETs (one SET per key on a redis cluster, which does not
+ * support pipelining).
+ * <p>
+ * The async view runs its commands on the reactive (lettuce) connection when the connection factory has one, and
+ * on the refresh executor otherwise. Async loads are single-flight per key in this JVM, without a load lease.
+ */
+public class MultiRedisCache extends RedisCache implements MultiKeyCache, AsyncMultiCache.Provider {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final long LOCK_SLEEP_MILLIS = 50;
+    // a put this long after a miss is not taken as the time the missed value took to compute
+    private static final long MAX_LOAD_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final byte[] LEASE_SUFFIX = "~lease".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] RELEASE_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) else return 0 end").getBytes(StandardCharsets.UTF_8);
+    // the generation never goes back, even when its key was evicted: ARGV[1] is the generation this node uses
+    private static final byte[] CURRENT_GENERATION_SCRIPT = ("local g = tonumber(redis.call('get', KEYS[1]) or '0') " +
+            "local mine = tonumber(ARGV[1]) " +
+            "if g < mine then redis.call('set', KEYS[1], mine) return mine end return g").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NEXT_GENERATION_SCRIPT = ("local g = math.max(tonumber(redis.call('get', KEYS[1]) or '0'), tonumber(ARGV[1])) + 1 " +
+            "redis.call('set', KEYS[1], g) return g").getBytes(StandardCharsets.UTF_8);
+
+    private final RedisConnectionFactory connectionFactory;
+    private final MultiCacheProperties.RedisCacheProperties properties;
+    private final Executor refreshExecutor;
+    private final boolean timed;
+    private final TtlFunction ttlFunction;
+    private final double jitterPercent;
+    private final long jitterMillis;
+    private final RedisKeyEncoder baseKeyEncoder;
+    private final byte[] generationKey;
+    private volatile RedisKeyEncoder keyEncoder;
+    private volatile long generation;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+    private final Set<Object> refreshes = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<LoadTiming> loadTiming = new ThreadLocal<>();
+    private volatile AsyncMultiCache async;
+
+    protected MultiRedisCache(String name, RedisCacheWriter cacheWriter, RedisCacheConfiguration cacheConfig,
+                              RedisConnectionFactory connectionFactory, MultiCacheProperties.RedisCacheProperties properties,
+                              Executor refreshExecutor, TtlFunction ttlFunction) {
+        super(name, cacheWriter, cacheConfig);
+        this.connectionFactory = connectionFactory;
+        this.properties = properties;
+        this.refreshExecutor = refreshExecutor;
+        this.timed = !properties.getRefreshAhead().isZero() || properties.getEarlyExpirationBeta() > 0;
+        this.ttlFunction = ttlFunction;
+        String jitter = properties.getTtlJitter() != null ? properties.getTtlJitter().trim() : "";
+        try {
+            this.jitterPercent = jitter.endsWith("%") ? Double.parseDouble(jitter.substring(0, jitter.length() - 1).trim()) : 0;
+            this.jitterMillis = !jitter.isEmpty() && !jitter.endsWith("%") ? DurationStyle.detectAndParse(jitter).toMillis() : 0;
+        } catch (IllegalArgumentException ex) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s has ttl-jitter %s, which is neither a percentage nor a duration", name, jitter), ex);
+        }
+        if (jitterPercent < 0 || jitterPercent > 50 || jitterMillis < 0) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s needs a ttl-jitter between 0%% and 50%% or a positive duration, got %s", name, jitter));
+        }
+        this.baseKeyEncoder = new RedisKeyEncoder(
+                properties.getKeyEncoding() != null ? properties.getKeyEncoding() : MultiCacheProperties.KeyEncoding.STRING,
+                cacheConfig.usePrefix() ? cacheConfig.getKeyPrefixFor(name) : "",
+                properties.getMaxKeyLength() != null ? (int) Math.min(Integer.MAX_VALUE, properties.getMaxKeyLength().toBytes()) : 0,
+                this::convertKey);
+        if (properties.getClearMode() == MultiCacheProperties.ClearMode.GENERATION) {
+            this.generationKey = ((cacheConfig.usePrefix() ? cacheConfig.getKeyPrefixFor(name) : name) + "~generation").getBytes(StandardCharsets.UTF_8);
+            this.keyEncoder = baseKeyEncoder.withGeneration(0);
+        } else {
+            this.generationKey = null;
+            this.keyEncoder = baseKeyEncoder;
+        }
+    }
+
+    public MultiCacheProperties.RedisCacheProperties getProperties() { return properties; }
+
+    @Override
+    public AsyncMultiCache async() {
+        if (async == null) {
+            async = connectionFactory instanceof ReactiveRedisConnectionFactory
+                    ? new ReactiveRedisAsyncCache(this, (ReactiveRedisConnectionFactory) connectionFactory)
+                    : new ExecutorAsyncCache(this, refreshExecutor);
+        }
+        return async;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        Object stored = lookupStored(key);
+        if (stored instanceof TimedValue && expiresEarly((TimedValue) stored)) {
+            stored = null;
+        }
+        stored = unwrap(stored);
+        if (stored == null && timed) {
+            // the caller will most likely compute the value and put it, which tells us how long computing takes
+            loadTiming.set(new LoadTiming(key));
+        } else if (timed) {
+            loadTiming.remove();
+        }
+        return stored;
+    }
+
+    private Object lookupStored(Object key) {
+        byte[] value = getNativeCache().get(getName(), cacheKey(key));
+        return value != null ? deserializeCacheValue(value) : null;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Duration ttl = timeToLive(key, value);
+        getNativeCache().put(getName(), cacheKey(key), serializedValue(key, value, ttl), ttl);
+    }
+
+    /**
+     * The time to live of an entry: {@code negative-ttl} for a null value when it is set, else what the
+     * {@code ttl-function-bean} returns, else {@code time-to-live}; with {@code clear-mode=generation} it must expire.
+     * Then shortened by a random part of the {@code ttl-jitter}, at most half of it, so that entries written together
+     * do not all expire together.
+     */
+    Duration timeToLive(Object key, Object value) {
+        Duration negativeTtl = properties.getNegativeTtl();
+        boolean isNull = value == null || value instanceof NullValue;
+        Duration ttl = null;
+        if (negativeTtl != null && isNull) {
+            ttl = negativeTtl;
+        } else if (ttlFunction != null) {
+            ttl = ttlFunction.getTimeToLive(key, isNull ? null : value);
+        }
+        if (ttl == null) {
+            ttl = getCacheConfiguration().getTtl();
+        }
+        if (generationKey != null && !expires(ttl)) {
+            // a clear leaves the keys of the old generation to expire, so they must expire
+            throw new RuntimeException(String.format("MultiCache: redis cache %s uses clear-mode=generation, so its ttl-function-bean must not return %s for key %s",
+                    getName(), ttl, key));
+        }
+        if (!expires(ttl) || (jitterPercent == 0 && jitterMillis == 0)) {
+            return ttl;
+        }
+        long ttlMillis = ttl.toMillis();
+        long jitter = Math.min(ttlMillis / 2, jitterPercent > 0 ? (long) (ttlMillis * jitterPercent / 100) : jitterMillis);
+        return jitter > 0 ? ttl.minusMillis(ThreadLocalRandom.current().nextLong(jitter + 1)) : ttl;
+    }
+
+    static boolean expires(Duration ttl) {
+        return ttl != null && !ttl.isZero() && !ttl.isNegative();
+    }
+
+    byte[] serializedValue(Object key, Object value, Duration ttl) {
+        Object cacheValue = preProcessCacheValue(value);
+        if (!isAllowNullValues() && cacheValue == null) {
+            throw new IllegalArgumentException(String.format(
+                    "Cache '%s' does not allow 'null' values. Avoid storing null via '@Cacheable(unless=\"#result == null\")' or configure RedisCache to allow 'null' via RedisCacheConfiguration.",
+                    getName()));
+        }
+        return serializeCacheValue(toTimedValue(key, cacheValue, ttl));
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> values = new LinkedHashMap<>();
+        List<Object> distinctKeys = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinctKeys.isEmpty()) {
+            return values;
+        }
+
+        byte[][] cacheKeys = new byte[distinctKeys.size()][];
+        for (int i = 0; i < cacheKeys.length; i++) {
+            cacheKeys[i] = cacheKey(distinctKeys.get(i));
+        }
+        List<byte[]> stored = execute(connection -> connection.mGet(cacheKeys));
+        for (int i = 0; stored != null && i < cacheKeys.length; i++) {
+            ValueWrapper value = toValueWrapper(stored.get(i));
+            if (value != null) {
+                values.put(distinctKeys.get(i), value.get());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The value read from redis, or {@code null} if there is none or it expires early.
+     */
+    ValueWrapper toValueWrapper(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        Object value = deserializeCacheValue(bytes);
+        if (value instanceof TimedValue && expiresEarly((TimedValue) value)) {
+            return null;
+        }
+        return new SimpleValueWrapper(fromStoreValue(unwrap(value)));
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        List<byte[]> cacheKeys = new ArrayList<>(entries.size());
+        List<byte[]> cacheValues = new ArrayList<>(entries.size());
+        List<Duration> ttls = new ArrayList<>(entries.size());
+        entries.forEach( (key, value) -> {
+            cacheKeys.add(cacheKey(key));
+            Duration ttl = timeToLive(key, value);
+            cacheValues.add(serializedValue(key, value, ttl));
+            ttls.add(ttl);
+        });
+        write(cacheKeys, cacheValues, ttls, Collections.emptyList());
+    }
+
+    /**
+     * Writes serialized values and deletes keys in a single pipeline (one command per key on a redis cluster).
+     */
+    void write(List<byte[]> cacheKeys, List<byte[]> cacheValues, List<Duration> ttls, List<byte[]> evictedKeys) {
+        execute(connection -> {
+            if (properties.isLockingWriter()) {
+                waitWhileLocked(connection);
+            }
+            boolean pipelined = !(connection instanceof RedisClusterConnection);
+            if (pipelined) {
+                connection.openPipeline();
+            }
+            try {
+                for (int i = 0; i < cacheKeys.size(); i++) {
+                    if (expires(ttls.get(i))) {
+                        connection.set(cacheKeys.get(i), cacheValues.get(i), Expiration.milliseconds(ttls.get(i).toMillis()), SetOption.upsert());
+                    } else {
+                        connection.set(cacheKeys.get(i), cacheValues.get(i));
+                    }
+                }
+                for (byte[] evictedKey : evictedKeys) {
+                    connection.del(evictedKey);
+                }
+            } finally {
+                if (pipelined) {
+                    connection.closePipeline();
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void evict(Object key) {
+        getNativeCache().remove(getName(), cacheKey(key));
+    }
+
+    /**
+     * Deletes the keys of the cache, or with {@code clear-mode=generation} moves the cache to a new generation,
+     * leaving the keys of the old one to expire.
+     */
+    @Override
+    public void clear() {
+        if (generationKey == null) {
+            getNativeCache().clean(getName(), keyEncoder.pattern());
+            return;
+        }
+        Long cleared = execute(connection -> connection.eval(NEXT_GENERATION_SCRIPT, ReturnType.INTEGER, 1, generationKey,
+                Long.toString(generation).getBytes(StandardCharsets.UTF_8)));
+        advanceGeneration(cleared);
+    }
+
+    public long getGeneration() { return generation; }
+
+    /**
+     * Reads the generation of a cache with {@code clear-mode=generation} from redis, to see clears made on other nodes.
+     */
+    public void refreshGeneration() {
+        if (generationKey == null) {
+            return;
+        }
+        try {
+            Long stored = execute(connection -> connection.eval(CURRENT_GENERATION_SCRIPT, ReturnType.INTEGER, 1, generationKey,
+                    Long.toString(generation).getBytes(StandardCharsets.UTF_8)));
+            advanceGeneration(stored);
+        } catch (RuntimeException ex) {
+            log.warn(String.format("MultiCache: cannot read the generation of cache %s, staying at generation %d: %s", getName(), generation, ex));
+        }
+    }
+
+    private synchronized void advanceGeneration(Long next) {
+        // only forward: a slow refresh must not undo a clear this node has just made
+        if (next != null && next > generation) {
+            keyEncoder = baseKeyEncoder.withGeneration(next);
+            generation = next;
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        Object cacheValue = preProcessCacheValue(value);
+        if (!isAllowNullValues() && cacheValue == null) {
+            return get(key);
+        }
+        Duration ttl = timeToLive(key, cacheValue);
+        byte[] result = getNativeCache().putIfAbsent(getName(), cacheKey(key), serializeCacheValue(toTimedValue(key, cacheValue, ttl)), ttl);
+        if (result == null) {
+            return null;
+        }
+        return new SimpleValueWrapper(fromStoreValue(unwrap(deserializeCacheValue(result))));
+    }
+
+    private static Object unwrap(Object stored) {
+        return stored instanceof TimedValue ? ((TimedValue) stored).getValue() : stored;
+    }
+
+    private Object toTimedValue(Object key, Object cacheValue, Duration ttl) {
+        if (!timed || cacheValue instanceof NullValue || !expires(ttl)) {
+            return cacheValue;
+        }
+        LoadTiming timing = loadTiming.get();
+        loadTiming.remove();
+        long computeNanos = timing != null && timing.key.equals(key) ? System.nanoTime() - timing.startNanos : 0;
+        long computeMillis = computeNanos <= MAX_LOAD_NANOS ? TimeUnit.NANOSECONDS.toMillis(computeNanos) : 0;
+        return new TimedValue(cacheValue, System.currentTimeMillis() + ttl.toMillis(), computeMillis);
+    }
+
+    /**
+     * XFetch: expire early with a probability that grows as expiry approaches, scaled by how long the value took to compute.
+     */
+    private boolean expiresEarly(TimedValue value) {
+        double beta = properties.getEarlyExpirationBeta();
+        if (beta <= 0) {
+            return false;
+        }
+        double gap = -value.getComputeMillis() * beta * Math.log(1.0 - ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= value.getExpiresAt();
+    }
+
+    private boolean refreshDue(TimedValue value) {
+        long refreshAhead = properties.getRefreshAhead().toMillis();
+        return (refreshAhead > 0 && System.currentTimeMillis() >= value.getExpiresAt() - refreshAhead) || expiresEarly(value);
+    }
+
+    private void refreshInBackground(Object key, Callable<?> valueLoader, BiConsumer<Object, Object> writer) {
+        if (!refreshes.add(key)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    loadAndPut(key, valueLoader, writer);
+                } catch (RuntimeException ex) {
+                    log.warn(String.format("MultiCache: background refresh of key %s in cache %s failed", key, getName()), ex);
+                } finally {
+                    refreshes.remove(key);
+                }
+            });
+        } catch (RuntimeException ex) {
+            refreshes.remove(key);
+            log.warn(String.format("MultiCache: cannot schedule background refresh of key %s in cache %s", key, getName()), ex);
+        }
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return get(key, valueLoader, this::put);
+    }
+
+    /**
+     * Loads a missing value like {@link #get(Object, Callable)}, once per key and under the load lease, but stores
+     * it with the given writer, so that a write-behind cache can queue it.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(Object key, Callable<T> valueLoader, BiConsumer<Object, Object> writer) {
+        Object stored = lookupStored(key);
+        if (stored instanceof TimedValue) {
+            TimedValue timedValue = (TimedValue) stored;
+            if (refreshDue(timedValue)) {
+                refreshInBackground(key, valueLoader, writer);
+            }
+            return (T) fromStoreValue(timedValue.getValue());
+        }
+        if (stored != null) {
+            return (T) fromStoreValue(stored);
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> runningLoad = loads.putIfAbsent(key, load);
+        if (runningLoad != null) {
+            return (T) await(runningLoad, key, valueLoader);
+        }
+
+        try {
+            Object value = load(key, valueLoader, writer);
+            load.complete(value);
+            return (T) value;
+        } catch (RuntimeException | Error ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader, BiConsumer<Object, Object> writer) {
+        // another thread may have finished loading between our lookup and registering this load
+        Object stored = lookupStored(key);
+        if (stored != null) {
+            return fromStoreValue(unwrap(stored));
+        }
+
+        long leaseMillis = properties.getLoadLeaseTime().toMillis();
+        if (leaseMillis <= 0) {
+            return loadAndPut(key, valueLoader, writer);
+        }
+
+        byte[] leaseKey = leaseKey(key);
+        byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+        Boolean leased = execute(connection -> connection.set(leaseKey, token, Expiration.milliseconds(leaseMillis), SetOption.SET_IF_ABSENT));
+        if (Boolean.TRUE.equals(leased)) {
+            try {
+                return loadAndPut(key, valueLoader, writer);
+            } finally {
+                execute(connection -> connection.eval(RELEASE_SCRIPT, ReturnType.INTEGER, 1, leaseKey, token));
+            }
+        }
+
+        // another node holds the lease: wait for its value, and load ourselves if it does not show up in time
+        long deadline = System.currentTimeMillis() + leaseMillis;
+        long pollMillis = Math.max(10, Math.min(100, leaseMillis / 20));
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(pollMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            stored = lookupStored(key);
+            if (stored != null) {
+                return fromStoreValue(unwrap(stored));
+            }
+        }
+        return loadAndPut(key, valueLoader, writer);
+    }
+
+    private Object loadAndPut(Object key, Callable<?> valueLoader, BiConsumer<Object, Object> writer) {
+        if (timed) {
+            loadTiming.set(new LoadTiming(key));
+        }
+        Object value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception ex) {
+            loadTiming.remove();
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        writer.accept(key, value);
+        return value;
+    }
+
+    private Object await(CompletableFuture<Object> load, Object key, Callable<?> valueLoader) {
+        try {
+            return load.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+        }
+    }
+
+    /**
+     * Bulk writes bypass the cache writer, so they wait for the lock a locking writer takes on the whole cache themselves.
+     */
+    private void waitWhileLocked(RedisConnection connection) {
+        byte[] lockKey = (getName() + "~lock").getBytes(StandardCharsets.UTF_8);
+        try {
+            while (Boolean.TRUE.equals(connection.exists(lockKey))) {
+                TimeUnit.MILLISECONDS.sleep(LOCK_SLEEP_MILLIS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(String.format("MultiCache: interrupted while waiting to unlock cache %s", getName()), ex);
+        }
+    }
+
+    byte[] cacheKey(Object key) {
+        return keyEncoder.encode(key);
+    }
+
+    private byte[] leaseKey(Object key) {
+        byte[] cacheKey = cacheKey(key);
+        byte[] leaseKey = Arrays.copyOf(cacheKey, cacheKey.length + LEASE_SUFFIX.length);
+        System.arraycopy(LEASE_SUFFIX, 0, leaseKey, cacheKey.length, LEASE_SUFFIX.length);
+        return leaseKey;
+    }
+
+    private <T> T execute(Function<RedisConnection, T> callback) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return callback.apply(connection);
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static class LoadTiming {
+        private final Object key;
+        private final long startNanos = System.nanoTime();
+
+        LoadTiming(Object key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.tvg.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.CaffeineSpec;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.cache.support.NullValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Expires null values (stored as {@link NullValue}) of a caffeine cache after {@code negative-ttl}, and other values
+ * as the spec's {@code expireAfterWrite} or {@code expireAfterAccess} would. Caffeine cannot combine a per-entry
+ * expiry with those two, so they are taken out of the spec and applied here.
+ */
+class NegativeExpiry implements Expiry<Object, Object> {
+
+    private final long afterWriteNanos;
+    private final long afterAccessNanos;
+    private final long negativeNanos;
+
+    private NegativeExpiry(long afterWriteNanos, long afterAccessNanos, long negativeNanos) {
+        this.afterWriteNanos = afterWriteNanos;
+        this.afterAccessNanos = afterAccessNanos;
+        this.negativeNanos = negativeNanos;
+    }
+
+    /**
+     * A builder for the spec, with null values expiring after {@code negativeTtl}.
+     */
+    static Caffeine<Object, Object> builder(String cacheName, String spec, Duration negativeTtl) {
+        long afterWrite = 0;
+        long afterAccess = 0;
+        List<String> options = new ArrayList<>();
+        for (String option : spec.split(",")) {
+            String[] keyAndValue = option.split("=", 2);
+            String key = keyAndValue[0].trim();
+            if (key.equals("expireAfterWrite") && keyAndValue.length == 2) {
+                afterWrite = nanos(cacheName, keyAndValue[1].trim());
+            } else if (key.equals("expireAfterAccess") && keyAndValue.length == 2) {
+                afterAccess = nanos(cacheName, keyAndValue[1].trim());
+            } else if (!key.isEmpty()) {
+                options.add(option.trim());
+            }
+        }
+        if (afterWrite > 0 && afterAccess > 0) {
+            // an expiry is not told when the entry was written, so it cannot keep both limits
+            throw new RuntimeException(String.format("MultiCache: caffeine cache %s sets negative-ttl, so its spec can set expireAfterWrite or expireAfterAccess but not both", cacheName));
+        }
+        return Caffeine.from(CaffeineSpec.parse(String.join(",", options)))
+                .expireAfter(new NegativeExpiry(afterWrite, afterAccess, negativeTtl.toNanos()));
+    }
+
+    /**
+     * A caffeine spec duration: a number followed by d, h, m or s.
+     */
+    private static long nanos(String cacheName, String duration) {
+        try {
+            long amount = Long.parseLong(duration.substring(0, duration.length() - 1));
+            switch (Character.toLowerCase(duration.charAt(duration.length() - 1))) {
+                case 'd': return TimeUnit.DAYS.toNanos(amount);
+                case 'h': return TimeUnit.HOURS.toNanos(amount);
+                case 'm': return TimeUnit.MINUTES.toNanos(amount);
+                case 's': return TimeUnit.SECONDS.toNanos(amount);
+                default: break;
+            }
+        } catch (RuntimeException e) {
+            // reported below
+        }
+        throw new RuntimeException(String.format("MultiCache: caffeine cache %s has an invalid duration %s in its spec", cacheName, duration));
+    }
+
+    private long positiveNanos() {
+        if (afterWriteNanos > 0) {
+            return afterWriteNanos;
+        }
+        return afterAccessNanos > 0 ? afterAccessNanos : Long.MAX_VALUE;
+    }
+
+    @Override
+    public long expireAfterCreate(Object key, Object value, long currentTime) {
+        return value instanceof NullValue ? negativeNanos : positiveNanos();
+    }
+
+    @Override
+    public long expireAfterUpdate(Object key, Object value, long currentTime, long currentDuration) {
+        return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(Object key, Object value, long currentTime, long currentDuration) {
+        if (value instanceof NullValue || afterAccessNanos == 0) {
+            return currentDuration;
+        }
+        return afterAccessNanos;
+    }
+}
@@ -0,0 +1,39 @@
+package com.tvg.cache;
+
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+
+/**
+ * Stores spring's {@link NullValue} as a two byte sentinel instead of handing it to the wrapped serializer.
+ * Json and kryo serializers cannot restore the {@code NullValue.INSTANCE} singleton the cache compares against.
+ */
+public class NullValueRedisSerializer implements RedisSerializer<Object> {
+
+    // never produced by jdk, jackson (json/smile) or kryo (0xFF 0x00 is a non canonical varint)
+    static final byte[] NULL_VALUE = new byte[] { (byte) 0xFF, (byte) 0x00 };
+
+    private final RedisSerializer<Object> delegate;
+
+    public NullValueRedisSerializer(RedisSerializer<Object> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value instanceof NullValue) {
+            return NULL_VALUE.clone();
+        }
+        return delegate.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (Arrays.equals(NULL_VALUE, bytes)) {
+            return NullValue.INSTANCE;
+        }
+        return delegate.deserialize(bytes);
+    }
+}
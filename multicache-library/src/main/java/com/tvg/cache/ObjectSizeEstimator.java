@@ -0,0 +1,198 @@
+package com.tvg.cache;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Estimates the heap retained by an object graph, for caches bounded by {@code max-memory}.
+ * <p>
+ * Sizes follow the layout of a 64 bit JVM with compressed references (heaps under 32GB): 12 byte object headers,
+ * 16 byte array headers, 4 byte references, 8 byte alignment. Application objects are walked through their fields.
+ * JDK classes are not, since their fields are not accessible on recent JVMs: strings, arrays, collections and maps
+ * are sized from their length, other JDK objects from their own fields only. Shared objects (classes, class loaders,
+ * enum constants, threads) and proxies, whose fields lead to their handlers and the beans behind them, are not
+ * counted. The walk stops once the size reaches the given limit, or after {@value #MAX_OBJECTS} objects.
+ */
+final class ObjectSizeEstimator {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int MAP_ENTRY = 32;
+    private static final int MAX_OBJECTS = 10_000;
+
+    private static final ClassValue<ClassLayout> LAYOUTS = new ClassValue<ClassLayout>() {
+        @Override
+        protected ClassLayout computeValue(Class<?> type) {
+            return new ClassLayout(type);
+        }
+    };
+
+    private ObjectSizeEstimator() {
+    }
+
+    /**
+     * @param limit the size at which to stop walking, such as the memory of the whole cache
+     */
+    static long estimate(Object root, long limit) {
+        if (root == null) {
+            return 0;
+        }
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> stack = new ArrayDeque<>();
+        stack.push(root);
+        long size = 0;
+        while (!stack.isEmpty() && size < limit && visited.size() < MAX_OBJECTS) {
+            Object object = stack.pop();
+            if (isShared(object) || visited.put(object, Boolean.TRUE) != null) {
+                continue;
+            }
+            size += shallowSize(object, stack);
+        }
+        return Math.min(size, limit);
+    }
+
+    /**
+     * The size of the object itself; pushes the objects it references that must be counted too.
+     */
+    private static long shallowSize(Object object, Deque<Object> stack) {
+        Class<?> type = object.getClass();
+        if (object instanceof String) {
+            // the larger java 8 layout: a char array of the string's length
+            return align(OBJECT_HEADER + REFERENCE + 8) + align(ARRAY_HEADER + 2L * ((String) object).length());
+        }
+        if (type.isArray()) {
+            int length = Array.getLength(object);
+            Class<?> componentType = type.getComponentType();
+            if (componentType.isPrimitive()) {
+                return align(ARRAY_HEADER + (long) length * primitiveSize(componentType));
+            }
+            for (Object element : (Object[]) object) {
+                push(stack, element);
+            }
+            return align(ARRAY_HEADER + (long) length * REFERENCE);
+        }
+        ClassLayout layout = LAYOUTS.get(type);
+        for (Field field : layout.referenceFields) {
+            try {
+                push(stack, field.get(object));
+            } catch (IllegalAccessException e) {
+                // not counted
+            }
+        }
+        if (layout.jdkBase) {
+            try {
+                if (object instanceof Map) {
+                    Map<?, ?> map = (Map<?, ?>) object;
+                    map.forEach( (key, value) -> {
+                        push(stack, key);
+                        push(stack, value);
+                    });
+                    return layout.shallowSize + hashTableSize(map.size());
+                }
+                if (object instanceof Set) {
+                    ((Set<?>) object).forEach(element -> push(stack, element));
+                    return layout.shallowSize + hashTableSize(((Set<?>) object).size());
+                }
+                if (object instanceof Collection) {
+                    ((Collection<?>) object).forEach(element -> push(stack, element));
+                    return layout.shallowSize + align(ARRAY_HEADER + (long) ((Collection<?>) object).size() * REFERENCE);
+                }
+            } catch (RuntimeException e) {
+                // modified while it was weighed, count what was seen
+            }
+        }
+        return layout.shallowSize;
+    }
+
+    private static long hashTableSize(int entries) {
+        long buckets = Long.highestOneBit(Math.max(1, (long) (entries / 0.75f)) * 2 - 1);
+        return align(ARRAY_HEADER + buckets * REFERENCE) + (long) entries * MAP_ENTRY;
+    }
+
+    private static void push(Deque<Object> stack, Object object) {
+        if (object != null) {
+            stack.push(object);
+        }
+    }
+
+    private static boolean isShared(Object object) {
+        return object instanceof Class || object instanceof Enum || object instanceof ClassLoader || object instanceof Thread
+                || isProxy(object.getClass());
+    }
+
+    private static boolean isProxy(Class<?> type) {
+        // jdk proxies, and the generated subclasses of cglib, byte buddy and hibernate
+        return Proxy.isProxyClass(type) || type.getName().contains("$$") || type.getName().contains("$HibernateProxy$");
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.") || name.startsWith("jdk.");
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    private static class ClassLayout {
+        private final long shallowSize;
+        private final List<Field> referenceFields = new ArrayList<>();
+        /**
+         * Whether the class is, or extends, a JDK class other than Object, whose fields are not walked.
+         */
+        private final boolean jdkBase;
+
+        ClassLayout(Class<?> type) {
+            long size = OBJECT_HEADER;
+            boolean accessible = !isJdkType(type);
+            boolean jdkBase = false;
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                jdkBase |= current != Object.class && isJdkType(current);
+                for (Field field : current.getDeclaredFields()) {
+                    if (Modifier.isStatic(field.getModifiers())) {
+                        continue;
+                    }
+                    if (field.getType().isPrimitive()) {
+                        size += primitiveSize(field.getType());
+                        continue;
+                    }
+                    size += REFERENCE;
+                    if (accessible && !isJdkType(current)) {
+                        try {
+                            field.setAccessible(true);
+                            referenceFields.add(field);
+                        } catch (RuntimeException e) {
+                            // not counted
+                        }
+                    }
+                }
+            }
+            this.shallowSize = align(size);
+            this.jdkBase = jdkBase;
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local cache that stores serialized values outside the java heap, so that a large cache adds almost nothing to
+ * garbage collection. Only the keys and a small index entry per value stay on the heap.
+ * <p>
+ * The memory budget is split into segments, each a single direct buffer (or memory mapped file) with its own lock.
+ * A segment is written as a circular log: values are appended at its tail, and space is reclaimed from its head.
+ * Eviction is CLOCK over the log: a value read since it was written is moved to the tail once instead of being
+ * evicted, so values that are read stay while the others are evicted oldest first. Values larger than a segment are
+ * not cached. Expired values are dropped when they are read or reach the head of the log.
+ * <p>
+ * Loads are single-flight per key.
+ */
+public class OffHeapCache extends AbstractValueAdaptingCache implements AsyncMultiCache.Provider {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private static final int MAX_SEGMENT_SIZE = Integer.MAX_VALUE - 8;
+
+    private final String name;
+    private final RedisSerializer<Object> serializer;
+    private final long timeToLiveNanos;
+    private final Segment[] segments;
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AsyncMultiCache async = new LocalAsyncCache(this);
+
+    public OffHeapCache(String name, MultiCacheProperties.OffHeapCacheProperties properties, RedisSerializer<Object> serializer) {
+        super(true);
+        long maxMemory = properties.getMaxMemory().toBytes();
+        if (maxMemory < 1 || properties.getSegments() < 1) {
+            throw new RuntimeException(String.format("MultiCache: off-heap cache %s max-memory and segments must be positive, got %s", name, properties));
+        }
+        this.name = name;
+        this.serializer = serializer;
+        Duration timeToLive = properties.getTimeToLive();
+        this.timeToLiveNanos = timeToLive != null && !timeToLive.isNegative() ? timeToLive.toNanos() : 0;
+
+        int segmentCount = (int) Math.max(properties.getSegments(), (maxMemory + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+        int segmentSize = (int) Math.max(1, maxMemory / segmentCount);
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(allocate(name, properties.getPath(), i, segmentSize));
+        }
+        log.info(String.format("MultiCache: off-heap cache %s holds up to %d bytes in %d segments", name, (long) segmentSize * segmentCount, segmentCount));
+    }
+
+    private static ByteBuffer allocate(String name, String path, int segment, int size) {
+        if (path == null) {
+            return ByteBuffer.allocateDirect(size);
+        }
+        Path file = Paths.get(path, name + "-" + segment + ".cache");
+        try {
+            Files.createDirectories(file.getParent());
+            // the mapping outlives the channel, and the file is deleted once both are gone
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE)) {
+                return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(String.format("MultiCache: cannot map off-heap cache %s to %s", name, file), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        return async;
+    }
+
+    /**
+     * The serialized size of the cached values, in bytes.
+     */
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.usedBytes();
+        }
+        return used;
+    }
+
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        byte[] bytes = segment(key).get(key);
+        return bytes != null ? serializer.deserialize(bytes) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper value = get(key);
+        if (value != null) {
+            return (T) value.get();
+        }
+
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                return (T) running.join();
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) ex.getCause();
+                }
+                if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+            }
+        }
+        try {
+            value = get(key);
+            T loaded = value != null ? (T) value.get() : valueLoader.call();
+            if (value == null) {
+                put(key, loaded);
+            }
+            load.complete(loaded);
+            return loaded;
+        } catch (Exception ex) {
+            ValueRetrievalException failure = new ValueRetrievalException(key, valueLoader, ex);
+            load.completeExceptionally(failure);
+            throw failure;
+        } catch (Error ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        byte[] bytes = serializer.serialize(toStoreValue(value));
+        if (!segment(key).put(key, bytes, expiresAt())) {
+            log.debug(String.format("MultiCache: value of key %s is too large for off-heap cache %s (%d bytes)", key, name, bytes.length));
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        byte[] existing = segment(key).putIfAbsent(key, serializer.serialize(toStoreValue(value)), expiresAt());
+        return existing != null ? new SimpleValueWrapper(fromStoreValue(serializer.deserialize(existing))) : null;
+    }
+
+    @Override
+    public void evict(Object key) {
+        segment(key).evict(key);
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private long expiresAt() {
+        return timeToLiveNanos > 0 ? System.nanoTime() + timeToLiveNanos : 0;
+    }
+
+    private Segment segment(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[(hash & Integer.MAX_VALUE) % segments.length];
+    }
+
+    private static final class Entry {
+        private final Object key;
+        private final int offset;
+        private final int length;
+        private final long expiresAt;
+        private boolean live = true;
+        private boolean referenced;
+
+        Entry(Object key, int offset, int length, long expiresAt) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * The space taken in the segment: at least one byte, so that the log's head and tail only meet when it is full.
+         */
+        int span() {
+            return Math.max(1, length);
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && now - expiresAt >= 0;
+        }
+    }
+
+    private final class Segment {
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private final Map<Object, Entry> index = new HashMap<>();
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private int head;
+        private int tail;
+        private long usedBytes;
+
+        Segment(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.capacity = buffer.capacity();
+        }
+
+        synchronized byte[] get(Object key) {
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.nanoTime())) {
+                remove(entry);
+                return null;
+            }
+            entry.referenced = true;
+            return read(entry);
+        }
+
+        synchronized boolean put(Object key, byte[] value, long expiresAt) {
+            Entry existing = index.get(key);
+            if (existing != null) {
+                remove(existing);
+            }
+            return append(key, value, expiresAt) != null;
+        }
+
+        synchronized byte[] putIfAbsent(Object key, byte[] value, long expiresAt) {
+            Entry existing = index.get(key);
+            if (existing != null && !existing.isExpired(System.nanoTime())) {
+                return read(existing);
+            }
+            if (existing != null) {
+                remove(existing);
+            }
+            append(key, value, expiresAt);
+            return null;
+        }
+
+        synchronized void evict(Object key) {
+            Entry entry = index.get(key);
+            if (entry != null) {
+                remove(entry);
+            }
+        }
+
+        synchronized void clear() {
+            index.clear();
+            entries.clear();
+            head = 0;
+            tail = 0;
+            usedBytes = 0;
+        }
+
+        synchronized long usedBytes() {
+            return usedBytes;
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+
+        private Entry append(Object key, byte[] value, long expiresAt) {
+            int span = Math.max(1, value.length);
+            if (span > capacity) {
+                return null;
+            }
+            int offset = allocate(span);
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.put(value);
+
+            Entry entry = new Entry(key, offset, value.length, expiresAt);
+            index.put(key, entry);
+            entries.addLast(entry);
+            tail = offset + span;
+            usedBytes += value.length;
+            return entry;
+        }
+
+        /**
+         * Frees space at the head of the log until {@code span} bytes fit at its tail.
+         */
+        private int allocate(int span) {
+            int secondChances = entries.size();
+            long now = System.nanoTime();
+            while (true) {
+                int offset = fit(span);
+                if (offset >= 0) {
+                    return offset;
+                }
+                Entry oldest = entries.pollFirst();
+                if (entries.isEmpty()) {
+                    head = 0;
+                    tail = 0;
+                } else {
+                    head = entries.peekFirst().offset;
+                }
+                if (!oldest.live) {
+                    continue;
+                }
+
+                remove(oldest);
+                if (oldest.isExpired(now)) {
+                    // it expired: dropping it is not an eviction
+                    continue;
+                }
+                if (oldest.referenced && secondChances-- > 0) {
+                    // its bytes are intact until something is written, so it can be moved to the tail
+                    byte[] value = read(oldest);
+                    if (fit(Math.max(1, value.length)) >= 0) {
+                        append(oldest.key, value, oldest.expiresAt);
+                        continue;
+                    }
+                }
+                evictions.incrementAndGet();
+            }
+        }
+
+        /**
+         * Where {@code span} bytes fit at the tail of the log, or -1.
+         */
+        private int fit(int span) {
+            if (entries.isEmpty()) {
+                return span <= capacity ? 0 : -1;
+            }
+            if (tail > head) {
+                if (capacity - tail >= span) {
+                    return tail;
+                }
+                return head >= span ? 0 : -1;
+            }
+            return head - tail >= span ? tail : -1;
+        }
+
+        private void remove(Entry entry) {
+            entry.live = false;
+            index.remove(entry.key);
+            usedBytes -= entry.length;
+        }
+
+        private byte[] read(Entry entry) {
+            byte[] value = new byte[entry.length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(entry.offset);
+            view.get(value);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Reactor flavour of {@link AsyncMultiCache}, for WebFlux services.
+ * <pre>
+ * ReactiveMultiCache contacts = ReactiveMultiCache.of(cacheManager.getCache("contacts"));
+ * Mono&lt;Contact&gt; contact = contacts.get(id, () -&gt; webClient.get().uri("/contacts/{id}", id).retrieve().bodyToMono(Contact.class));
+ * </pre>
+ * A Mono cannot hold {@code null}: reads complete empty both for keys that are not cached and for cached {@code null}s.
+ */
+public class ReactiveMultiCache {
+
+    private final AsyncMultiCache async;
+
+    public ReactiveMultiCache(AsyncMultiCache async) {
+        this.async = async;
+    }
+
+    public static ReactiveMultiCache of(Cache cache) {
+        return new ReactiveMultiCache(AsyncMultiCache.of(cache));
+    }
+
+    public String getName() {
+        return async.getName();
+    }
+
+    public Mono<Object> get(Object key) {
+        return Mono.defer(() -> Mono.fromFuture(async.get(key)))
+                .flatMap(value -> Mono.justOrEmpty(value.get()));
+    }
+
+    public <T> Mono<T> get(Object key, Class<T> type) {
+        return get(key).cast(type);
+    }
+
+    /**
+     * Emits the cached value, or subscribes to {@code loader} and caches what it emits.
+     */
+    public <T> Mono<T> get(Object key, Supplier<Mono<T>> loader) {
+        return Mono.defer(() -> Mono.fromFuture(async.get(key, () -> loader.get().toFuture())));
+    }
+
+    public Mono<Void> put(Object key, Object value) {
+        return Mono.defer(() -> Mono.fromFuture(async.put(key, value)));
+    }
+
+    public Mono<Void> evict(Object key) {
+        return Mono.defer(() -> Mono.fromFuture(async.evict(key)));
+    }
+}
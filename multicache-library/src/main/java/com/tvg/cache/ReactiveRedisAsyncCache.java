@@ -0,0 +1,77 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Async view of a {@link MultiRedisCache} over the reactive redis connection, so that no thread waits for redis.
+ * Keys and values are serialized exactly like the blocking cache does.
+ */
+class ReactiveRedisAsyncCache implements AsyncMultiCache {
+
+    private final MultiRedisCache cache;
+    private final ReactiveRedisConnectionFactory connectionFactory;
+    private final AsyncLoads loads = new AsyncLoads();
+
+    ReactiveRedisAsyncCache(MultiRedisCache cache, ReactiveRedisConnectionFactory connectionFactory) {
+        this.cache = cache;
+        this.connectionFactory = connectionFactory;
+    }
+
+    @Override
+    public String getName() {
+        return cache.getName();
+    }
+
+    @Override
+    public CompletableFuture<ValueWrapper> get(Object key) {
+        return execute(connection -> connection.stringCommands().get(ByteBuffer.wrap(cache.cacheKey(key))))
+                .flatMap(value -> Mono.justOrEmpty(cache.toValueWrapper(bytes(value))))
+                .toFuture();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+        return get(key).thenCompose(value -> value != null
+                ? CompletableFuture.completedFuture((T) value.get())
+                : loads.load(key, loader, this::put));
+    }
+
+    @Override
+    public CompletableFuture<Void> put(Object key, Object value) {
+        Duration ttl = cache.timeToLive(key, value);
+        return execute(connection -> {
+            ByteBuffer cacheKey = ByteBuffer.wrap(cache.cacheKey(key));
+            ByteBuffer cacheValue = ByteBuffer.wrap(cache.serializedValue(key, value, ttl));
+            return MultiRedisCache.expires(ttl)
+                    ? connection.stringCommands().set(cacheKey, cacheValue, Expiration.milliseconds(ttl.toMillis()), SetOption.upsert())
+                    : connection.stringCommands().set(cacheKey, cacheValue);
+        }).then().toFuture();
+    }
+
+    @Override
+    public CompletableFuture<Void> evict(Object key) {
+        return execute(connection -> connection.keyCommands().del(ByteBuffer.wrap(cache.cacheKey(key)))).then().toFuture();
+    }
+
+    private <T> Mono<T> execute(Function<ReactiveRedisConnection, Mono<T>> callback) {
+        return Mono.using(connectionFactory::getReactiveConnection, callback, ReactiveRedisConnection::close);
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
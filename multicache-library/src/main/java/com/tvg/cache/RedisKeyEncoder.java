@@ -0,0 +1,153 @@
+package com.tvg.cache;
+
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Turns cache keys into redis keys.
+ * <p>
+ * {@code STRING} writes the key prefix and the key as text, like a stock RedisCache. {@code COMPACT} replaces the
+ * prefix with 8 bytes hashed from it, and writes each key as a type tag followed by a binary form: integral numbers
+ * as zigzag varints (a {@code long} id takes 1 to 10 bytes instead of up to 20 digits), UUIDs as 16 bytes, and other
+ * keys as the UTF-8 text a stock RedisCache would use. Either way, a key whose encoded form (without the prefix) is
+ * longer than {@code max-key-length} is replaced by a 128-bit hash of it.
+ */
+public class RedisKeyEncoder {
+
+    private static final byte TAG_INTEGRAL = 1;
+    private static final byte TAG_TEXT = 2;
+    private static final byte TAG_UUID = 3;
+    private static final byte TAG_HASHED = 0x7F;
+    private static final byte[] HASHED_MARKER = "#".getBytes(StandardCharsets.UTF_8);
+    private static final long SEED_LOW = 0;
+    private static final long SEED_HIGH = 0x9E3779B97F4A7C15L;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final XXHash64 XX_HASH = XXHashFactory.fastestInstance().hash64();
+
+    private final MultiCacheProperties.KeyEncoding encoding;
+    private final byte[] prefix;
+    private final int maxKeyLength;
+    private final Function<Object, String> keyConverter;
+
+    /**
+     * @param prefix       the key prefix of the cache, empty when it does not use one
+     * @param maxKeyLength the longest key (in bytes, without the prefix) written as it is, or 0 to never hash keys
+     * @param keyConverter turns a key into text, as the stock RedisCache does
+     */
+    public RedisKeyEncoder(MultiCacheProperties.KeyEncoding encoding, String prefix, int maxKeyLength, Function<Object, String> keyConverter) {
+        this(encoding, compactPrefix(encoding, prefix.getBytes(StandardCharsets.UTF_8)), maxKeyLength, keyConverter);
+    }
+
+    private RedisKeyEncoder(MultiCacheProperties.KeyEncoding encoding, byte[] prefix, int maxKeyLength, Function<Object, String> keyConverter) {
+        this.encoding = encoding;
+        this.prefix = prefix;
+        this.maxKeyLength = maxKeyLength;
+        this.keyConverter = keyConverter;
+    }
+
+    private static byte[] compactPrefix(MultiCacheProperties.KeyEncoding encoding, byte[] prefix) {
+        if (encoding != MultiCacheProperties.KeyEncoding.COMPACT || prefix.length == 0) {
+            return prefix;
+        }
+        return ByteBuffer.allocate(8).putLong(XX_HASH.hash(prefix, 0, prefix.length, SEED_LOW)).array();
+    }
+
+    /**
+     * An encoder whose keys follow the prefix and then the generation: {@code 7:} as text, a varint when compact.
+     */
+    public RedisKeyEncoder withGeneration(long generation) {
+        byte[] segment = encoding == MultiCacheProperties.KeyEncoding.COMPACT
+                ? varint(generation)
+                : (generation + ":").getBytes(StandardCharsets.UTF_8);
+        byte[] generationPrefix = Arrays.copyOf(prefix, prefix.length + segment.length);
+        System.arraycopy(segment, 0, generationPrefix, prefix.length, segment.length);
+        return new RedisKeyEncoder(encoding, generationPrefix, maxKeyLength, keyConverter);
+    }
+
+    public byte[] encode(Object key) {
+        byte[] encoded = encoding == MultiCacheProperties.KeyEncoding.COMPACT ? compact(key) : text(key);
+        if (maxKeyLength > 0 && encoded.length > maxKeyLength) {
+            encoded = hashed(encoded);
+        }
+        byte[] cacheKey = new byte[prefix.length + encoded.length];
+        System.arraycopy(prefix, 0, cacheKey, 0, prefix.length);
+        System.arraycopy(encoded, 0, cacheKey, prefix.length, encoded.length);
+        return cacheKey;
+    }
+
+    /**
+     * The redis glob pattern matching every key of the cache.
+     */
+    public byte[] pattern() {
+        ByteArrayOutputStream pattern = new ByteArrayOutputStream(prefix.length + 8);
+        for (byte b : prefix) {
+            if (b == '*' || b == '?' || b == '[' || b == ']' || b == '\\') {
+                pattern.write('\\');
+            }
+            pattern.write(b);
+        }
+        pattern.write('*');
+        return pattern.toByteArray();
+    }
+
+    private byte[] text(Object key) {
+        return keyConverter.apply(key).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] compact(Object key) {
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            long value = ((Number) key).longValue();
+            byte[] varint = varint((value << 1) ^ (value >> 63));
+            byte[] encoded = new byte[varint.length + 1];
+            encoded[0] = TAG_INTEGRAL;
+            System.arraycopy(varint, 0, encoded, 1, varint.length);
+            return encoded;
+        }
+        if (key instanceof UUID) {
+            UUID uuid = (UUID) key;
+            return ByteBuffer.allocate(17).put(TAG_UUID)
+                    .putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+        }
+        byte[] text = text(key);
+        byte[] encoded = new byte[text.length + 1];
+        encoded[0] = TAG_TEXT;
+        System.arraycopy(text, 0, encoded, 1, text.length);
+        return encoded;
+    }
+
+    private static byte[] varint(long value) {
+        byte[] bytes = new byte[10];
+        int length = 0;
+        while ((value & ~0x7FL) != 0) {
+            bytes[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[length++] = (byte) value;
+        return Arrays.copyOf(bytes, length);
+    }
+
+    private byte[] hashed(byte[] encoded) {
+        long high = XX_HASH.hash(encoded, 0, encoded.length, SEED_HIGH);
+        long low = XX_HASH.hash(encoded, 0, encoded.length, SEED_LOW);
+        if (encoding == MultiCacheProperties.KeyEncoding.COMPACT) {
+            return ByteBuffer.allocate(17).put(TAG_HASHED).putLong(high).putLong(low).array();
+        }
+        // stays readable text: '#' and 32 hex digits
+        byte[] hashed = new byte[HASHED_MARKER.length + 32];
+        System.arraycopy(HASHED_MARKER, 0, hashed, 0, HASHED_MARKER.length);
+        for (int i = 0; i < 16; i++) {
+            int b = (int) ((i < 8 ? high >>> (56 - 8 * i) : low >>> (56 - 8 * (i - 8))) & 0xFF);
+            hashed[HASHED_MARKER.length + 2 * i] = (byte) HEX[b >>> 4];
+            hashed[HASHED_MARKER.length + 2 * i + 1] = (byte) HEX[b & 0xF];
+        }
+        return hashed;
+    }
+}
@@ -0,0 +1,122 @@
+package com.tvg.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.cfg.MapperConfig;
+import com.fasterxml.jackson.databind.jsontype.NamedType;
+import com.fasterxml.jackson.databind.jsontype.TypeIdResolver;
+import com.fasterxml.jackson.databind.jsontype.impl.ClassNameIdResolver;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Creates the value serializer of a redis or off-heap cache, or of a snapshot, from its {@code serializer} properties.
+ */
+final class RedisSerializers {
+
+    private RedisSerializers() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisSerializer<Object> create(String cacheName, MultiCacheProperties.SerializerProperties properties,
+                                          BeanFactory beanFactory, ClassLoader classLoader) {
+        TrustedTypes trustedTypes = new TrustedTypes(properties.getTrustedPackages());
+        switch (properties.getSerializer()) {
+            case JSON:
+                return jackson(new JsonFactory(), trustedTypes);
+            case SMILE:
+                return jackson(new SmileFactory(), trustedTypes);
+            case KRYO:
+                return new NullValueRedisSerializer(new KryoRedisSerializer(classLoader, properties.getTrustedPackages() != null
+                        ? properties.getTrustedPackages() : new ArrayList<>(), kryoClasses(cacheName, properties.getKryoClasses(), classLoader)));
+            case CUSTOM:
+                if (properties.getSerializerBean() == null) {
+                    throw new RuntimeException(String.format("MultiCache: cache %s uses a custom serializer but no serializer-bean is defined in application.properties", cacheName));
+                }
+                return beanFactory.getBean(properties.getSerializerBean(), RedisSerializer.class);
+            case JDK:
+            default:
+                return new JdkSerializationRedisSerializer(classLoader);
+        }
+    }
+
+    /**
+     * Writes the class of non-final values in an {@code @class} property, as spring's json serializer does, but
+     * only reads trusted classes.
+     */
+    private static RedisSerializer<Object> jackson(JsonFactory factory, TrustedTypes trustedTypes) {
+        ObjectMapper mapper = new ObjectMapper(factory);
+        mapper.setDefaultTyping(new TrustedTypeResolverBuilder(trustedTypes)
+                .init(JsonTypeInfo.Id.CLASS, null)
+                .inclusion(JsonTypeInfo.As.PROPERTY));
+        return new NullValueRedisSerializer(new GenericJackson2JsonRedisSerializer(mapper));
+    }
+
+    private static List<Class<?>> kryoClasses(String cacheName, List<String> classNames, ClassLoader classLoader) {
+        List<Class<?>> classes = new ArrayList<>();
+        if (classNames == null) {
+            return classes;
+        }
+        for (String className : classNames) {
+            try {
+                classes.add(ClassUtils.forName(className.trim(), classLoader));
+            } catch (ClassNotFoundException | LinkageError e) {
+                throw new RuntimeException(String.format("MultiCache: cache %s registers kryo class %s, which cannot be loaded", cacheName, className), e);
+            }
+        }
+        return classes;
+    }
+
+    private static class TrustedTypeResolverBuilder extends ObjectMapper.DefaultTypeResolverBuilder {
+
+        private static final long serialVersionUID = 1L;
+
+        private final TrustedTypes trustedTypes;
+
+        TrustedTypeResolverBuilder(TrustedTypes trustedTypes) {
+            super(ObjectMapper.DefaultTyping.NON_FINAL);
+            this.trustedTypes = trustedTypes;
+        }
+
+        @Override
+        protected TypeIdResolver idResolver(MapperConfig<?> config, JavaType baseType, Collection<NamedType> subtypes,
+                                            boolean forSer, boolean forDeser) {
+            return new TrustedClassNameIdResolver(baseType, config.getTypeFactory(), trustedTypes);
+        }
+    }
+
+    /**
+     * Refuses the type id of a class that is not trusted before the class is loaded.
+     */
+    private static class TrustedClassNameIdResolver extends ClassNameIdResolver {
+
+        private final TrustedTypes trustedTypes;
+
+        TrustedClassNameIdResolver(JavaType baseType, TypeFactory typeFactory, TrustedTypes trustedTypes) {
+            super(baseType, typeFactory);
+            this.trustedTypes = trustedTypes;
+        }
+
+        @Override
+        public JavaType typeFromId(DatabindContext context, String id) throws IOException {
+            if (!trustedTypes.isTrusted(id)) {
+                throw new JsonMappingException(null, "Class " + id + " is not trusted, add it or its package to trusted-packages");
+            }
+            return super.typeFromId(context, id);
+        }
+    }
+}
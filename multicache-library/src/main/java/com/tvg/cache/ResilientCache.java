@@ -0,0 +1,264 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.dao.DataAccessException;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Guards a redis cache with a {@link CircuitBreaker}. Redis errors ({@link DataAccessException}s, which include
+ * command timeouts) and calls slower than the latency budget count as failures. While the circuit is open, and
+ * whenever a call fails, the cache degrades instead of failing: reads miss, loads call the loader directly,
+ * writes and evictions are skipped. With a fallback cache, reads, loads and writes use it instead, until the
+ * circuit closes again and the fallback is cleared.
+ */
+public class ResilientCache extends ForwardingCache {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final CircuitBreaker circuitBreaker;
+    private final Cache fallback;
+    private final Executor executor;
+    private volatile AsyncMultiCache async;
+
+    /**
+     * @param fallback local cache used while redis is unavailable, may be null
+     */
+    public ResilientCache(Cache delegate, CircuitBreaker circuitBreaker, Cache fallback, Executor executor) {
+        super(delegate, executor);
+        this.circuitBreaker = circuitBreaker;
+        this.fallback = fallback;
+        this.executor = executor;
+    }
+
+    public CircuitBreaker getCircuitBreaker() { return circuitBreaker; }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return call(() -> super.get(key), () -> fallback != null ? fallback.get(key) : null);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        return call(() -> super.get(key, type), () -> fallback != null ? fallback.get(key, type) : null);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        if (!circuitBreaker.allowRequest()) {
+            return loadWithoutRedis(key, valueLoader);
+        }
+
+        // the loader's time is not redis latency; and if only the put failed, the loaded value is still good
+        long[] loadNanos = new long[1];
+        Object[] loaded = new Object[1];
+        boolean[] hasLoaded = new boolean[1];
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return super.get(key, () -> {
+                long loadStart = System.nanoTime();
+                try {
+                    T value = valueLoader.call();
+                    loaded[0] = value;
+                    hasLoaded[0] = true;
+                    return value;
+                } finally {
+                    loadNanos[0] = System.nanoTime() - loadStart;
+                }
+            });
+        } catch (DataAccessException ex) {
+            failed = true;
+            log.debug(String.format("MultiCache: redis cache %s failed, loading key %s without it", getName(), key), ex);
+            return hasLoaded[0] ? (T) loaded[0] : loadWithoutRedis(key, valueLoader);
+        } finally {
+            report(failed, System.nanoTime() - start - loadNanos[0]);
+        }
+    }
+
+    private <T> T loadWithoutRedis(Object key, Callable<T> valueLoader) {
+        if (fallback != null) {
+            return fallback.get(key, valueLoader);
+        }
+        try {
+            return valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        call(() -> {
+            super.put(key, value);
+            return null;
+        }, () -> {
+            if (fallback != null) {
+                fallback.put(key, value);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        return call(() -> super.putIfAbsent(key, value), () -> fallback != null ? fallback.putIfAbsent(key, value) : null);
+    }
+
+    @Override
+    public void evict(Object key) {
+        if (fallback != null) {
+            fallback.evict(key);
+        }
+        call(() -> {
+            super.evict(key);
+            return null;
+        }, () -> null);
+    }
+
+    @Override
+    public void clear() {
+        if (fallback != null) {
+            fallback.clear();
+        }
+        call(() -> {
+            super.clear();
+            return null;
+        }, () -> null);
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        return call(() -> super.getAll(keys),
+                () -> fallback != null ? MultiKeyCache.of(fallback).getAll(keys) : Collections.emptyMap());
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        call(() -> {
+            super.putAll(entries);
+            return null;
+        }, () -> {
+            if (fallback != null) {
+                MultiKeyCache.of(fallback).putAll(entries);
+            }
+            return null;
+        });
+    }
+
+    private <T> T call(Supplier<T> redisCall, Supplier<T> fallbackCall) {
+        if (!circuitBreaker.allowRequest()) {
+            return fallbackCall.get();
+        }
+        long start = System.nanoTime();
+        boolean failed = false;
+        try {
+            return redisCall.get();
+        } catch (DataAccessException ex) {
+            failed = true;
+            log.debug(String.format("MultiCache: redis cache %s failed, falling back", getName()), ex);
+            return fallbackCall.get();
+        } finally {
+            report(failed, System.nanoTime() - start);
+        }
+    }
+
+    private void report(boolean failed, long elapsedNanos) {
+        if (failed) {
+            circuitBreaker.onFailure();
+        } else if (circuitBreaker.onSuccess(elapsedNanos) && fallback != null) {
+            // the fallback missed every write made to redis by other nodes while the circuit was open
+            fallback.clear();
+        }
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        if (async == null) {
+            async = new ResilientAsyncCache(super.async(), fallback != null ? AsyncMultiCache.of(fallback, executor) : null);
+        }
+        return async;
+    }
+
+    private class ResilientAsyncCache implements AsyncMultiCache {
+
+        private final AsyncMultiCache delegate;
+        private final AsyncMultiCache fallback;
+
+        ResilientAsyncCache(AsyncMultiCache delegate, AsyncMultiCache fallback) {
+            this.delegate = delegate;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public CompletableFuture<ValueWrapper> get(Object key) {
+            return call(() -> delegate.get(key), () -> fallback != null ? fallback.get(key) : CompletableFuture.completedFuture(null), true);
+        }
+
+        @Override
+        public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+            // includes the loader's time, so not held to the latency budget
+            return call(() -> delegate.get(key, loader), () -> fallback != null ? fallback.get(key, loader) : loader.get(), false);
+        }
+
+        @Override
+        public CompletableFuture<Void> put(Object key, Object value) {
+            return call(() -> delegate.put(key, value), () -> fallback != null ? fallback.put(key, value) : CompletableFuture.completedFuture(null), true);
+        }
+
+        @Override
+        public CompletableFuture<Void> evict(Object key) {
+            CompletableFuture<Void> fallbackEvict = fallback != null ? fallback.evict(key) : CompletableFuture.completedFuture(null);
+            return fallbackEvict.thenCompose(evicted -> call(() -> delegate.evict(key), () -> CompletableFuture.completedFuture(null), true));
+        }
+
+        private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> redisCall, Supplier<CompletableFuture<T>> fallbackCall, boolean timed) {
+            if (!circuitBreaker.allowRequest()) {
+                return fallbackCall.get();
+            }
+            long start = System.nanoTime();
+            CompletableFuture<T> call;
+            try {
+                call = redisCall.get();
+            } catch (DataAccessException ex) {
+                report(true, 0);
+                return fallbackCall.get();
+            } catch (RuntimeException ex) {
+                // not a redis failure, but the call was admitted and must be reported to resolve a half open probe
+                report(false, 0);
+                throw ex;
+            }
+            return call.handle( (value, ex) -> {
+                Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+                if (cause instanceof DataAccessException) {
+                    report(true, 0);
+                    return fallbackCall.get();
+                }
+                report(false, timed ? System.nanoTime() - start : 0);
+                CompletableFuture<T> result = new CompletableFuture<>();
+                if (cause != null) {
+                    result.completeExceptionally(cause);
+                } else {
+                    result.complete(value);
+                }
+                return result;
+            }).thenCompose(Function.identity());
+        }
+    }
+}
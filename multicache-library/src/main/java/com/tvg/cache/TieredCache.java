@@ -0,0 +1,181 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * Near cache: a local (caffeine) L1 in front of a shared (redis) L2 under a single cache name.
+ * Reads check L1 first, then L2, and populate L1 on an L2 hit. Writes go to L2 first, then L1.
+ * Bulk reads ask L2 only for the keys L1 does not have.
+ */
+public class TieredCache implements MultiKeyCache, AsyncMultiCache.Provider {
+
+    private final String name;
+    private final Cache localCache;
+    private final Cache remoteCache;
+    private final Executor executor;
+
+    /**
+     * @param executor runs the blocking calls of the async view for a local or remote cache without an async view of its own
+     */
+    public TieredCache(String name, Cache localCache, Cache remoteCache, Executor executor) {
+        this.name = name;
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.executor = executor;
+    }
+
+    public Cache getLocalCache() { return localCache; }
+
+    public Cache getRemoteCache() { return remoteCache; }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return this;
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        ValueWrapper value = localCache.get(key);
+        if (value != null) {
+            return value;
+        }
+
+        value = remoteCache.get(key);
+        if (value != null) {
+            localCache.put(key, value.get());
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        try {
+            return localCache.get(key, () -> remoteCache.get(key, valueLoader));
+        } catch (ValueRetrievalException ex) {
+            // the local cache wraps the remote cache's exception again; callers expect the loader's exception as cause
+            if (ex.getCause() instanceof ValueRetrievalException) {
+                throw (ValueRetrievalException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remoteCache.put(key, value);
+        localCache.put(key, value);
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        AsyncMultiCache local = AsyncMultiCache.of(localCache, executor);
+        AsyncMultiCache remote = AsyncMultiCache.of(remoteCache, executor);
+        return new AsyncMultiCache() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public CompletableFuture<ValueWrapper> get(Object key) {
+                return local.get(key).thenCompose(localValue -> localValue != null
+                        ? CompletableFuture.completedFuture(localValue)
+                        : remote.get(key).thenCompose(remoteValue -> remoteValue != null
+                                ? local.put(key, remoteValue.get()).thenApply(stored -> remoteValue)
+                                : CompletableFuture.completedFuture(null)));
+            }
+
+            @Override
+            public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+                return local.get(key, () -> remote.get(key, loader));
+            }
+
+            @Override
+            public CompletableFuture<Void> put(Object key, Object value) {
+                return remote.put(key, value).thenCompose(stored -> local.put(key, value));
+            }
+
+            @Override
+            public CompletableFuture<Void> evict(Object key) {
+                return remote.evict(key).thenCompose(evicted -> local.evict(key));
+            }
+        };
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> localValues = MultiKeyCache.of(localCache).getAll(keys);
+        List<Object> missing = new ArrayList<>();
+        for (Object key : keys) {
+            if (!localValues.containsKey(key)) {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return localValues;
+        }
+
+        Map<Object, Object> remoteValues = MultiKeyCache.of(remoteCache).getAll(missing);
+        MultiKeyCache.of(localCache).putAll(remoteValues);
+        Map<Object, Object> values = new LinkedHashMap<>();
+        for (Object key : keys) {
+            if (localValues.containsKey(key)) {
+                values.put(key, localValues.get(key));
+            } else if (remoteValues.containsKey(key)) {
+                values.put(key, remoteValues.get(key));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        MultiKeyCache.of(remoteCache).putAll(entries);
+        MultiKeyCache.of(localCache).putAll(entries);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remoteCache.putIfAbsent(key, value);
+        localCache.put(key, existing != null ? existing.get() : value);
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remoteCache.evict(key);
+        localCache.evict(key);
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.clear();
+    }
+}
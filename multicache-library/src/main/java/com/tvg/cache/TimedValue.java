@@ -0,0 +1,37 @@
+package com.tvg.cache;
+
+import java.io.Serializable;
+
+/**
+ * Value stored by redis caches that refresh entries before they expire: the cached value, when it expires and
+ * how long it took to compute.
+ */
+public class TimedValue implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private Object value;
+    private long expiresAt;
+    private long computeMillis;
+
+    public TimedValue() {
+    }
+
+    public TimedValue(Object value, long expiresAt, long computeMillis) {
+        this.value = value;
+        this.expiresAt = expiresAt;
+        this.computeMillis = computeMillis;
+    }
+
+    public Object getValue() { return value; }
+
+    public void setValue(Object value) { this.value = value; }
+
+    public long getExpiresAt() { return expiresAt; }
+
+    public void setExpiresAt(long expiresAt) { this.expiresAt = expiresAt; }
+
+    public long getComputeMillis() { return computeMillis; }
+
+    public void setComputeMillis(long computeMillis) { this.computeMillis = computeMillis; }
+}
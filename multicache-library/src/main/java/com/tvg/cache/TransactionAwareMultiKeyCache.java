@@ -0,0 +1,49 @@
+package com.tvg.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link TransactionAwareCacheDecorator} that keeps the bulk operations of a {@link MultiKeyCache}: bulk writes
+ * are deferred to after commit like single writes, bulk reads go straight to the cache. Async calls are not bound
+ * to the caller's thread, so they are not transactional either.
+ */
+public class TransactionAwareMultiKeyCache extends TransactionAwareCacheDecorator implements MultiKeyCache, AsyncMultiCache.Provider {
+
+    private final Executor executor;
+
+    public TransactionAwareMultiKeyCache(Cache targetCache, Executor executor) {
+        super(targetCache);
+        this.executor = executor;
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        return AsyncMultiCache.of(getTargetCache(), executor);
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        return MultiKeyCache.of(getTargetCache()).getAll(keys);
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    MultiKeyCache.of(getTargetCache()).putAll(entries);
+                }
+            });
+        } else {
+            MultiKeyCache.of(getTargetCache()).putAll(entries);
+        }
+    }
+}
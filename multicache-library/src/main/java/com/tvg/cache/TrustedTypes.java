@@ -0,0 +1,67 @@
+package com.tvg.cache;
+
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.cache.support.NullValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The classes the kryo, json and smile serializers may create when reading. These formats name the class of each
+ * value in the data, so without a limit anyone able to write to redis could make every node instantiate any class
+ * on its classpath. Trusted are the jdk's value and collection classes, spring's cache keys and null value, the
+ * {@link TimedValue} wrapper, and the packages (with their subpackages) and classes of a cache's {@code trusted-packages}.
+ */
+final class TrustedTypes {
+
+    private static final List<String> JDK_PACKAGES = Arrays.asList("java.lang", "java.util", "java.util.concurrent", "java.time", "java.math");
+    private static final List<String> TRUSTED_CLASSES = Arrays.asList(SimpleKey.class.getName(), NullValue.class.getName(), TimedValue.class.getName());
+
+    private final List<String> trusted;
+
+    /**
+     * @param trusted packages and class names, may be null
+     */
+    TrustedTypes(Collection<String> trusted) {
+        this.trusted = trusted != null ? new ArrayList<>(trusted) : new ArrayList<>();
+    }
+
+    /**
+     * @param typeName a class name as {@link Class#getName} writes it, or a jackson type id with type parameters
+     */
+    boolean isTrusted(String typeName) {
+        for (String name : typeName.split("[<>,\\s]+")) {
+            if (!name.isEmpty() && !isTrustedClass(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTrustedClass(String name) {
+        if (name.startsWith("[")) {
+            String component = name.replaceFirst("^\\[+", "");
+            // an array of primitives, or of the class between L and ;
+            return component.length() == 1 || component.startsWith("L") && component.endsWith(";")
+                    && isTrustedClass(component.substring(1, component.length() - 1));
+        }
+        int dot = name.lastIndexOf('.');
+        String packageName = dot > 0 ? name.substring(0, dot) : "";
+        if (JDK_PACKAGES.contains(packageName) || TRUSTED_CLASSES.contains(name)) {
+            return true;
+        }
+        for (String entry : trusted) {
+            if (name.equals(entry) || name.startsWith(entry + ".") || name.startsWith(entry + "$")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return trusted.toString();
+    }
+}
@@ -0,0 +1,17 @@
+package com.tvg.cache;
+
+import java.time.Duration;
+
+/**
+ * Chooses the time to live of each value written to a redis cache. A cache uses the bean named by its
+ * {@code ttl-function-bean}.
+ */
+@FunctionalInterface
+public interface TtlFunction {
+
+    /**
+     * @param value the value, or null for a cached null
+     * @return the time to live of the entry, zero for no expiry, or null for the cache's {@code time-to-live}
+     */
+    Duration getTimeToLive(Object key, Object value);
+}
@@ -0,0 +1,393 @@
+package com.tvg.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Redis cache with {@code write-mode=write-behind}: puts and evictions are queued and written to redis in pipelined
+ * batches on the multicache executor, every flush interval or as soon as a batch is full. Writes to the same key
+ * are coalesced (the last put or eviction wins), and reads in this JVM see queued writes before they reach redis.
+ * <p>
+ * Values are serialized when they are queued, on the caller's thread. Values loaded on a miss are queued like puts.
+ * {@link #putIfAbsent} and {@link #clear()} are not queued: a clear discards the queued writes and waits for a
+ * running flush before clearing redis.
+ * Writes that fail to flush are logged and lost, except evictions, which are queued again.
+ */
+public class WriteBehindCache extends ForwardingCache {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final MultiRedisCache cache;
+    private final MultiCacheProperties.WriteBehindProperties properties;
+    private final Executor executor;
+    private final Object flushLock = new Object();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AsyncMultiCache async = new WriteBehindAsyncCache();
+    private Map<Object, PendingWrite> pending = new LinkedHashMap<>();
+    private Map<Object, PendingWrite> flushing = new LinkedHashMap<>();
+    private ScheduledFuture<?> schedule;
+
+    public WriteBehindCache(MultiRedisCache cache, MultiCacheProperties.WriteBehindProperties properties, Executor executor) {
+        super(cache, executor);
+        if (properties.getBatchSize() < 1 || properties.getQueueCapacity() < 1 || properties.getFlushInterval().isZero()
+                || properties.getFlushInterval().isNegative()) {
+            throw new RuntimeException(String.format("MultiCache: redis cache %s write-behind flush-interval, batch-size and queue-capacity must be positive, got %s",
+                    cache.getName(), properties));
+        }
+        this.cache = cache;
+        this.properties = properties;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts flushing every flush interval, on the given scheduler.
+     */
+    public synchronized void start(ScheduledExecutorService scheduler) {
+        long interval = properties.getFlushInterval().toMillis();
+        schedule = scheduler.scheduleWithFixedDelay(this::flushAsync, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the scheduled flushes and writes every queued write.
+     */
+    public void close() {
+        synchronized (this) {
+            if (schedule != null) {
+                schedule.cancel(false);
+            }
+        }
+        flush();
+    }
+
+    public synchronized int getPendingWrites() {
+        return pending.size() + flushing.size();
+    }
+
+    public long getDroppedWrites() {
+        return dropped.get();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        PendingWrite write = pendingWrite(key);
+        if (write == null) {
+            return super.get(key);
+        }
+        return write.isEviction() ? null : cache.toValueWrapper(write.value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        PendingWrite write = pendingWrite(key);
+        if (write == null) {
+            return super.get(key, type);
+        }
+        ValueWrapper value = write.isEviction() ? null : cache.toValueWrapper(write.value);
+        Object stored = value != null ? value.get() : null;
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        PendingWrite write = pendingWrite(key);
+        if (write == null) {
+            // loaded once per key as in redis, but queued instead of written
+            return cache.get(key, valueLoader, this::put);
+        }
+        ValueWrapper value = write.isEviction() ? null : cache.toValueWrapper(write.value);
+        if (value != null) {
+            return (T) value.get();
+        }
+        // redis still has the evicted value, so the load must not go through it
+        T loaded;
+        try {
+            loaded = valueLoader.call();
+        } catch (Exception ex) {
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        put(key, loaded);
+        return loaded;
+    }
+
+    @Override
+    public Map<Object, Object> getAll(Collection<?> keys) {
+        Map<Object, Object> values = new LinkedHashMap<>();
+        List<Object> unqueued = new ArrayList<>();
+        for (Object key : keys) {
+            PendingWrite write = pendingWrite(key);
+            if (write == null) {
+                unqueued.add(key);
+            } else if (!write.isEviction()) {
+                ValueWrapper value = cache.toValueWrapper(write.value);
+                if (value != null) {
+                    values.put(key, value.get());
+                }
+            }
+        }
+        if (!unqueued.isEmpty()) {
+            values.putAll(cache.getAll(unqueued));
+        }
+        return values;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Duration ttl = cache.timeToLive(key, value);
+        enqueue(key, new PendingWrite(cache.cacheKey(key), cache.serializedValue(key, value, ttl), ttl));
+    }
+
+    @Override
+    public void putAll(Map<?, ?> entries) {
+        entries.forEach(this::put);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        PendingWrite write = pendingWrite(key);
+        if (write == null) {
+            return super.putIfAbsent(key, value);
+        }
+        if (write.isEviction()) {
+            put(key, value);
+            return null;
+        }
+        return cache.toValueWrapper(write.value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        enqueue(key, new PendingWrite(cache.cacheKey(key), null, null));
+    }
+
+    @Override
+    public void clear() {
+        synchronized (flushLock) {
+            synchronized (this) {
+                pending = new LinkedHashMap<>();
+                notifyAll();
+            }
+            super.clear();
+        }
+    }
+
+    @Override
+    public AsyncMultiCache async() {
+        return async;
+    }
+
+    private synchronized PendingWrite pendingWrite(Object key) {
+        PendingWrite write = pending.get(key);
+        return write != null ? write : flushing.get(key);
+    }
+
+    private void enqueue(Object key, PendingWrite write) {
+        int queued;
+        synchronized (this) {
+            while (!pending.containsKey(key) && pending.size() >= properties.getQueueCapacity()) {
+                if (properties.getOverflow() == MultiCacheProperties.WriteBehindOverflow.DROP && !write.isEviction()) {
+                    dropped.incrementAndGet();
+                    log.debug(String.format("MultiCache: write-behind queue of redis cache %s is full, dropping the put of key %s", getName(), key));
+                    return;
+                }
+                if (properties.getOverflow() != MultiCacheProperties.WriteBehindOverflow.BLOCK) {
+                    break;
+                }
+                flushAsync();
+                try {
+                    wait(properties.getFlushInterval().toMillis());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException(String.format("MultiCache: interrupted while waiting for the write-behind queue of cache %s", getName()), ex);
+                }
+            }
+            if (pending.containsKey(key) || pending.size() < properties.getQueueCapacity()) {
+                pending.remove(key);
+                pending.put(key, write);
+                queued = pending.size();
+            } else {
+                queued = -1;
+            }
+        }
+
+        if (queued < 0) {
+            // full: the caller flushes the queue itself, then queues its write
+            flush();
+            enqueue(key, write);
+        } else if (queued >= properties.getBatchSize()) {
+            flushAsync();
+        }
+    }
+
+    private void flushAsync() {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        } catch (RejectedExecutionException e) {
+            flushScheduled.set(false);
+            flush();
+        }
+    }
+
+    /**
+     * Writes every queued write to redis, in batches of {@code batch-size}.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            Map<Object, PendingWrite> batch;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                flushing = batch;
+                pending = new LinkedHashMap<>();
+                notifyAll();
+            }
+            try {
+                List<Map.Entry<Object, PendingWrite>> writes = new ArrayList<>(batch.entrySet());
+                for (int from = 0; from < writes.size(); from += properties.getBatchSize()) {
+                    write(writes.subList(from, Math.min(writes.size(), from + properties.getBatchSize())));
+                }
+            } finally {
+                synchronized (this) {
+                    flushing = new LinkedHashMap<>();
+                }
+            }
+        }
+    }
+
+    private void write(List<Map.Entry<Object, PendingWrite>> writes) {
+        List<byte[]> cacheKeys = new ArrayList<>();
+        List<byte[]> cacheValues = new ArrayList<>();
+        List<Duration> ttls = new ArrayList<>();
+        List<byte[]> evictedKeys = new ArrayList<>();
+        for (Map.Entry<Object, PendingWrite> write : writes) {
+            if (write.getValue().isEviction()) {
+                evictedKeys.add(write.getValue().cacheKey);
+            } else {
+                cacheKeys.add(write.getValue().cacheKey);
+                cacheValues.add(write.getValue().value);
+                ttls.add(write.getValue().ttl);
+            }
+        }
+        try {
+            cache.write(cacheKeys, cacheValues, ttls, evictedKeys);
+        } catch (RuntimeException e) {
+            log.warn(String.format("MultiCache: failed to write %d queued write(s) of redis cache %s, queueing %d eviction(s) again",
+                    writes.size(), getName(), evictedKeys.size()), e);
+            synchronized (this) {
+                writes.stream().filter(write -> write.getValue().isEviction())
+                        .forEach(write -> pending.putIfAbsent(write.getKey(), write.getValue()));
+            }
+        }
+    }
+
+    private static class PendingWrite {
+        private final byte[] cacheKey;
+        private final byte[] value;
+        private final Duration ttl;
+
+        /**
+         * @param value the serialized value, or null for an eviction
+         */
+        PendingWrite(byte[] cacheKey, byte[] value, Duration ttl) {
+            this.cacheKey = cacheKey;
+            this.value = value;
+            this.ttl = ttl;
+        }
+
+        boolean isEviction() {
+            return value == null;
+        }
+    }
+
+    /**
+     * Async view that queues writes like the cache itself, and reads queued writes before going to redis.
+     */
+    private class WriteBehindAsyncCache implements AsyncMultiCache {
+
+        private final AsyncLoads loads = new AsyncLoads();
+
+        @Override
+        public String getName() {
+            return WriteBehindCache.this.getName();
+        }
+
+        @Override
+        public CompletableFuture<ValueWrapper> get(Object key) {
+            PendingWrite write = pendingWrite(key);
+            if (write == null) {
+                return cache.async().get(key);
+            }
+            return CompletableFuture.completedFuture(write.isEviction() ? null : cache.toValueWrapper(write.value));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> CompletableFuture<T> get(Object key, Supplier<CompletableFuture<T>> loader) {
+            PendingWrite write = pendingWrite(key);
+            if (write == null) {
+                return cache.async().get(key).thenCompose(value -> value != null
+                        ? CompletableFuture.completedFuture((T) value.get())
+                        : loads.load(key, loader, this::put));
+            }
+            ValueWrapper value = write.isEviction() ? null : cache.toValueWrapper(write.value);
+            if (value != null) {
+                return CompletableFuture.completedFuture((T) value.get());
+            }
+            return loader.get().thenApply(loaded -> {
+                WriteBehindCache.this.put(key, loaded);
+                return loaded;
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> put(Object key, Object value) {
+            return run(() -> WriteBehindCache.this.put(key, value));
+        }
+
+        @Override
+        public CompletableFuture<Void> evict(Object key) {
+            return run(() -> WriteBehindCache.this.evict(key));
+        }
+
+        private CompletableFuture<Void> run(Runnable write) {
+            CompletableFuture<Void> result = new CompletableFuture<>();
+            try {
+                write.run();
+                result.complete(null);
+            } catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+            return result;
+        }
+    }
+}
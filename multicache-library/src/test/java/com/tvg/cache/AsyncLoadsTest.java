@@ -0,0 +1,75 @@
+package com.tvg.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AsyncLoadsTest {
+
+    private final AsyncLoads loads = new AsyncLoads();
+    private final AtomicInteger stored = new AtomicInteger();
+    private final BiFunction<Object, Object, CompletableFuture<Void>> store = (key, value) -> {
+        stored.incrementAndGet();
+        return CompletableFuture.completedFuture(null);
+    };
+
+    @Test
+    public void concurrentLoadsOfAKeyShareOneFuture() throws Exception {
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+
+        CompletableFuture<String> first = loads.load(1L, () -> {
+            calls.incrementAndGet();
+            return loading;
+        }, store);
+        CompletableFuture<String> second = loads.load(1L, () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("other");
+        }, store);
+        loading.complete("one");
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(calls).hasValue(1);
+        assertThat(stored).hasValue(1);
+    }
+
+    @Test
+    public void loaderReturningNoFutureFailsTheLoadAndFreesTheKey() throws Exception {
+        CompletableFuture<String> failed = loads.load(1L, () -> null, store);
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThatThrownBy(failed::get).isInstanceOf(ExecutionException.class)
+                .hasMessageContaining("MultiCache: the async loader of key 1 returned no future");
+        assertThat(loads.load(1L, () -> CompletableFuture.completedFuture("one"), store).get(1, TimeUnit.SECONDS)).isEqualTo("one");
+    }
+
+    @Test
+    public void loaderThrowingAnErrorFailsTheLoadAndFreesTheKey() throws Exception {
+        CompletableFuture<String> failed = loads.load(1L, () -> {
+            throw new StackOverflowError();
+        }, store);
+
+        assertThat(failed).isCompletedExceptionally();
+        assertThatThrownBy(failed::get).hasCauseInstanceOf(StackOverflowError.class);
+        assertThat(loads.load(1L, () -> CompletableFuture.completedFuture("one"), store).get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(stored).hasValue(1);
+    }
+
+    @Test
+    public void failedStoreFailsTheLoadAndFreesTheKey() throws Exception {
+        CompletableFuture<String> failed = loads.load(1L, () -> CompletableFuture.completedFuture("one"), (key, value) -> {
+            throw new IllegalStateException("redis down");
+        });
+
+        assertThatThrownBy(() -> failed.get(1, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class).hasStackTraceContaining("redis down");
+        assertThat(loads.load(1L, () -> CompletableFuture.completedFuture("one"), store).get(1, TimeUnit.SECONDS)).isEqualTo("one");
+    }
+}
@@ -0,0 +1,91 @@
+package com.tvg.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.io.DataOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class CacheSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final MultiCacheProperties.SnapshotProperties properties = new MultiCacheProperties.SnapshotProperties();
+
+    private MultiCaffeineCache cache() {
+        return new MultiCaffeineCache("contacts", Caffeine.newBuilder().maximumSize(100).build(), true);
+    }
+
+    private CacheSnapshot snapshot(MultiCaffeineCache cache, Path file) {
+        return new CacheSnapshot(cache, file, properties, new JdkSerializationRedisSerializer());
+    }
+
+    @Test
+    public void savedEntriesAreLoadedBack() {
+        Path file = folder.getRoot().toPath().resolve("snapshots/contacts.snapshot");
+        MultiCaffeineCache saved = cache();
+        saved.put(1L, "one");
+        saved.put("two", 2);
+        assertThat(snapshot(saved, file).save()).isEqualTo(2);
+
+        MultiCaffeineCache loaded = cache();
+        assertThat(snapshot(loaded, file).load()).isEqualTo(2);
+        assertThat(loaded.get(1L, String.class)).isEqualTo("one");
+        assertThat(loaded.get("two", Integer.class)).isEqualTo(2);
+    }
+
+    @Test
+    public void directoryAndFileAreOnlyAccessibleByTheOwner() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("snapshots/contacts.snapshot");
+        assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        MultiCaffeineCache saved = cache();
+        saved.put(1L, "one");
+        snapshot(saved, file).save();
+
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file.getParent()))).isEqualTo("rwx------");
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(file))).isEqualTo("rw-------");
+    }
+
+    @Test
+    public void snapshotWritableByOthersIsNotLoaded() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("contacts.snapshot");
+        assumeTrue(file.getFileSystem().supportedFileAttributeViews().contains("posix"));
+        MultiCaffeineCache saved = cache();
+        saved.put(1L, "one");
+        snapshot(saved, file).save();
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-rw-"));
+
+        assertThat(snapshot(cache(), file).load()).isZero();
+    }
+
+    @Test
+    public void lengthBeyondTheEndOfTheFileKeepsTheEntriesBeforeIt() throws Exception {
+        Path file = folder.getRoot().toPath().resolve("contacts.snapshot");
+        JdkSerializationRedisSerializer serializer = new JdkSerializationRedisSerializer();
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x4D43534E);
+            out.writeInt(1);
+            out.writeInt(2);
+            byte[] key = serializer.serialize(1L);
+            byte[] value = serializer.serialize("one");
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(value.length);
+            out.write(value);
+            out.writeInt(Integer.MAX_VALUE);
+        }
+
+        MultiCaffeineCache loaded = cache();
+        assertThat(snapshot(loaded, file).load()).isEqualTo(1);
+        assertThat(loaded.get(1L, String.class)).isEqualTo("one");
+    }
+}
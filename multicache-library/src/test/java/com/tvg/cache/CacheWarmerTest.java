@@ -0,0 +1,113 @@
+package com.tvg.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.cache.support.SimpleCacheManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CacheWarmerTest {
+
+    private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    private final SimpleCacheManager cacheManager = new SimpleCacheManager();
+    private final MultiCaffeineCache cache = new MultiCaffeineCache("contacts", Caffeine.newBuilder().build(), true);
+    private CacheWarmer warmer;
+
+    @Before
+    public void setUp() {
+        beanFactory.registerSingleton("contactService", new ContactService());
+        beanFactory.registerSingleton("contactRepository", new ContactRepository());
+        cacheManager.setCaches(Collections.singletonList(cache));
+        cacheManager.afterPropertiesSet();
+        warmer = new CacheWarmer(cacheManager, null, beanFactory, Runnable::run, null);
+    }
+
+    private MultiCacheProperties.WarmUpProperties warmUp(String loader, String keyProperty) {
+        MultiCacheProperties.WarmUpProperties properties = new MultiCacheProperties.WarmUpProperties();
+        properties.setKeys("contactService.topContactIds");
+        properties.setLoader(loader);
+        properties.setKeyProperty(keyProperty);
+        properties.setBatchSize(2);
+        properties.setFailOnError(true);
+        return properties;
+    }
+
+    private void assertWarmedUp() {
+        assertThat(warmer.getCoverage()).containsEntry("contacts", 1.0);
+        for (long id = 1; id <= 5; id++) {
+            assertThat(cache.get(id, Contact.class).getId()).isEqualTo(id);
+        }
+    }
+
+    @Test
+    public void loadsOneKeyPerCall() {
+        warmer.warmUp("contacts", warmUp("contactRepository.findById", null));
+
+        assertWarmedUp();
+    }
+
+    @Test
+    public void loadsABatchIntoAMap() {
+        warmer.warmUp("contacts", warmUp("contactRepository.findAllAsMap", null));
+
+        assertWarmedUp();
+    }
+
+    @Test
+    public void loadsABatchOfValuesKeyedByTheirKeyProperty() {
+        warmer.warmUp("contacts", warmUp("contactRepository.findAllById", "id"));
+
+        assertWarmedUp();
+    }
+
+    @Test
+    public void batchOfValuesNeedsTheirKeyProperty() {
+        assertThatThrownBy(() -> warmer.warmUp("contacts", warmUp("contactRepository.findAllById", null)))
+                .hasMessageContaining("key-property");
+    }
+
+    public static class Contact {
+        private final Long id;
+
+        Contact(Long id) {
+            this.id = id;
+        }
+
+        public Long getId() { return id; }
+    }
+
+    public static class ContactService {
+        public List<Long> topContactIds() {
+            return Arrays.asList(1L, 2L, 3L, 4L, 5L);
+        }
+    }
+
+    public static class ContactRepository {
+        public Contact findById(Long id) {
+            return new Contact(id);
+        }
+
+        public List<Contact> findAllById(Iterable<Long> ids) {
+            List<Contact> contacts = new ArrayList<>();
+            ids.forEach(id -> contacts.add(new Contact(id)));
+            return contacts;
+        }
+
+        public Map<Long, Contact> findAllAsMap(Collection<Long> ids) {
+            Map<Long, Contact> contacts = new LinkedHashMap<>();
+            ids.forEach(id -> contacts.put(id, new Contact(id)));
+            return contacts;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.tvg.cache;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class CompressingRedisSerializerTest {
+
+    private final RedisSerializer<Object> kryo = new KryoRedisSerializer(getClass().getClassLoader());
+
+    private static List<String> largeValue() {
+        return new ArrayList<>(Collections.nCopies(500, "a repetitive value that compresses well"));
+    }
+
+    @Test
+    public void largeValuesRoundTripWithEveryCodec() {
+        for (MultiCacheProperties.Compression compression : EnumSet.of(MultiCacheProperties.Compression.GZIP, MultiCacheProperties.Compression.LZ4, MultiCacheProperties.Compression.ZSTD)) {
+            CompressingRedisSerializer serializer = new CompressingRedisSerializer(kryo, compression, 64);
+            List<String> value = largeValue();
+
+            byte[] bytes = serializer.serialize(value);
+
+            assertThat(bytes.length).as(compression.name()).isLessThan(kryo.serialize(value).length);
+            assertThat(serializer.deserialize(bytes)).as(compression.name()).isEqualTo(value);
+            assertThat(serializer.getCompressedValues()).isEqualTo(1);
+            assertThat(serializer.getCompressionRatio()).isGreaterThan(1.0);
+        }
+    }
+
+    @Test
+    public void smallValuesAreStoredUncompressed() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(kryo, MultiCacheProperties.Compression.LZ4, 1024);
+
+        assertThat(serializer.deserialize(serializer.serialize("small"))).isEqualTo("small");
+        assertThat(serializer.deserialize(serializer.serialize(42))).isEqualTo(42);
+        assertThat(serializer.getCompressedValues()).isZero();
+    }
+
+    @Test
+    public void valuesWrittenBeforeCompressionAreReadAsTheyAre() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(kryo, MultiCacheProperties.Compression.ZSTD, 64);
+
+        // kryo writes a class id first, and the ids of strings and ints are small numbers like the codec bytes
+        assertThat(serializer.deserialize(kryo.serialize("legacy"))).isEqualTo("legacy");
+        assertThat(serializer.deserialize(kryo.serialize(42))).isEqualTo(42);
+        assertThat(serializer.deserialize(kryo.serialize(largeValue()))).isEqualTo(largeValue());
+
+        RedisSerializer<Object> jdk = new JdkSerializationRedisSerializer();
+        CompressingRedisSerializer jdkSerializer = new CompressingRedisSerializer(jdk, MultiCacheProperties.Compression.GZIP, 64);
+        assertThat(jdkSerializer.deserialize(jdk.serialize("legacy"))).isEqualTo("legacy");
+    }
+
+    @Test
+    public void forgedLengthsAreRefusedBeforeAllocating() {
+        for (MultiCacheProperties.Compression compression : EnumSet.of(MultiCacheProperties.Compression.GZIP, MultiCacheProperties.Compression.LZ4, MultiCacheProperties.Compression.ZSTD)) {
+            CompressingRedisSerializer serializer = new CompressingRedisSerializer(kryo, compression, 64);
+            byte[] bytes = serializer.serialize(largeValue());
+
+            ByteBuffer.wrap(bytes).putInt(5, Integer.MAX_VALUE - 8);
+
+            assertThatThrownBy(() -> serializer.deserialize(bytes)).as(compression.name())
+                    .isInstanceOf(SerializationException.class)
+                    .hasMessageContaining("exceeds " + CompressingRedisSerializer.MAX_RATIO + " times");
+        }
+    }
+
+    @Test
+    public void valuesCompressingBeyondTheMaxRatioAreStoredUncompressed() {
+        CompressingRedisSerializer serializer = new CompressingRedisSerializer(kryo, MultiCacheProperties.Compression.ZSTD, 64);
+        byte[] zeros = new byte[1 << 22];
+
+        byte[] bytes = serializer.serialize(zeros);
+
+        assertThat(bytes.length).isGreaterThan(zeros.length);
+        assertThat(serializer.getCompressedValues()).isZero();
+        assertThat(Arrays.equals((byte[]) serializer.deserialize(bytes), zeros)).isTrue();
+    }
+}
@@ -0,0 +1,92 @@
+package com.tvg.cache;
+
+import org.junit.rules.ExternalResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.util.Properties;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+/**
+ * A redis server on a free port for the tests of a class, with a lettuce connection factory to it.
+ */
+class EmbeddedRedis extends ExternalResource {
+
+    private RedisServer server;
+    private LettuceConnectionFactory connectionFactory;
+
+    @Override
+    protected void before() {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        server = RedisServer.builder().port(port).setting("bind 127.0.0.1").build();
+        server.start();
+        connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", port));
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @Override
+    protected void after() {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    LettuceConnectionFactory getConnectionFactory() { return connectionFactory; }
+
+    void flushAll() {
+        execute(connection -> {
+            connection.flushAll();
+            return null;
+        });
+    }
+
+    /**
+     * How many times the command ran since the stats were last reset.
+     */
+    long calls(String command) {
+        Properties stats = execute(connection -> connection.info("commandstats"));
+        String stat = stats.getProperty("cmdstat_" + command);
+        return stat != null ? Long.parseLong(stat.replaceAll("^calls=(\\d+),.*$", "$1")) : 0;
+    }
+
+    void resetStats() {
+        execute(connection -> {
+            connection.resetConfigStats();
+            return null;
+        });
+    }
+
+    <T> T execute(Function<RedisConnection, T> action) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return action.apply(connection);
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Waits up to 5 seconds for the condition, running {@code action} before each check.
+     */
+    static boolean await(Runnable action, BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            action.run();
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+}
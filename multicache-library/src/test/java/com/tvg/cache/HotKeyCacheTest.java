@@ -0,0 +1,128 @@
+package com.tvg.cache;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class HotKeyCacheTest {
+
+    @ClassRule
+    public static final EmbeddedRedis redis = new EmbeddedRedis();
+
+    @Rule
+    public final MultiCacheNodes nodes = new MultiCacheNodes(redis);
+
+    @Before
+    public void setUp() {
+        redis.flushAll();
+        nodes.property("enable-redis", "true");
+        nodes.property("redis.popular.time-to-live", "10m");
+        nodes.property("redis.popular.transaction-aware", "false");
+        nodes.property("redis.popular.hot-keys.enabled", "true");
+        nodes.property("redis.popular.hot-keys.tracked", "2");
+        nodes.property("redis.popular.hot-keys.min-frequency", "50");
+        nodes.property("redis.popular.hot-keys.decay-interval", "1h");
+        nodes.property("redis.popular.hot-keys.promote", "true");
+        nodes.property("redis.popular.hot-keys.local-time-to-live", "300ms");
+    }
+
+    private HotKeyCache cache() {
+        return nodes.cache("popular");
+    }
+
+    private static void read(HotKeyCache cache, Object key, int times) {
+        for (int i = 0; i < times; i++) {
+            cache.get(key);
+        }
+    }
+
+    @Test
+    public void hotKeysAreReadLocallyAndColdKeysFromRedis() {
+        HotKeyCache cache = cache();
+        cache.put(1L, "hot");
+        cache.put(2L, "cold");
+
+        read(cache, 1L, 200);
+        read(cache, 2L, 5);
+        assertThat(cache.getHotKeys()).containsOnlyKeys(1L);
+        redis.resetStats();
+
+        read(cache, 1L, 100);
+        read(cache, 2L, 5);
+
+        // the hot key was promoted while it was counted, so only the cold reads reach redis
+        assertThat(redis.calls("get")).isEqualTo(5);
+        assertThat(cache.getPromotedKeys()).isEqualTo(1);
+        assertThat(cache.get(1L).get()).isEqualTo("hot");
+    }
+
+    @Test
+    public void writesOnThisNodeDropTheLocalCopy() {
+        HotKeyCache cache = cache();
+        cache.put(1L, "hot");
+        read(cache, 1L, 200);
+        assertThat(cache.getPromotedKeys()).isEqualTo(1);
+
+        cache.put(1L, "updated");
+        assertThat(cache.get(1L).get()).isEqualTo("updated");
+        cache.evict(1L);
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.get(1L, () -> "loaded")).isEqualTo("loaded");
+        assertThat(cache.getAll(Arrays.asList(1L, 2L))).containsOnlyKeys(1L);
+    }
+
+    @Test
+    public void loaderExceptionOfAPromotedKeyIsWrappedOnce() {
+        HotKeyCache cache = cache();
+        cache.put(1L, "hot");
+        read(cache, 1L, 200);
+        cache.evict(1L);
+        IllegalStateException notFound = new IllegalStateException("not found");
+
+        for (Object key : Arrays.asList(1L, 2L)) {
+            assertThatThrownBy(() -> cache.get(key, () -> {
+                throw notFound;
+            })).as("key %s", key).isExactlyInstanceOf(Cache.ValueRetrievalException.class).hasCause(notFound);
+        }
+        assertThat(cache.getHotKeys()).containsOnlyKeys(1L);
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void writesOnOtherNodesAreSeenOnceTheLocalCopyExpires() throws Exception {
+        HotKeyCache cache = cache();
+        MultiRedisCache redisCache = (MultiRedisCache) cache.getDelegate();
+        cache.put(1L, "hot");
+        read(cache, 1L, 200);
+
+        // another node writes straight to redis
+        redisCache.put(1L, "from another node");
+        assertThat(cache.get(1L).get()).isEqualTo("hot");
+
+        assertThat(EmbeddedRedis.await(() -> { }, () -> "from another node".equals(cache.get(1L).get()))).isTrue();
+    }
+
+    @Test
+    public void keysStopBeingHotWhenTheirReadsDecay() {
+        HotKeyCache cache = cache();
+        cache.put(1L, "hot");
+        read(cache, 1L, 200);
+        assertThat(cache.getHotKeys()).containsOnlyKeys(1L);
+
+        for (int i = 0; i < 3; i++) {
+            cache.getTracker().decay();
+        }
+
+        assertThat(cache.getHotKeys()).isEmpty();
+        redis.resetStats();
+        read(cache, 1L, 10);
+        assertThat(redis.calls("get")).isEqualTo(10);
+    }
+}
@@ -0,0 +1,84 @@
+package com.tvg.cache;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HotKeyTrackerTest {
+
+    @Test
+    public void frequentKeyBecomesHot() {
+        HotKeyTracker tracker = new HotKeyTracker(10, 100);
+
+        for (int i = 0; i < 200; i++) {
+            tracker.record("hot");
+            tracker.record("cold-" + i);
+        }
+
+        assertThat(tracker.isHot("hot")).isTrue();
+        assertThat(tracker.isHot("cold-1")).isFalse();
+        assertThat(tracker.getHotKeys()).containsOnlyKeys("hot");
+        assertThat(tracker.getHotKeys().get("hot")).isBetween(100, 200);
+    }
+
+    @Test
+    public void decayHalvesTheEstimatesUntilTheKeyCoolsDown() {
+        HotKeyTracker tracker = new HotKeyTracker(10, 100);
+        for (int i = 0; i < 300; i++) {
+            tracker.record("hot");
+        }
+        int estimate = tracker.getHotKeys().get("hot");
+
+        tracker.decay();
+        assertThat(tracker.getHotKeys().get("hot")).isEqualTo(estimate / 2);
+        tracker.decay();
+        tracker.decay();
+        assertThat(tracker.isHot("hot")).isFalse();
+    }
+
+    @Test
+    public void concurrentReadsFindTheHotKeysAmongManyColdOnes() throws Exception {
+        HotKeyTracker tracker = new HotKeyTracker(5, 1000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                readers.add(executor.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        tracker.record(i % 2 == 0 ? "hot-" + (i % 3) : "cold-" + ThreadLocalRandom.current().nextInt(100_000));
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(tracker.getHotKeys()).containsOnlyKeys("hot-0", "hot-1", "hot-2");
+        // each hot key is read about 26,700 times; reads dropped under contention only lower the estimate
+        assertThat(tracker.getHotKeys().values()).allMatch(estimate -> estimate <= 8 * 20_000 / 2);
+    }
+
+    @Test
+    public void decayTrimsTheCandidatesToTheTrackedKeys() {
+        HotKeyTracker tracker = new HotKeyTracker(3, 1);
+        for (int key = 0; key < 50; key++) {
+            for (int read = 0; read <= key; read++) {
+                tracker.record(key);
+            }
+        }
+
+        tracker.decay();
+
+        assertThat(tracker.getHotKeys()).containsOnlyKeys(49, 48, 47);
+    }
+}
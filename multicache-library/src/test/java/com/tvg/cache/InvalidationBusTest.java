@@ -0,0 +1,123 @@
+package com.tvg.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvalidationBusTest {
+
+    @ClassRule
+    public static final EmbeddedRedis redis = new EmbeddedRedis();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private InvalidationBus node1;
+    private InvalidationBus node2;
+    private MultiCaffeineCache cache1;
+    private MultiCaffeineCache cache2;
+
+    @Before
+    public void setUp() {
+        node1 = bus();
+        node2 = bus();
+        cache1 = new MultiCaffeineCache("contacts", Caffeine.newBuilder().build(), true);
+        cache2 = new MultiCaffeineCache("contacts", Caffeine.newBuilder().build(), true);
+        node1.register("contacts", cache1);
+        node2.register("contacts", cache2, new KryoRedisSerializer(getClass().getClassLoader()));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        node1.destroy();
+        node2.destroy();
+        executor.shutdownNow();
+    }
+
+    private InvalidationBus bus() {
+        MultiCacheProperties.InvalidationProperties properties = new MultiCacheProperties.InvalidationProperties();
+        properties.setChannel("test-invalidation");
+        InvalidationBus bus = new InvalidationBus(redis.getConnectionFactory(), properties, executor);
+        bus.afterPropertiesSet();
+        return bus;
+    }
+
+    @Test
+    public void evictionOnOneNodeEvictsOnTheOthers() throws Exception {
+        UUID id = UUID.randomUUID();
+        cache2.put(1L, "one");
+        cache2.put(1, "one as an int");
+        cache2.put("a", "a");
+        cache2.put(id, "uuid");
+        cache2.put(2L, "two");
+
+        boolean evicted = EmbeddedRedis.await(() -> {
+            node1.publishEvict("contacts", 1L);
+            node1.publishEvict("contacts", "a");
+            node1.publishEvict("contacts", id);
+            node1.flush();
+        }, () -> cache2.get(1L) == null);
+
+        assertThat(evicted).isTrue();
+        assertThat(EmbeddedRedis.await(() -> { }, () -> cache2.get("a") == null && cache2.get(id) == null)).isTrue();
+        assertThat(cache2.get(1).get()).isEqualTo("one as an int");
+        assertThat(cache2.get(2L).get()).isEqualTo("two");
+    }
+
+    @Test
+    public void clearOnOneNodeClearsTheOthers() throws Exception {
+        cache2.put(1L, "one");
+
+        assertThat(EmbeddedRedis.await(() -> {
+            node1.publishClear("contacts");
+            node1.flush();
+        }, () -> cache2.get(1L) == null)).isTrue();
+    }
+
+    @Test
+    public void keyWithoutSerializerClearsTheOtherNodes() throws Exception {
+        // node1 has no serializer for its keys, so it cannot write a SimpleKey
+        cache2.put(new SimpleKey(1, "x"), "composite");
+        cache2.put(3L, "three");
+
+        assertThat(EmbeddedRedis.await(() -> {
+            node1.publishEvict("contacts", new SimpleKey(1, "x"));
+            node1.flush();
+        }, () -> cache2.get(3L) == null)).isTrue();
+    }
+
+    @Test
+    public void keyWithSerializerEvictsOnlyThatKey() throws Exception {
+        node1.register("contacts", cache1, new KryoRedisSerializer(getClass().getClassLoader()));
+        cache1.put(new SimpleKey(1, "x"), "composite");
+        cache1.put(3L, "three");
+
+        assertThat(EmbeddedRedis.await(() -> {
+            node2.publishEvict("contacts", new SimpleKey(1, "x"));
+            node2.flush();
+        }, () -> cache1.get(new SimpleKey(1, "x")) == null)).isTrue();
+        assertThat(cache1.get(3L).get()).isEqualTo("three");
+    }
+
+    @Test
+    public void foreignMessagesAreIgnored() throws Exception {
+        cache2.put(1L, "one");
+        byte[] channel = "test-invalidation".getBytes(StandardCharsets.UTF_8);
+        redis.execute(connection -> connection.publish(channel, new JdkSerializationRedisSerializer().serialize("not a message")));
+        // a valid header announcing more caches than the message holds
+        redis.execute(connection -> connection.publish(channel,
+                new byte[] {0x4D, 0x43, 0x49, 0x4E, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x7F, 0x7F, 0x7F, 0x7F}));
+        Thread.sleep(200);
+
+        assertThat(cache2.get(1L).get()).isEqualTo("one");
+    }
+}
@@ -0,0 +1,107 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MeteredCacheTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private double gets(String result) {
+        return registry.get("cache.gets").tag("result", result).counter().count();
+    }
+
+    private MeteredCache metered(Cache cache) {
+        return new MeteredCache(cache, "redis", registry, new double[0], executor);
+    }
+
+    @Test
+    public void callersWaitingForAnotherCallersLoadAreMisses() throws Exception {
+        MeteredCache cache = metered(new ConcurrentMapCache("contacts"));
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.get(1L, () -> {
+                    Thread.sleep(200);
+                    return "one";
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("one");
+        }
+
+        assertThat(gets("miss")).isEqualTo(8);
+        assertThat(gets("hit")).isZero();
+
+        cache.get(1L, () -> "not called");
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+
+    @Test
+    public void backgroundRefreshOfACachedValueIsAHit() throws Exception {
+        // a cache that returns the cached value and refreshes it on another thread, as refresh-ahead does
+        Cache refreshing = new ForwardingCache(new ConcurrentMapCache("contacts"), Runnable::run) {
+            @Override
+            public <T> T get(Object key, Callable<T> valueLoader) {
+                T value = super.get(key, valueLoader);
+                try {
+                    executor.submit(valueLoader).get();
+                } catch (Exception ex) {
+                    throw new IllegalStateException(ex);
+                }
+                return value;
+            }
+        };
+        MeteredCache cache = metered(refreshing);
+        refreshing.put(1L, "one");
+
+        assertThat(cache.get(1L, () -> "refreshed")).isEqualTo("one");
+
+        assertThat(gets("hit")).isEqualTo(1);
+        assertThat(gets("miss")).isZero();
+    }
+
+    @Test
+    public void asyncCallersWaitingForAnotherCallersLoadAreMisses() throws Exception {
+        MeteredCache cache = metered(new ConcurrentMapCache("contacts"));
+        CompletableFuture<String> loading = new CompletableFuture<>();
+        AsyncMultiCache async = cache.async();
+
+        CompletableFuture<String> first = async.get(1L, () -> loading);
+        CompletableFuture<String> second = async.get(1L, () -> loading);
+        loading.complete("one");
+
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(second.get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(gets("miss")).isEqualTo(2);
+        assertThat(async.get(1L, () -> CompletableFuture.completedFuture("not called")).get(1, TimeUnit.SECONDS)).isEqualTo("one");
+        assertThat(gets("hit")).isEqualTo(1);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MultiCacheManagerTest {
+
+    @Rule
+    public final MultiCacheNodes nodes = new MultiCacheNodes(null);
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MultiCacheManager cacheManager;
+
+    @Before
+    public void setUp() {
+        nodes.property("enable-caffeine", "true")
+                .property("caffeine.contacts.spec", "maximumSize=100")
+                .property("caffeine.weighed.spec", "expireAfterWrite=1h")
+                .property("caffeine.weighed.max-memory", "1MB");
+        nodes.getBeanFactory().registerSingleton("meterRegistry", meterRegistry);
+        cacheManager = nodes.cacheManager();
+    }
+
+    @Test
+    public void reconfiguredCacheReplacesThePreviousOneWithItsEntries() {
+        Cache previous = cacheManager.getCache("contacts");
+        previous.put(1L, "one");
+
+        cacheManager.reconfigure("contacts", null, Collections.singletonMap("spec", "maximumSize=200"));
+
+        Cache cache = cacheManager.getCache("contacts");
+        assertThat(cache).isNotSameAs(previous);
+        assertThat(cache.get(1L, String.class)).isEqualTo("one");
+        assertThat(((MultiCacheProperties.CaffeineCacheProperties) cacheManager.getCacheProperties("contacts")).getSpec()).isEqualTo("maximumSize=200");
+    }
+
+    @Test
+    public void refreshRebuildsOnlyTheCachesWhosePropertiesChanged() {
+        assertThat(cacheManager.refresh()).isEmpty();
+
+        nodes.property("caffeine.weighed.snapshot.max-entries", "500");
+        assertThat(cacheManager.refresh()).containsExactly("weighed");
+        assertThat(cacheManager.refresh()).isEmpty();
+    }
+
+    @Test
+    public void failedRebuildLeavesThePreviousCacheAsItWas() {
+        Cache previous = cacheManager.getCache("weighed");
+        previous.put(1L, "one");
+
+        // fails after the new cache registered its gauge
+        nodes.property("caffeine.weighed.snapshot.enabled", "true");
+        assertThatThrownBy(() -> cacheManager.refresh()).hasMessageContaining("snapshot.path");
+
+        assertThat(cacheManager.getCache("weighed")).isSameAs(previous);
+        assertThat(((MultiCacheProperties.CaffeineCacheProperties) cacheManager.getCacheProperties("weighed")).getSnapshot().isEnabled()).isFalse();
+        Gauge memory = meterRegistry.get("cache.memory.estimated").tag("cache", "weighed").gauge();
+        assertThat(memory.value()).isPositive();
+    }
+
+    @Test
+    public void memoryBoundedCacheCannotAlsoBeBoundedBySize() {
+        assertThatThrownBy(() -> cacheManager.reconfigure("weighed", null, Collections.singletonMap("spec", "expireAfterWrite=1h, maximumSize=10")))
+                .hasMessage("MultiCache: caffeine cache weighed sets max-memory, so its spec cannot set maximumSize or maximumWeight");
+        assertThatThrownBy(() -> cacheManager.reconfigure("weighed", null, Collections.singletonMap("spec", "maximumWeight=10")))
+                .hasMessageContaining("cannot set maximumSize or maximumWeight");
+
+        cacheManager.reconfigure("weighed", null, Collections.singletonMap("spec", "expireAfterAccess=1h"));
+        assertThat(((MultiCacheProperties.CaffeineCacheProperties) cacheManager.getCacheProperties("weighed")).getSpec()).isEqualTo("expireAfterAccess=1h");
+    }
+
+    @Test
+    public void onlyTunablesCanBeReconfigured() {
+        Cache previous = cacheManager.getCache("contacts");
+
+        assertThatThrownBy(() -> cacheManager.reconfigure("contacts", null, Collections.singletonMap("snapshot", Collections.singletonMap("path", "/tmp"))))
+                .hasMessageContaining("snapshot.path");
+        assertThatThrownBy(() -> cacheManager.reconfigure("contacts", null, Collections.singletonMap("snapshot.serializer-bean", "gadget")))
+                .hasMessageContaining("snapshot.serializer-bean");
+        assertThat(cacheManager.getCache("contacts")).isSameAs(previous);
+
+        cacheManager.reconfigure("contacts", null, Collections.singletonMap("negativeTtl", "5s"));
+        assertThat(((MultiCacheProperties.CaffeineCacheProperties) cacheManager.getCacheProperties("contacts")).getNegativeTtl()).isEqualTo(Duration.ofSeconds(5));
+    }
+}
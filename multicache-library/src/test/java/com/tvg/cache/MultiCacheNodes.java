@@ -0,0 +1,85 @@
+package com.tvg.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.rules.ExternalResource;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.cache.Cache;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the cache manager of an application node from {@code tvg.multicache} properties, as the auto-configuration
+ * does, and destroys every node built during a test after it. The properties stay live: changes made after a node
+ * was built are seen by its refreshes.
+ */
+class MultiCacheNodes extends ExternalResource {
+
+    private final EmbeddedRedis redis;
+    private final Map<String, Object> properties = new HashMap<>();
+    private final DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    private final List<CacheConfiguration> configurations = new ArrayList<>();
+    private MultiCacheManager cacheManager;
+
+    /**
+     * @param redis the redis of caches with {@code enable-redis=true}, may be null
+     */
+    MultiCacheNodes(EmbeddedRedis redis) {
+        this.redis = redis;
+    }
+
+    @Override
+    protected void after() {
+        configurations.forEach(CacheConfiguration::destroy);
+    }
+
+    /**
+     * Sets a property, named without its {@code tvg.multicache.} prefix.
+     */
+    MultiCacheNodes property(String name, Object value) {
+        properties.put("tvg.multicache." + name, value);
+        return this;
+    }
+
+    /**
+     * The beans of every node: ttl functions, serializers, meter registries.
+     */
+    DefaultListableBeanFactory getBeanFactory() { return beanFactory; }
+
+    /**
+     * The cache manager of the first node, built on first use.
+     */
+    MultiCacheManager cacheManager() {
+        if (cacheManager == null) {
+            cacheManager = node();
+        }
+        return cacheManager;
+    }
+
+    @SuppressWarnings("unchecked")
+    <C extends Cache> C cache(String name) {
+        return (C) cacheManager().getCache(name);
+    }
+
+    /**
+     * The cache manager of another node, with the same properties, beans and redis.
+     */
+    MultiCacheManager node() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", properties));
+        MultiCacheProperties cacheProperties = Binder.get(environment).bind("tvg.multicache", MultiCacheProperties.class).get();
+        CacheConfiguration configuration = new CacheConfiguration(cacheProperties, beanFactory, environment, beanFactory.getBeanProvider(MeterRegistry.class));
+        configurations.add(configuration);
+        MultiCacheManager manager = configuration.cacheManager(
+                "true".equals(properties.get("tvg.multicache.enable-caffeine")) ? configuration.caffeineCacheManager(null) : null,
+                "true".equals(properties.get("tvg.multicache.enable-redis")) ? configuration.redisCacheManager(redis.getConnectionFactory()) : null,
+                null, null);
+        manager.afterPropertiesSet();
+        return manager;
+    }
+}
@@ -0,0 +1,349 @@
+package com.tvg.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+public class MultiRedisCacheTest {
+
+    @ClassRule
+    public static final EmbeddedRedis redis = new EmbeddedRedis();
+
+    @Rule
+    public final MultiCacheNodes nodes = new MultiCacheNodes(redis);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void setUp() {
+        redis.flushAll();
+        nodes.property("enable-redis", "true")
+                .property("redis.timed.time-to-live", "10m")
+                .property("redis.timed.early-expiration-beta", "1")
+                .property("redis.timed.transaction-aware", "false");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private MultiRedisCache cache(String name) {
+        return nodes.cache(name);
+    }
+
+    private static TimedValue stored(MultiRedisCache cache, Object key) {
+        byte[] bytes = redis.execute(connection -> connection.get(cache.cacheKey(key)));
+        return (TimedValue) cache.getCacheConfiguration().getValueSerializationPair().read(ByteBuffer.wrap(bytes));
+    }
+
+    private static byte[] leaseKey(MultiRedisCache cache, Object key) {
+        byte[] cacheKey = cache.cacheKey(key);
+        byte[] suffix = "~lease".getBytes(StandardCharsets.UTF_8);
+        byte[] leaseKey = Arrays.copyOf(cacheKey, cacheKey.length + suffix.length);
+        System.arraycopy(suffix, 0, leaseKey, cacheKey.length, suffix.length);
+        return leaseKey;
+    }
+
+    private void leased(String name, String leaseTime) {
+        nodes.property("redis." + name + ".time-to-live", "10m");
+        nodes.property("redis." + name + ".load-lease-time", leaseTime);
+        nodes.property("redis." + name + ".transaction-aware", "false");
+    }
+
+    @Test
+    public void concurrentMissesOnAKeyLoadItOnce() throws Exception {
+        MultiRedisCache cache = cache("timed");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return cache.get(1L, () -> {
+                    Thread.sleep(200);
+                    return "one-" + loads.incrementAndGet();
+                });
+            }));
+        }
+        start.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("one-1");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(cache.get(2L, () -> "two-" + loads.incrementAndGet())).isEqualTo("two-2");
+    }
+
+    @Test
+    public void loaderTakesTheLeaseAndReleasesIt() throws Exception {
+        leased("leased", "10s");
+        MultiRedisCache cache = cache("leased");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+
+        Future<String> result = executor.submit(() -> cache.get(1L, () -> {
+            loading.countDown();
+            done.await();
+            return "one";
+        }));
+        loading.await();
+        Long leaseTtl = redis.execute(connection -> connection.pTtl(leaseKey(cache, 1L)));
+        assertThat(leaseTtl).isBetween(1L, 10_000L);
+        done.countDown();
+
+        assertThat(result.get()).isEqualTo("one");
+        Boolean leaseHeld = redis.execute(connection -> connection.exists(leaseKey(cache, 1L)));
+        assertThat(leaseHeld).isFalse();
+    }
+
+    @Test
+    public void otherNodesWaitForTheValueOfTheLeaseHolder() throws Exception {
+        leased("leased", "10s");
+        MultiRedisCache cache = cache("leased");
+        redis.execute(connection -> connection.set(leaseKey(cache, 1L), "other-node".getBytes(StandardCharsets.UTF_8)));
+        AtomicInteger loads = new AtomicInteger();
+
+        Future<Object> result = executor.submit(() -> cache.get(1L, () -> "mine-" + loads.incrementAndGet()));
+        Thread.sleep(300);
+        assertThat(result).isNotDone();
+        // the lease holder writes its value
+        cache.put(1L, "theirs");
+
+        assertThat(result.get()).isEqualTo("theirs");
+        assertThat(loads).hasValue(0);
+        byte[] lease = redis.execute(connection -> connection.get(leaseKey(cache, 1L)));
+        assertThat(new String(lease, StandardCharsets.UTF_8)).isEqualTo("other-node");
+    }
+
+    @Test
+    public void expiredLeaseWithoutAValueIsLoadedLocally() {
+        leased("leased", "300ms");
+        MultiRedisCache cache = cache("leased");
+        redis.execute(connection -> connection.set(leaseKey(cache, 1L), "other-node".getBytes(StandardCharsets.UTF_8)));
+
+        long start = System.currentTimeMillis();
+        assertThat(cache.get(1L, () -> "mine")).isEqualTo("mine");
+
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(300L);
+        assertThat(cache.get(1L).get()).isEqualTo("mine");
+    }
+
+    @Test
+    public void getAllReadsEveryKeyWithOneMget() {
+        MultiRedisCache cache = cache("timed");
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        entries.put(1L, "one");
+        entries.put(2L, null);
+        entries.put(3L, "three");
+        cache.putAll(entries);
+        redis.resetStats();
+
+        Map<Object, Object> values = cache.getAll(Arrays.asList(3L, 4L, 1L, 2L, 3L));
+
+        assertThat(values).containsExactly(entry(3L, "three"), entry(1L, "one"), entry(2L, null));
+        assertThat(redis.calls("mget")).isEqualTo(1);
+        assertThat(redis.calls("get")).isZero();
+    }
+
+    @Test
+    public void putAllWritesEveryEntryWithItsTtl() {
+        MultiRedisCache cache = cache("timed");
+        Map<Object, Object> entries = new LinkedHashMap<>();
+        for (long key = 1; key <= 10; key++) {
+            entries.put(key, "value " + key);
+        }
+        redis.resetStats();
+
+        cache.putAll(entries);
+
+        assertThat(redis.calls("set")).isEqualTo(10);
+        for (long key = 1; key <= 10; key++) {
+            long cached = key;
+            Long ttl = redis.execute(connection -> connection.pTtl(cache.cacheKey(cached)));
+            assertThat(ttl).isBetween(1L, Duration.ofMinutes(10).toMillis());
+            assertThat(cache.get(key).get()).isEqualTo("value " + key);
+        }
+    }
+
+    @Test
+    public void getAllLoadsOnlyTheMissingKeysInOneCall() {
+        MultiRedisCache cache = cache("timed");
+        cache.put(1L, "one");
+        List<Set<Long>> loaded = new ArrayList<>();
+
+        Map<Long, String> values = cache.getAll(Arrays.asList(1L, 2L, 3L), missing -> {
+            loaded.add(missing);
+            return Collections.singletonMap(2L, "two");
+        });
+
+        assertThat(values).containsExactly(entry(1L, "one"), entry(2L, "two"));
+        assertThat(loaded).containsExactly(new HashSet<>(Arrays.asList(2L, 3L)));
+        assertThat(cache.get(2L).get()).isEqualTo("two");
+        assertThat(cache.get(3L)).isNull();
+    }
+
+    @Test
+    public void computeTimeIsTheTimeBetweenTheMissAndThePut() throws Exception {
+        MultiRedisCache cache = cache("timed");
+
+        assertThat(cache.get(1L)).isNull();
+        Thread.sleep(200);
+        cache.put(1L, "one");
+
+        assertThat(stored(cache, 1L).getComputeMillis()).isBetween(200L, 5_000L);
+    }
+
+    @Test
+    public void computeTimeIsNotTakenFromAnOlderMiss() throws Exception {
+        MultiRedisCache cache = cache("timed");
+        cache.put(1L, "one");
+
+        // a miss that is never filled, then a hit on this thread
+        assertThat(cache.get(2L)).isNull();
+        Thread.sleep(200);
+        assertThat(cache.get(1L)).isNotNull();
+        cache.put(2L, "two");
+
+        assertThat(stored(cache, 2L).getComputeMillis()).isZero();
+    }
+
+    @Test
+    public void failedLoadLeavesNoComputeTimeBehind() throws Exception {
+        MultiRedisCache cache = cache("timed");
+
+        try {
+            cache.get(1L, () -> {
+                throw new IllegalStateException("down");
+            });
+        } catch (RuntimeException expected) {
+            // the load failed
+        }
+        Thread.sleep(200);
+        cache.put(1L, "one");
+
+        assertThat(stored(cache, 1L).getComputeMillis()).isZero();
+    }
+
+    private void generations(String pollInterval) {
+        nodes.property("redis.generations.time-to-live", "10m");
+        nodes.property("redis.generations.clear-mode", "generation");
+        nodes.property("redis.generations.generation-poll-interval", pollInterval);
+        nodes.property("redis.generations.transaction-aware", "false");
+    }
+
+    @Test
+    public void clearMovesToTheNextGenerationWithOneCommand() {
+        generations("1h");
+        MultiRedisCache cache = cache("generations");
+        cache.put(1L, "one");
+        byte[] oldKey = cache.cacheKey(1L);
+        redis.resetStats();
+
+        cache.clear();
+
+        assertThat(redis.calls("eval")).isEqualTo(1);
+        assertThat(redis.calls("del") + redis.calls("keys") + redis.calls("scan")).isZero();
+        assertThat(cache.getGeneration()).isEqualTo(1);
+        assertThat(cache.get(1L)).isNull();
+        // the old generation's keys are left to expire
+        Long ttl = redis.execute(connection -> connection.pTtl(oldKey));
+        assertThat(ttl).isPositive();
+
+        cache.put(1L, "uno");
+        assertThat(cache.cacheKey(1L)).isNotEqualTo(oldKey);
+        assertThat(cache.get(1L).get()).isEqualTo("uno");
+        cache.clear();
+        assertThat(cache.getGeneration()).isEqualTo(2);
+        assertThat(cache.get(1L)).isNull();
+    }
+
+    @Test
+    public void otherNodesMoveToTheNewGenerationWhenTheyPollIt() {
+        generations("1h");
+        MultiRedisCache cache = cache("generations");
+        MultiRedisCache otherNode = (MultiRedisCache) nodes.node().getCache("generations");
+        cache.put(1L, "one");
+        assertThat(otherNode.get(1L).get()).isEqualTo("one");
+
+        cache.clear();
+        assertThat(otherNode.getGeneration()).isZero();
+        otherNode.refreshGeneration();
+
+        assertThat(otherNode.getGeneration()).isEqualTo(1);
+        assertThat(otherNode.get(1L)).isNull();
+        // a node started after the clear starts at the current generation
+        assertThat(((MultiRedisCache) nodes.node().getCache("generations")).getGeneration()).isEqualTo(1);
+    }
+
+    @Test
+    public void generationIsPolledEveryPollInterval() throws Exception {
+        generations("100ms");
+        MultiRedisCache cache = cache("generations");
+        MultiRedisCache otherNode = (MultiRedisCache) nodes.node().getCache("generations");
+        cache.put(1L, "one");
+
+        cache.clear();
+
+        assertThat(EmbeddedRedis.await(() -> { }, () -> otherNode.getGeneration() == 1)).isTrue();
+        assertThat(otherNode.get(1L)).isNull();
+    }
+
+    @Test
+    public void generationNeverGoesBackWhenItsKeyIsLost() {
+        generations("1h");
+        MultiRedisCache cache = cache("generations");
+        cache.clear();
+        cache.clear();
+        cache.put(1L, "two");
+
+        redis.execute(connection -> connection.del(connection.keys("*~generation".getBytes(StandardCharsets.UTF_8)).toArray(new byte[0][])));
+        cache.refreshGeneration();
+
+        assertThat(cache.getGeneration()).isEqualTo(2);
+        assertThat(cache.get(1L).get()).isEqualTo("two");
+        assertThat(((MultiRedisCache) nodes.node().getCache("generations")).getGeneration()).isEqualTo(2);
+        cache.clear();
+        assertThat(cache.getGeneration()).isEqualTo(3);
+    }
+
+    @Test
+    public void generationCacheRefusesEntriesThatNeverExpire() {
+        generations("10s");
+        nodes.property("redis.generations.ttl-function-bean", "ttlFunction");
+        nodes.getBeanFactory().registerSingleton("ttlFunction", (TtlFunction) (key, value) -> "forever".equals(value) ? Duration.ZERO : null);
+        MultiRedisCache cache = cache("generations");
+
+        cache.put(1L, "one");
+        assertThatThrownBy(() -> cache.put(2L, "forever"))
+                .hasMessage("MultiCache: redis cache generations uses clear-mode=generation, so its ttl-function-bean must not return PT0S for key 2");
+
+        Long ttl = redis.execute(connection -> connection.pTtl(cache.cacheKey(1L)));
+        assertThat(ttl).isPositive();
+        assertThat(cache.get(2L)).isNull();
+    }
+}
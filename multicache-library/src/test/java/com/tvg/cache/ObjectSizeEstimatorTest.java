@@ -0,0 +1,62 @@
+package com.tvg.cache;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ObjectSizeEstimatorTest {
+
+    static class Node {
+        private final String name;
+        private Node next;
+        private Object payload;
+
+        Node(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    public void sizesGrowWithTheirContent() {
+        long empty = ObjectSizeEstimator.estimate("", Long.MAX_VALUE);
+        long longer = ObjectSizeEstimator.estimate("a string of forty characters, give or ta", Long.MAX_VALUE);
+        List<String> list = new ArrayList<>(Collections.nCopies(100, "shared"));
+
+        assertThat(empty).isEqualTo(40);
+        assertThat(longer).isEqualTo(empty + 80);
+        // one header and reference per element, and the shared string once
+        assertThat(ObjectSizeEstimator.estimate(list, Long.MAX_VALUE)).isEqualTo(24 + 416 + 56);
+    }
+
+    @Test
+    public void walkStopsAtTheLimit() {
+        Node head = new Node("head");
+        Node node = head;
+        for (int i = 0; i < 5_000; i++) {
+            node.next = new Node("node " + i);
+            node = node.next;
+        }
+
+        assertThat(ObjectSizeEstimator.estimate(head, Long.MAX_VALUE)).isGreaterThan(5_000 * 24L);
+        assertThat(ObjectSizeEstimator.estimate(head, 10_000)).isEqualTo(10_000);
+    }
+
+    @Test
+    public void proxiesAreNotWalked() {
+        List<Object> target = new ArrayList<>(Collections.nCopies(10_000, new Object()));
+        Runnable proxy = (Runnable) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Runnable.class},
+                (instance, method, args) -> target.size());
+        Node withProxy = new Node("proxy");
+        withProxy.payload = proxy;
+        Node withClass = new Node("class");
+        withClass.payload = Node.class;
+
+        assertThat(ObjectSizeEstimator.estimate(withProxy, Long.MAX_VALUE)).isEqualTo(ObjectSizeEstimator.estimate(new Node("proxy"), Long.MAX_VALUE));
+        assertThat(ObjectSizeEstimator.estimate(withClass, Long.MAX_VALUE)).isEqualTo(ObjectSizeEstimator.estimate(new Node("class"), Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,227 @@
+package com.tvg.cache;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.Cache.ValueWrapper;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class OffHeapCacheTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Stores byte arrays as they are, so that a value takes exactly its length in the segment.
+     */
+    private static final RedisSerializer<Object> RAW = new RedisSerializer<Object>() {
+        @Override
+        public byte[] serialize(Object value) {
+            return (byte[]) value;
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) {
+            return bytes;
+        }
+    };
+
+    private static OffHeapCache cache(DataSize maxMemory, int segments) {
+        MultiCacheProperties.OffHeapCacheProperties properties = new MultiCacheProperties.OffHeapCacheProperties();
+        properties.setMaxMemory(maxMemory);
+        properties.setSegments(segments);
+        return new OffHeapCache("catalog", properties, new JdkSerializationRedisSerializer());
+    }
+
+    private static OffHeapCache rawCache(int maxBytes, Duration timeToLive) {
+        MultiCacheProperties.OffHeapCacheProperties properties = new MultiCacheProperties.OffHeapCacheProperties();
+        properties.setMaxMemory(DataSize.ofBytes(maxBytes));
+        properties.setSegments(1);
+        properties.setTimeToLive(timeToLive);
+        return new OffHeapCache("catalog", properties, RAW);
+    }
+
+    private static byte[] value(int key, int length) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) key);
+        return value;
+    }
+
+    private static byte[] cached(OffHeapCache cache, int key) {
+        ValueWrapper value = cache.get(key);
+        return value != null ? (byte[]) value.get() : null;
+    }
+
+    @Test
+    public void oldestValuesAreEvictedFirst() {
+        OffHeapCache cache = rawCache(100, Duration.ZERO);
+        for (int key = 1; key <= 4; key++) {
+            cache.put(key, value(key, 30));
+        }
+
+        assertThat(cached(cache, 1)).isNull();
+        for (int key = 2; key <= 4; key++) {
+            assertThat(cached(cache, key)).isEqualTo(value(key, 30));
+        }
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cache.getSize()).isEqualTo(3);
+        assertThat(cache.getUsedBytes()).isEqualTo(90);
+    }
+
+    @Test
+    public void valueReadSinceItWasWrittenGetsASecondChance() {
+        OffHeapCache cache = rawCache(100, Duration.ZERO);
+        for (int key = 1; key <= 3; key++) {
+            cache.put(key, value(key, 30));
+        }
+        assertThat(cached(cache, 1)).isNotNull();
+
+        cache.put(4, value(4, 30));
+
+        assertThat(cached(cache, 2)).isNull();
+        assertThat(cached(cache, 1)).isEqualTo(value(1, 30));
+        assertThat(cached(cache, 3)).isEqualTo(value(3, 30));
+        assertThat(cached(cache, 4)).isEqualTo(value(4, 30));
+        assertThat(cache.getEvictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void valuesWrapAroundTheEndOfTheSegmentIntact() {
+        OffHeapCache cache = rawCache(1000, Duration.ZERO);
+        Map<Integer, byte[]> written = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 5_000; i++) {
+            int key = random.nextInt(100);
+            if (random.nextInt(4) == 0) {
+                cached(cache, key);
+                continue;
+            }
+            byte[] value = value(i, 1 + random.nextInt(120));
+            cache.put(key, value);
+            written.put(key, value);
+            assertThat(cached(cache, key)).isEqualTo(value);
+        }
+
+        int present = 0;
+        for (Map.Entry<Integer, byte[]> entry : written.entrySet()) {
+            byte[] value = cached(cache, entry.getKey());
+            if (value != null) {
+                assertThat(value).as("key %d", entry.getKey()).isEqualTo(entry.getValue());
+                present++;
+            }
+        }
+        assertThat(present).isEqualTo(cache.getSize()).isPositive();
+        assertThat(cache.getUsedBytes()).isBetween(1L, 1000L);
+        assertThat(cache.getEvictions()).isPositive();
+    }
+
+    @Test
+    public void valuesLargerThanASegmentAreNotCached() {
+        OffHeapCache cache = rawCache(100, Duration.ZERO);
+        cache.put(1, value(1, 30));
+
+        cache.put(2, value(2, 101));
+        cache.put(3, value(3, 100));
+
+        assertThat(cached(cache, 2)).isNull();
+        assertThat(cached(cache, 3)).isEqualTo(value(3, 100));
+        assertThat(cached(cache, 1)).isNull();
+        assertThat(cache.getUsedBytes()).isEqualTo(100);
+    }
+
+    @Test
+    public void expiredValuesAreNotRead() throws Exception {
+        OffHeapCache cache = rawCache(100, Duration.ofMillis(100));
+        cache.put(1, value(1, 30));
+        assertThat(cached(cache, 1)).isNotNull();
+
+        Thread.sleep(150);
+
+        assertThat(cached(cache, 1)).isNull();
+        assertThat(cache.getUsedBytes()).isZero();
+        assertThat(cache.putIfAbsent(1, value(2, 30))).isNull();
+        assertThat(cached(cache, 1)).isEqualTo(value(2, 30));
+    }
+
+    @Test(timeout = 10_000)
+    public void waitersGetTheFailureOfTheLoadTheyWaitedFor() throws Exception {
+        OffHeapCache cache = cache(DataSize.ofKilobytes(64), 1);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+        IllegalStateException failure = new IllegalStateException("down");
+
+        Future<Object> owner = executor.submit(() -> cache.get(1L, () -> {
+            loading.countDown();
+            fail.await();
+            throw failure;
+        }));
+        loading.await();
+        Future<Object> waiter = executor.submit(() -> cache.get(1L, () -> "not called"));
+        Thread.sleep(100);
+        fail.countDown();
+
+        for (Future<Object> result : Arrays.asList(owner, waiter)) {
+            assertThatThrownBy(result::get).hasCauseInstanceOf(Cache.ValueRetrievalException.class)
+                    .satisfies(ex -> assertThat(ex.getCause().getCause()).isSameAs(failure));
+        }
+    }
+
+    @Test
+    public void expiredValuesDroppedForSpaceAreNotEvictions() throws Exception {
+        OffHeapCache cache = rawCache(100, Duration.ofMillis(100));
+        for (int key = 1; key <= 3; key++) {
+            cache.put(key, value(key, 30));
+        }
+        Thread.sleep(150);
+
+        cache.put(4, value(4, 30));
+        assertThat(cache.getEvictions()).isZero();
+
+        cache.put(5, value(5, 30));
+        cache.put(6, value(6, 30));
+        cache.put(7, value(7, 30));
+        assertThat(cache.getEvictions()).isEqualTo(1);
+        assertThat(cached(cache, 4)).isNull();
+    }
+
+    @Test(timeout = 10_000)
+    public void waitersGetTheErrorOfTheLoadTheyWaitedFor() throws Exception {
+        OffHeapCache cache = cache(DataSize.ofKilobytes(64), 1);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+
+        Future<Object> owner = executor.submit(() -> cache.get(1L, () -> {
+            loading.countDown();
+            fail.await();
+            throw new StackOverflowError();
+        }));
+        loading.await();
+        Future<Object> waiter = executor.submit(() -> cache.get(1L, () -> "not called"));
+        Thread.sleep(100);
+        fail.countDown();
+
+        assertThatThrownBy(owner::get).hasCauseInstanceOf(StackOverflowError.class);
+        assertThatThrownBy(waiter::get).hasCauseInstanceOf(StackOverflowError.class);
+        assertThat(cache.get(1L, () -> "loaded")).isEqualTo("loaded");
+    }
+}
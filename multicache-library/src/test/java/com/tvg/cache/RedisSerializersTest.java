@@ -0,0 +1,158 @@
+package com.tvg.cache;
+
+import org.junit.Test;
+import org.springframework.cache.interceptor.SimpleKey;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class RedisSerializersTest {
+
+    private static final EnumSet<MultiCacheProperties.Serializer> TYPED =
+            EnumSet.of(MultiCacheProperties.Serializer.JSON, MultiCacheProperties.Serializer.SMILE, MultiCacheProperties.Serializer.KRYO);
+
+    public static class Contact implements Serializable {
+
+        private String name;
+        private List<String> phones = new ArrayList<>();
+        private LocalDate birthday;
+
+        public Contact() {
+        }
+
+        Contact(String name, LocalDate birthday, String... phones) {
+            this.name = name;
+            this.birthday = birthday;
+            this.phones = new ArrayList<>(Arrays.asList(phones));
+        }
+
+        public String getName() { return name; }
+
+        public void setName(String name) { this.name = name; }
+
+        public List<String> getPhones() { return phones; }
+
+        public void setPhones(List<String> phones) { this.phones = phones; }
+
+        public String getBirthday() { return birthday != null ? birthday.toString() : null; }
+
+        public void setBirthday(String birthday) { this.birthday = birthday != null ? LocalDate.parse(birthday) : null; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Contact that = (Contact) o;
+            return Objects.equals(name, that.name) && Objects.equals(phones, that.phones) && Objects.equals(birthday, that.birthday);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, phones, birthday);
+        }
+    }
+
+    private static RedisSerializer<Object> serializer(MultiCacheProperties.Serializer type, String... trustedPackages) {
+        MultiCacheProperties.RedisCacheProperties properties = new MultiCacheProperties.RedisCacheProperties();
+        properties.setSerializer(type);
+        properties.setTrustedPackages(Arrays.asList(trustedPackages));
+        return RedisSerializers.create("contacts", properties, null, RedisSerializersTest.class.getClassLoader());
+    }
+
+    @Test
+    public void trustedValuesRoundTripWithEverySerializer() {
+        Map<String, Contact> contacts = new HashMap<>();
+        contacts.put("ann", new Contact("Ann", LocalDate.of(1980, 1, 2), "555-1234", "555-5678"));
+        for (MultiCacheProperties.Serializer type : EnumSet.of(MultiCacheProperties.Serializer.JDK, MultiCacheProperties.Serializer.JSON,
+                MultiCacheProperties.Serializer.SMILE, MultiCacheProperties.Serializer.KRYO)) {
+            RedisSerializer<Object> serializer = serializer(type, "com.tvg.cache");
+            Contact contact = new Contact("Bob", LocalDate.of(1975, 3, 4), "555-0000");
+
+            assertThat(serializer.deserialize(serializer.serialize(contact))).as(type.name()).isEqualTo(contact);
+            assertThat(serializer.deserialize(serializer.serialize(new HashMap<>(contacts)))).as(type.name()).isEqualTo(contacts);
+            assertThat(serializer.deserialize(serializer.serialize("plain"))).as(type.name()).isEqualTo("plain");
+            assertThat(serializer.deserialize(serializer.serialize(42))).as(type.name()).isEqualTo(42);
+        }
+    }
+
+    @Test
+    public void jdkAndSpringTypesAreTrustedByDefault() {
+        for (MultiCacheProperties.Serializer type : TYPED) {
+            RedisSerializer<Object> serializer = serializer(type);
+            ArrayList<Object> value = new ArrayList<>(Arrays.asList("a", 1, new HashMap<>(Collections.singletonMap("b", "c"))));
+
+            assertThat(serializer.deserialize(serializer.serialize(value))).as(type.name()).isEqualTo(value);
+        }
+        for (MultiCacheProperties.Serializer type : TYPED) {
+            RedisSerializer<Object> serializer = serializer(type);
+            TimedValue timed = (TimedValue) serializer.deserialize(serializer.serialize(new TimedValue("a", 1000L, 20L)));
+
+            assertThat(timed.getValue()).as(type.name()).isEqualTo("a");
+            assertThat(timed.getExpiresAt()).as(type.name()).isEqualTo(1000L);
+        }
+        // jackson cannot write spring's cache keys, kryo writes them as invalidation keys
+        RedisSerializer<Object> kryo = serializer(MultiCacheProperties.Serializer.KRYO);
+        assertThat(kryo.deserialize(kryo.serialize(new SimpleKey(1L, "a")))).isEqualTo(new SimpleKey(1L, "a"));
+    }
+
+    @Test
+    public void untrustedClassesAreNotRead() {
+        for (MultiCacheProperties.Serializer type : TYPED) {
+            byte[] bytes = serializer(type, "com.tvg.cache").serialize(new Contact("Ann", null));
+
+            assertThatThrownBy(() -> serializer(type).deserialize(bytes)).as(type.name())
+                    .isInstanceOf(SerializationException.class)
+                    .hasStackTraceContaining("is not trusted");
+            // a package is trusted with its subpackages, not a package that only starts with the same name
+            assertThatThrownBy(() -> serializer(type, "com.tvg.ca").deserialize(bytes)).as(type.name())
+                    .hasStackTraceContaining("is not trusted");
+            assertThat(serializer(type, Contact.class.getName()).deserialize(bytes)).as(type.name()).isEqualTo(new Contact("Ann", null));
+        }
+    }
+
+    @Test
+    public void untrustedElementsOfTrustedCollectionsAreNotRead() {
+        for (MultiCacheProperties.Serializer type : TYPED) {
+            byte[] bytes = serializer(type, "com.tvg.cache").serialize(new ArrayList<>(Collections.singletonList(new Contact("Ann", null))));
+
+            assertThatThrownBy(() -> serializer(type).deserialize(bytes)).as(type.name())
+                    .hasStackTraceContaining("is not trusted");
+        }
+    }
+
+    @Test
+    public void kryoWithRegisteredClassesReadsAndWritesOnlyThose() {
+        MultiCacheProperties.RedisCacheProperties properties = new MultiCacheProperties.RedisCacheProperties();
+        properties.setSerializer(MultiCacheProperties.Serializer.KRYO);
+        properties.setKryoClasses(Arrays.asList(Contact.class.getName(), ArrayList.class.getName(), LocalDate.class.getName()));
+        RedisSerializer<Object> serializer = RedisSerializers.create("contacts", properties, null, getClass().getClassLoader());
+        Contact contact = new Contact("Ann", LocalDate.of(1980, 1, 2), "555-1234");
+
+        assertThat(serializer.deserialize(serializer.serialize(contact))).isEqualTo(contact);
+        assertThat(serializer.deserialize(serializer.serialize("plain"))).isEqualTo("plain");
+        assertThatThrownBy(() -> serializer.serialize(new HashMap<>())).isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    public void unknownKryoClassesFailTheConfiguration() {
+        MultiCacheProperties.RedisCacheProperties properties = new MultiCacheProperties.RedisCacheProperties();
+        properties.setSerializer(MultiCacheProperties.Serializer.KRYO);
+        properties.setKryoClasses(Collections.singletonList("com.example.Missing"));
+
+        assertThatThrownBy(() -> RedisSerializers.create("contacts", properties, null, getClass().getClassLoader()))
+                .hasMessage("MultiCache: cache contacts registers kryo class com.example.Missing, which cannot be loaded");
+    }
+}
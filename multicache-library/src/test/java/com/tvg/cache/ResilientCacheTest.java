@@ -0,0 +1,126 @@
+package com.tvg.cache;
+
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResilientCacheTest {
+
+    @ClassRule
+    public static final EmbeddedRedis redis = new EmbeddedRedis();
+
+    @Rule
+    public final MultiCacheNodes nodes = new MultiCacheNodes(redis);
+
+    private MultiRedisCache redisCache;
+
+    @Before
+    public void setUp() {
+        redis.flushAll();
+        nodes.property("enable-redis", "true");
+        nodes.property("redis.guarded.time-to-live", "10m");
+        nodes.property("redis.guarded.transaction-aware", "false");
+        nodes.property("redis.guarded.circuit-breaker.enabled", "true");
+        nodes.property("redis.guarded.circuit-breaker.failure-threshold", "3");
+        nodes.property("redis.guarded.circuit-breaker.open-duration", "300ms");
+    }
+
+    private ResilientCache cache() {
+        ResilientCache cache = nodes.cache("guarded");
+        redisCache = (MultiRedisCache) cache.getDelegate();
+        return cache;
+    }
+
+    /**
+     * Makes every read of the key fail with a WRONGTYPE error.
+     */
+    private void breakKey(Object key) {
+        redis.execute(connection -> connection.hSet(redisCache.cacheKey(key), "field".getBytes(StandardCharsets.UTF_8), new byte[0]));
+    }
+
+    private void repairKey(Object key) {
+        redis.execute(connection -> connection.del(redisCache.cacheKey(key)));
+    }
+
+    private boolean inRedis(Object key) {
+        Boolean exists = redis.execute(connection -> connection.exists(redisCache.cacheKey(key)));
+        return exists;
+    }
+
+    private void failTimes(Cache cache, int times) {
+        breakKey(0L);
+        for (int i = 0; i < times; i++) {
+            assertThat(cache.get(0L)).isNull();
+        }
+        repairKey(0L);
+    }
+
+    @Test
+    public void circuitOpensAfterConsecutiveFailuresAndClosesAfterASuccessfulTrial() throws Exception {
+        ResilientCache cache = cache();
+        CircuitBreaker breaker = cache.getCircuitBreaker();
+
+        failTimes(cache, 2);
+        cache.put(1L, "one");
+        failTimes(cache, 2);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        failTimes(cache, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        // while open, reads miss and writes are skipped without calling redis
+        assertThat(cache.get(1L)).isNull();
+        cache.put(2L, "two");
+        assertThat(inRedis(2L)).isFalse();
+        assertThat(cache.get(3L, () -> "three")).isEqualTo("three");
+        assertThat(inRedis(3L)).isFalse();
+
+        Thread.sleep(400);
+        assertThat(cache.get(1L).get()).isEqualTo("one");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        cache.put(2L, "two");
+        assertThat(inRedis(2L)).isTrue();
+    }
+
+    @Test
+    public void failedTrialOpensTheCircuitAgain() throws Exception {
+        ResilientCache cache = cache();
+        CircuitBreaker breaker = cache.getCircuitBreaker();
+        cache.put(1L, "one");
+        failTimes(cache, 3);
+
+        Thread.sleep(400);
+        failTimes(cache, 1);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(cache.get(1L)).isNull();
+
+        Thread.sleep(400);
+        assertThat(cache.get(1L).get()).isEqualTo("one");
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void fallbackServesWhileOpenAndIsClearedOnClose() throws Exception {
+        nodes.property("redis.guarded.circuit-breaker.fallback-spec", "maximumSize=100");
+        ResilientCache cache = cache();
+        failTimes(cache, 3);
+
+        cache.put(1L, "local");
+        assertThat(cache.get(1L).get()).isEqualTo("local");
+        assertThat(cache.get(2L, () -> "loaded")).isEqualTo("loaded");
+        assertThat(cache.get(2L, () -> "loaded again")).isEqualTo("loaded");
+        assertThat(inRedis(1L)).isFalse();
+
+        Thread.sleep(400);
+        assertThat(cache.get(1L)).isNull();
+        assertThat(cache.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // the fallback was cleared when the circuit closed
+        failTimes(cache, 3);
+        assertThat(cache.get(2L)).isNull();
+    }
+}
@@ -0,0 +1,184 @@
+package com.tvg.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.ClassRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WriteBehindCacheTest {
+
+    @ClassRule
+    public static final EmbeddedRedis redis = new EmbeddedRedis();
+
+    @Rule
+    public final MultiCacheNodes nodes = new MultiCacheNodes(redis);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @Before
+    public void setUp() {
+        redis.flushAll();
+        nodes.property("enable-redis", "true");
+        nodes.property("redis.queued.time-to-live", "10m");
+        nodes.property("redis.queued.transaction-aware", "false");
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * A write-behind cache that is only flushed by the test, when a batch is full, or when the queue overflows.
+     */
+    private WriteBehindCache writeBehind(int batchSize, int queueCapacity, MultiCacheProperties.WriteBehindOverflow overflow) {
+        MultiCacheProperties.WriteBehindProperties writeBehind = new MultiCacheProperties.WriteBehindProperties();
+        writeBehind.setFlushInterval(Duration.ofMillis(100));
+        writeBehind.setBatchSize(batchSize);
+        writeBehind.setQueueCapacity(queueCapacity);
+        writeBehind.setOverflow(overflow);
+        return new WriteBehindCache(nodes.cache("queued"), writeBehind, executor);
+    }
+
+    private static Object inRedis(WriteBehindCache cache, Object key) {
+        MultiRedisCache redisCache = (MultiRedisCache) cache.getDelegate();
+        byte[] bytes = redis.execute(connection -> connection.get(redisCache.cacheKey(key)));
+        return bytes != null ? redisCache.toValueWrapper(bytes).get() : null;
+    }
+
+    @Test
+    public void writesAreQueuedCoalescedAndReadBeforeTheyReachRedis() {
+        WriteBehindCache cache = writeBehind(100, 100, MultiCacheProperties.WriteBehindOverflow.CALLER_RUNS);
+        ((MultiRedisCache) cache.getDelegate()).put(3L, "three");
+
+        cache.put(1L, "one");
+        cache.put(1L, "uno");
+        cache.put(2L, "two");
+        cache.evict(3L);
+
+        assertThat(cache.getPendingWrites()).isEqualTo(3);
+        assertThat(cache.get(1L).get()).isEqualTo("uno");
+        assertThat(cache.get(3L)).isNull();
+        assertThat(inRedis(cache, 1L)).isNull();
+        assertThat(inRedis(cache, 3L)).isEqualTo("three");
+
+        cache.flush();
+
+        assertThat(cache.getPendingWrites()).isZero();
+        assertThat(inRedis(cache, 1L)).isEqualTo("uno");
+        assertThat(inRedis(cache, 2L)).isEqualTo("two");
+        assertThat(inRedis(cache, 3L)).isNull();
+        Long ttl = redis.execute(connection -> connection.pTtl(((MultiRedisCache) cache.getDelegate()).cacheKey(1L)));
+        assertThat(ttl).isBetween(1L, Duration.ofMinutes(10).toMillis());
+    }
+
+    @Test
+    public void fullBatchIsFlushedRightAway() throws Exception {
+        WriteBehindCache cache = writeBehind(3, 100, MultiCacheProperties.WriteBehindOverflow.CALLER_RUNS);
+
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        assertThat(inRedis(cache, 1L)).isNull();
+        cache.put(3L, "three");
+
+        assertThat(EmbeddedRedis.await(() -> { }, () -> cache.getPendingWrites() == 0)).isTrue();
+        assertThat(inRedis(cache, 1L)).isEqualTo("one");
+        assertThat(inRedis(cache, 3L)).isEqualTo("three");
+    }
+
+    @Test
+    public void valuesLoadedOnAMissAreQueuedInsteadOfWritten() throws Exception {
+        WriteBehindCache cache = writeBehind(100, 100, MultiCacheProperties.WriteBehindOverflow.CALLER_RUNS);
+
+        assertThat(cache.get(1L, () -> "loaded")).isEqualTo("loaded");
+        assertThat(cache.async().get(2L, () -> CompletableFuture.completedFuture("loaded async")).get()).isEqualTo("loaded async");
+
+        assertThat(cache.getPendingWrites()).isEqualTo(2);
+        assertThat(inRedis(cache, 1L)).isNull();
+        assertThat(inRedis(cache, 2L)).isNull();
+        assertThat(cache.get(1L, () -> "loaded again")).isEqualTo("loaded");
+
+        cache.flush();
+        assertThat(inRedis(cache, 1L)).isEqualTo("loaded");
+        assertThat(inRedis(cache, 2L)).isEqualTo("loaded async");
+    }
+
+    @Test
+    public void overflowRunsTheFlushOnTheCaller() {
+        WriteBehindCache cache = writeBehind(100, 2, MultiCacheProperties.WriteBehindOverflow.CALLER_RUNS);
+
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(2L, "deux");
+        assertThat(inRedis(cache, 1L)).isNull();
+        cache.put(3L, "three");
+
+        assertThat(inRedis(cache, 1L)).isEqualTo("one");
+        assertThat(inRedis(cache, 2L)).isEqualTo("deux");
+        assertThat(inRedis(cache, 3L)).isNull();
+        assertThat(cache.getPendingWrites()).isEqualTo(1);
+        assertThat(cache.getDroppedWrites()).isZero();
+    }
+
+    @Test
+    public void overflowDropsPutsButNotEvictions() {
+        WriteBehindCache cache = writeBehind(100, 2, MultiCacheProperties.WriteBehindOverflow.DROP);
+        ((MultiRedisCache) cache.getDelegate()).put(4L, "four");
+
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+        cache.put(3L, "three");
+        cache.put(1L, "uno");
+
+        assertThat(cache.getDroppedWrites()).isEqualTo(1);
+        assertThat(cache.get(3L)).isNull();
+        assertThat(cache.get(1L).get()).isEqualTo("uno");
+
+        // an eviction is never dropped: the caller flushes the full queue to make room for it
+        cache.evict(4L);
+        assertThat(inRedis(cache, 1L)).isEqualTo("uno");
+        assertThat(cache.get(4L)).isNull();
+        cache.flush();
+        assertThat(inRedis(cache, 4L)).isNull();
+    }
+
+    @Test(timeout = 10_000)
+    public void overflowBlocksUntilTheQueueIsFlushed() throws Exception {
+        WriteBehindCache cache = writeBehind(100, 2, MultiCacheProperties.WriteBehindOverflow.BLOCK);
+        cache.put(1L, "one");
+        cache.put(2L, "two");
+
+        Future<?> blocked = executor.submit(() -> cache.put(3L, "three"));
+        blocked.get(5, TimeUnit.SECONDS);
+
+        // the put is queued once the flush has taken the queue, maybe before its writes reach redis
+        assertThat(cache.get(1L).get()).isEqualTo("one");
+        assertThat(EmbeddedRedis.await(() -> { }, () -> "two".equals(inRedis(cache, 2L)))).isTrue();
+        assertThat(inRedis(cache, 1L)).isEqualTo("one");
+        assertThat(cache.get(3L).get()).isEqualTo("three");
+        assertThat(cache.getDroppedWrites()).isZero();
+    }
+
+    @Test
+    public void configuredCacheFlushesEveryFlushInterval() throws Exception {
+        nodes.property("redis.queued.write-mode", "write-behind");
+        nodes.property("redis.queued.write-behind.flush-interval", "100ms");
+        WriteBehindCache cache = nodes.cache("queued");
+
+        cache.put(1L, "one");
+        assertThat(cache.getPendingWrites()).isEqualTo(1);
+
+        assertThat(EmbeddedRedis.await(() -> { }, () -> inRedis(cache, 1L) != null)).isTrue();
+        assertThat(cache.getPendingWrites()).isZero();
+    }
+}
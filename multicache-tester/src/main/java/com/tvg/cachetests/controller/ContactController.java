@@ -1,5 +1,6 @@
 package com.tvg.cachetests.controller;
 
+import com.tvg.cachetests.exception.ContactNotFoundException;
 import com.tvg.cachetests.model.Contact;
 import com.tvg.cachetests.service.ContactService;
 import org.slf4j.Logger;
@@ -37,16 +38,30 @@ public class ContactController {
         return service.findAll();
     }
 
+    @GetMapping(params = "ids")
+    public List<Contact> findAllById(@RequestParam List<Long> ids) {
+        log.info(String.format("GET request made to find contacts with ids: %s", ids));
+        return service.findAllById(ids);
+    }
+
     @GetMapping(path = {"/{id}"})
     public ResponseEntity<Contact> findById(@PathVariable Long id) {
         log.info(String.format("GET request made to find contact with id: %d", id));
-        return ResponseEntity.ok(service.findById(id));
+        Contact contact = service.findById(id);
+        if (contact == null) {
+            throw new ContactNotFoundException(id);
+        }
+        return ResponseEntity.ok(contact);
     }
 
     @GetMapping(path = {"friends/{id}"})
     public ResponseEntity<Contact> findFriendById(@PathVariable Long id) {
         log.info(String.format("GET request made to find FRIEND with id: %d", id));
-        return ResponseEntity.ok(service.findFriendById(id));
+        Contact contact = service.findFriendById(id);
+        if (contact == null) {
+            throw new ContactNotFoundException(id);
+        }
+        return ResponseEntity.ok(contact);
     }
 
     @PostMapping
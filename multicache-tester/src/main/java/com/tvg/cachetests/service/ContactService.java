@@ -1,11 +1,13 @@
 package com.tvg.cachetests.service;
 
+import com.tvg.cache.MultiKeyCache;
 import com.tvg.cachetests.exception.ContactNotFoundException;
 import com.tvg.cachetests.exception.MismatchedContactIdsException;
 import com.tvg.cachetests.model.Contact;
 import com.tvg.cachetests.repository.ContactRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.cache.annotation.EnableCaching;
@@ -13,7 +15,11 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 //import com.tvg.cache.CacheConfiguration;
 
@@ -22,11 +28,13 @@ import java.util.List;
 public class ContactService {
 
     private ContactRepository repository;
+    private CacheManager cacheManager;
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     //private CacheConfiguration cacheConfiguration;
 
-    ContactService(ContactRepository contactRepository) {
+    ContactService(ContactRepository contactRepository, CacheManager cacheManager) {
         this.repository = contactRepository;
+        this.cacheManager = cacheManager;
         //this.cacheConfiguration = cacheConfiguration;
     }
 
@@ -34,7 +42,19 @@ public class ContactService {
         return repository.findAll();
     }
 
-    @Cacheable(value = "contacts", key = "#p0")
+    public List<Contact> findAllById(List<Long> ids) {
+        MultiKeyCache contacts = MultiKeyCache.of(cacheManager.getCache("contacts"));
+        Map<Long, Contact> found = contacts.getAll(ids, missingIds -> {
+            log.info(String.format("Contacts %s not found in cache, retrieving now", missingIds));
+            return repository.findAllById(missingIds).stream().collect(Collectors.toMap(Contact::getId, Function.identity()));
+        });
+        return new ArrayList<>(found.values());
+    }
+
+    /**
+     * Null when there is no such contact, so that the miss is cached too (for the cache's negative-ttl).
+     */
+    @Cacheable(value = "contacts", key = "#p0", sync = true)
     public Contact findById(@PathVariable long id) {
 
         if (repository.existsById(id)) {
@@ -42,7 +62,7 @@ public class ContactService {
             return repository.findById(id).get();
         }
 
-        throw new ContactNotFoundException(id);
+        return null;
     }
 
     @Cacheable("friend-list")
@@ -53,7 +73,7 @@ public class ContactService {
             return repository.findById(id).get();
         }
 
-        throw new ContactNotFoundException(id);
+        return null;
     }
 
     public Contact create(@RequestBody Contact contact) {
@@ -40,8 +40,12 @@ public class CachePropertiesExceptionsTest {
         log.info("Resetting cache properties");
         when(cacheProperties.getEnableCaffeine()).thenReturn("false");
         when(cacheProperties.getEnableRedis()).thenReturn("false");
+        when(cacheProperties.getEnableTiered()).thenReturn("false");
+        when(cacheProperties.getEnableOffheap()).thenReturn("false");
         when(cacheProperties.getCaffeine()).thenReturn(null);
         when(cacheProperties.getRedis()).thenReturn(null);
+        when(cacheProperties.getTiered()).thenReturn(null);
+        when(cacheProperties.getOffheap()).thenReturn(null);
     }
 
     @Test
@@ -135,6 +139,55 @@ public class CachePropertiesExceptionsTest {
                         "] are defined with different cache types in application.properties");
     }
 
+    @Test
+    public void whenTieredEnabledButNoCaches_thenThrowException() throws Exception {
+        when(cacheProperties.getEnableTiered()).thenReturn("true");
+
+        SpringApplication springApplication6 = new SpringApplication(SpringCrudDemoApplication.class);
+
+        assertThatThrownBy(() -> {
+            springApplication6.run();
+        }).hasCauseInstanceOf(RuntimeException.class)
+                .hasStackTraceContaining("MultiCache: tiered caches are enabled, but no tiered caches are defined in application.properties");
+    }
+
+    @Test
+    public void whenOffheapEnabledButNoCaches_thenThrowException() throws Exception {
+        when(cacheProperties.getEnableOffheap()).thenReturn("true");
+
+        SpringApplication springApplication8 = new SpringApplication(SpringCrudDemoApplication.class);
+
+        assertThatThrownBy(() -> {
+            springApplication8.run();
+        }).hasCauseInstanceOf(RuntimeException.class)
+                .hasStackTraceContaining("MultiCache: off-heap caches are enabled, but no off-heap caches are defined in application.properties");
+    }
+
+    @Test
+    public void whenRedisAndTieredCachesHaveSameName_thenThrowException() throws Exception {
+        String duplicateName = "duplicate-name";
+
+        Map<String, MultiCacheProperties.RedisCacheProperties> redis = new HashMap<>();
+        redis.put(duplicateName, new MultiCacheProperties.RedisCacheProperties());
+
+        when(cacheProperties.getEnableRedis()).thenReturn("true");
+        when(cacheProperties.getRedis()).thenReturn(redis);
+
+        Map<String, MultiCacheProperties.TieredCacheProperties> tiered = new HashMap<>();
+        tiered.put(duplicateName, new MultiCacheProperties.TieredCacheProperties());
+
+        when(cacheProperties.getEnableTiered()).thenReturn("true");
+        when(cacheProperties.getTiered()).thenReturn(tiered);
+
+        SpringApplication springApplication7 = new SpringApplication(SpringCrudDemoApplication.class);
+
+        assertThatThrownBy(() -> {
+            springApplication7.run();
+        }).hasCauseInstanceOf(RuntimeException.class)
+                .hasStackTraceContaining("MultiCache: Cache name(s) [" + duplicateName +
+                        "] are defined with different cache types in application.properties");
+    }
+
     @Test
     public void whenRedisEnabledButNotCaffeine_thenOnlyRedisBeansExist() throws Exception {
         Map<String, MultiCacheProperties.RedisCacheProperties> redis = new HashMap<>();